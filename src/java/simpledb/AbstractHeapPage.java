@@ -0,0 +1,417 @@
+package simpledb;
+
+import java.util.*;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Base class for the pages of a HeapFile. Handles the parts of a page that
+ * don't depend on how tuples are laid out on it: the page id, dirty
+ * tracking, before images and iteration. Tuples are addressed by slot
+ * number; a RecordId's tuple number is the slot the tuple is stored in.
+ *
+ * @see PageLayout
+ * @see HeapFile
+ */
+public abstract class AbstractHeapPage implements Page {
+
+    final HeapPageId pid;
+    final TupleDesc td;
+
+    /** The page as it was read from disk. Never modified. */
+    final byte data[];
+
+    /**
+     * The before image of this page, or null if the page hasn't been
+     * modified since its before image was last set, in which case the
+     * current contents are the before image.
+     */
+    byte[] oldData;
+    private final Byte oldDataLock=new Byte((byte)0);
+
+    private TransactionId dirtier;
+    private volatile long lsn = LogFile.NO_LSN;
+
+    /**
+     * Creates a page from the bytes read from disk. The data array is not
+     * modified by the page, so callers may share it, and it doubles as the
+     * page's before image until the page is first modified.
+     */
+    protected AbstractHeapPage(HeapPageId id, byte[] data) {
+        this.pid = id;
+        this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+        this.data = data;
+        this.oldData = data;
+    }
+
+    /**
+     * @return the layout of this page.
+     */
+    public abstract PageLayout getLayout();
+
+    /**
+     * @return the number of slots on this page, used or not.
+     */
+    public abstract int getNumSlots();
+
+    /**
+     * Returns true if associated slot on this page is filled.
+     */
+    public abstract boolean isSlotUsed(int i);
+
+    /**
+     * @return the first used slot at or after from, or -1 if there is none.
+     */
+    protected int nextUsedSlot(int from) {
+        for (int i = from; i < getNumSlots(); i++) {
+            if (isSlotUsed(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of empty slots on this page.
+     */
+    public abstract int getNumEmptySlots();
+
+    /**
+     * @return true if the specified tuple would fit on this page.
+     */
+    public abstract boolean hasRoomFor(Tuple t);
+
+    /**
+     * Returns the tuple in the specified slot, decoding it from the page data
+     * if necessary.
+     *
+     * @return the tuple in the slot, or null if the slot is empty
+     * @throws NoSuchElementException if the tuple can't be parsed
+     */
+    public abstract Tuple getTuple(int slotId) throws NoSuchElementException;
+
+    /**
+     * Returns a single field of the tuple in the specified slot, without
+     * decoding the rest of the tuple if it can be helped.
+     *
+     * @return the field, or null if the slot is empty
+     * @throws NoSuchElementException if the field can't be parsed
+     */
+    public abstract Field getField(int slotId, int fieldIndex) throws NoSuchElementException;
+
+    /**
+     * Returns an int field of the tuple in the specified slot, read straight
+     * from the page bytes without creating a Tuple or Field.
+     *
+     * @throws IllegalArgumentException if the field is not an int field
+     * @throws NoSuchElementException if the slot is empty
+     */
+    public abstract int getInt(int slotId, int fieldIndex) throws NoSuchElementException;
+
+    /**
+     * Compares a string field of the tuple in the specified slot to the
+     * specified bytes, reading straight from the page bytes without creating
+     * a Tuple or Field. Bytes are compared as unsigned values, which orders
+     * ASCII strings the same way as {@link StringField#compare}.
+     *
+     * @return a negative number, zero or a positive number as the field sorts
+     *   before, equal to or after bytes
+     * @throws IllegalArgumentException if the field is not a string field
+     * @throws NoSuchElementException if the slot is empty
+     */
+    public abstract int compareString(int slotId, int fieldIndex, byte[] bytes)
+            throws NoSuchElementException;
+
+    /**
+     * Adds the specified tuple to the page;  the tuple should be updated to reflect
+     *  that it is now stored on this page.
+     * @throws DbException if the page is full, tupledesc is mismatch, or
+     *         the tuple is a SlotTuple.
+     * @param t The tuple to add.
+     */
+    public abstract void insertTuple(Tuple t) throws DbException;
+
+    /**
+     * Delete the specified tuple from the page;  the tuple should be updated to reflect
+     *   that it is no longer stored on any page.
+     * @throws DbException if this tuple is not on this page, tuple slot is
+     *         already empty, or the tuple is a SlotTuple.
+     * @param t The tuple to delete
+     */
+    public abstract void deleteTuple(Tuple t) throws DbException;
+
+    /**
+     * Writes the contents of this page, as returned by {@link #getPageData},
+     * to the next page-size bytes of dst, without allocating.
+     */
+    public abstract void writePageData(ByteBuffer dst);
+
+    /**
+     * @return the PageId associated with this page.
+     */
+    public HeapPageId getId() {
+        return this.pid;
+    }
+
+    /** Return a view of this page before it was modified
+        -- used by recovery */
+    public AbstractHeapPage getBeforeImage(){
+        try {
+            byte[] oldDataRef = null;
+            synchronized(oldDataLock)
+            {
+                oldDataRef = oldData;
+            }
+            if (oldDataRef == null) {
+                // unmodified since the before image was set
+                oldDataRef = getPageData();
+            }
+            return getLayout().createPage(pid, oldDataRef);
+        } catch (IOException e) {
+            e.printStackTrace();
+            //should never happen -- we parsed it OK before!
+            System.exit(1);
+        }
+        return null;
+    }
+
+    /**
+     * Makes the current contents of this page its before image. Nothing is
+     * copied until the page is next modified.
+     */
+    public void setBeforeImage() {
+        synchronized(oldDataLock)
+        {
+        oldData = null;
+        }
+    }
+
+    /**
+     * Captures the before image if this is the first modification since it
+     * was last set. Must be called before the page is changed.
+     */
+    protected void captureBeforeImage() {
+        synchronized(oldDataLock)
+        {
+            if (oldData != null) {
+                return;
+            }
+        }
+        byte[] current = getPageData();
+        synchronized(oldDataLock)
+        {
+            if (oldData == null) {
+                oldData = current;
+            }
+        }
+    }
+
+    /**
+     * Marks this page as dirty/not dirty and record that transaction
+     * that did the dirtying
+     */
+    public void markDirty(boolean dirty, TransactionId tid) {
+        dirtier = dirty ? tid : null;
+    }
+
+    /**
+     * Returns the tid of the transaction that last dirtied this page, or null if the page is not dirty
+     */
+    public TransactionId isDirty() {
+        return dirtier;
+    }
+
+    public long getLSN() {
+        return lsn;
+    }
+
+    public void setLSN(long lsn) {
+        this.lsn = lsn;
+    }
+
+    /**
+     * Checks that the specified tuple is stored on this page.
+     *
+     * @return the slot the tuple is stored in
+     * @throws DbException if the tuple is not on this page or its slot is empty
+     */
+    protected int slotOf(Tuple t) throws DbException {
+        RecordId rid = t.getRecordId();
+        if (rid == null || !pid.equals(rid.getPageId())) {
+            throw new DbException("tuple is not on this page");
+        }
+        int slot = rid.tupleno();
+        if (!isSlotUsed(slot)) {
+            throw new DbException("tuple slot " + slot + " is already empty");
+        }
+        return slot;
+    }
+
+    /**
+     * Checks that the specified field has the specified type and that the
+     * specified slot is in use, for the zero-copy accessors.
+     */
+    protected void checkField(int slotId, int fieldIndex, Type type) throws NoSuchElementException {
+        if (td.getFieldType(fieldIndex) != type) {
+            throw new IllegalArgumentException("field " + fieldIndex + " is not of type " + type);
+        }
+        if (!isSlotUsed(slotId)) {
+            throw new NoSuchElementException("slot " + slotId + " is empty");
+        }
+    }
+
+    /**
+     * Parses a field of the specified type read from this page. VARCHAR and
+     * DICT fields are told which table's overflow pages or dictionary hold
+     * their value.
+     */
+    protected Field parseField(Type type, ByteBuffer buf) throws java.text.ParseException {
+        Field f = type.read(buf);
+        if (f instanceof VarcharField) {
+            ((VarcharField) f).setTableId(pid.getTableId());
+        } else if (f instanceof DictField) {
+            ((DictField) f).setTableId(pid.getTableId());
+        }
+        return f;
+    }
+
+    /**
+     * Reads a field of the specified type stored at the specified offset of
+     * the specified page bytes. Strings aren't decoded: the StringField
+     * refers to the bytes of the page, which must not be modified
+     * afterwards.
+     *
+     * @throws NoSuchElementException if the field can't be parsed
+     */
+    protected Field decodeField(byte[] page, int offset, Type type) throws NoSuchElementException {
+        if (type == Type.STRING_TYPE) {
+            // slotted pages don't pad strings, so only their bytes are read
+            int len = readInt(page, offset);
+            if (len < 0 || len > Type.STRING_LEN || offset + 4 + len > page.length) {
+                throw new NoSuchElementException("parsing error!");
+            }
+            return new StringField(page, offset + 4, len, Type.STRING_LEN);
+        }
+        try {
+            return parseField(type, ByteBuffer.wrap(page, offset, type.getLen()));
+        } catch (java.text.ParseException | BufferUnderflowException
+                | IndexOutOfBoundsException e) {
+            throw new NoSuchElementException("parsing error!");
+        }
+    }
+
+    /** @return the big-endian int stored at the specified offset. */
+    static int readInt(byte[] b, int offset) {
+        return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16)
+                | ((b[offset + 2] & 0xff) << 8) | (b[offset + 3] & 0xff);
+    }
+
+    /**
+     * Compares len bytes of a starting at offset to all of b, as unsigned
+     * bytes.
+     */
+    static int compareBytes(byte[] a, int offset, int len, byte[] b) {
+        int n = Math.min(len, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[offset + i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return len - b.length;
+    }
+
+    /**
+     * Compares a string to bytes the way compareBytes would compare its
+     * serialized form, which keeps only the low byte of each char.
+     */
+    static int compareBytes(String s, byte[] b) {
+        int len = Math.min(s.length(), Type.STRING_LEN);
+        int n = Math.min(len, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (s.charAt(i) & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return len - b.length;
+    }
+
+    /**
+     * @return an iterator over all tuples on this page (calling remove on this iterator throws an UnsupportedOperationException)
+     * (note that this iterator shouldn't return tuples in empty slots!)
+     */
+    public Iterator<Tuple> iterator() {
+        return new HeapPageIterator(null, null);
+    }
+
+    /**
+     * Returns an iterator over all tuples on this page. In reuse mode, the
+     * iterator returns one {@link SlotTuple}, pointed at each used slot in
+     * turn, instead of decoding a Tuple for each slot.
+     *
+     * @param reuse whether to return the same SlotTuple for every slot
+     */
+    public Iterator<Tuple> iterator(boolean reuse) {
+        return new HeapPageIterator(reuse ? new SlotTuple(td) : null, null);
+    }
+
+    /**
+     * Returns an iterator over all tuples on this page that points the
+     * specified SlotTuple at each used slot, or decodes a Tuple for each
+     * slot if it is null.
+     */
+    Iterator<Tuple> iterator(SlotTuple reuse) {
+        return new HeapPageIterator(reuse, null);
+    }
+
+    /**
+     * Returns an iterator over the tuples on this page that satisfy the
+     * specified predicate, which is tested on the page bytes so that tuples
+     * that don't satisfy it are never decoded.
+     *
+     * @param reuse the SlotTuple to point at each matching slot, or null to
+     *   decode a Tuple for each
+     */
+    Iterator<Tuple> iterator(SlotTuple reuse, CompiledPredicate filter) {
+        return new HeapPageIterator(reuse, filter);
+    }
+
+    private class HeapPageIterator implements Iterator<Tuple> {
+        private int currentSlot = 0;
+        private final SlotTuple reuse;
+        private final CompiledPredicate filter;
+
+        HeapPageIterator(SlotTuple reuse, CompiledPredicate filter) {
+            this.reuse = reuse;
+            this.filter = filter;
+        }
+
+        public boolean hasNext(){
+            // used slots need not be contiguous once tuples are deleted
+            if (currentSlot >= 0) {
+                currentSlot = nextUsedSlot(currentSlot);
+                while (filter != null && currentSlot >= 0
+                        && !filter.matches(AbstractHeapPage.this, currentSlot)) {
+                    currentSlot = nextUsedSlot(currentSlot + 1);
+                }
+            }
+            return currentSlot >= 0;
+        }
+
+        public Tuple next(){
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (reuse != null) {
+                return reuse.pointAt(AbstractHeapPage.this, currentSlot++);
+            }
+            return getTuple(currentSlot++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -2,6 +2,9 @@ package simpledb;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -26,7 +29,10 @@ public class BufferPool {
     constructor instead. */
     public static final int DEFAULT_PAGES = 50;
 
-    private ArrayList<Page> pool;
+    private final int numPages;
+    private final ConcurrentHashMap<PageId, Page> pool;
+    /** Asynchronous reads that have been issued but haven't completed yet. */
+    private final ConcurrentHashMap<PageId, CompletableFuture<Page>> pendingReads;
 
     /**
      * Creates a BufferPool that caches up to numPages pages.
@@ -35,10 +41,9 @@ public class BufferPool {
      */
     public BufferPool(int numPages) {
         // some code goes here
-        if (numPages > DEFAULT_PAGES) {
-            //throw new DbException("The number of pages is large than the default.");
-        }
-        pool = new ArrayList<Page>(numPages);
+        this.numPages = numPages;
+        pool = new ConcurrentHashMap<PageId, Page>(numPages);
+        pendingReads = new ConcurrentHashMap<PageId, CompletableFuture<Page>>();
     }
     
     public static int getPageSize() {
@@ -73,13 +78,62 @@ public class BufferPool {
     public  Page getPage(TransactionId tid, PageId pid, Permissions perm)
         throws TransactionAbortedException, DbException {
         // some code goes here
-        for (int i=0; i<pool.size(); i++) {
-            if (pool.get(i).getId() == pid) {
-                return pool.get(i);
-            }
+        Page page = pool.get(pid);
+        if (page != null) {
+            return page;
         }
-        throw new DbException("Page does not exist");
+        page = Database.getCatalog().getDatabaseFile(pid.getTableId()).readPage(pid);
+        return installPage(page);
+    }
 
+    /**
+     * Retrieve the specified page without blocking the caller. If the page
+     * is cached the returned future is already complete; otherwise the page
+     * is read with {@link DbFile#readPageAsync} and added to the buffer pool
+     * when the read completes. Concurrent requests for a page that is being
+     * read share the same read.
+     * <p>
+     * The future completes exceptionally (with a {@link CompletionException}
+     * wrapping a DbException) if the page can't be added to the pool.
+     *
+     * @param tid the ID of the transaction requesting the page
+     * @param pid the ID of the requested page
+     * @param perm the requested permissions on the page
+     */
+    public CompletableFuture<Page> getPageAsync(TransactionId tid, final PageId pid, Permissions perm) {
+        Page page = pool.get(pid);
+        if (page != null) {
+            return CompletableFuture.completedFuture(page);
+        }
+        final CompletableFuture<Page> read = pendingReads.computeIfAbsent(pid, p ->
+                Database.getCatalog().getDatabaseFile(p.getTableId()).readPageAsync(p)
+                        .thenApply(readPage -> {
+                            try {
+                                return installPage(readPage);
+                            } catch (DbException e) {
+                                throw new CompletionException(e);
+                            }
+                        }));
+        read.whenComplete((p, e) -> pendingReads.remove(pid, read));
+        return read;
+    }
+
+    /**
+     * Adds a freshly read page to the pool, evicting a page if the pool is
+     * full. If another thread installed the same page first, that copy wins.
+     *
+     * @return the cached copy of the page
+     */
+    private synchronized Page installPage(Page page) throws DbException {
+        Page existing = pool.get(page.getId());
+        if (existing != null) {
+            return existing;
+        }
+        if (pool.size() >= numPages) {
+            evictPage();
+        }
+        pool.put(page.getId(), page);
+        return page;
     }
 
     /**
@@ -97,13 +151,16 @@ public class BufferPool {
     }
 
     /**
-     * Release all locks associated with a given transaction.
+     * Release all locks associated with a given transaction, and commit it:
+     * the pages it dirtied are logged and written out, followed by a commit
+     * record.
      *
      * @param tid the ID of the transaction requesting the unlock
      */
     public void transactionComplete(TransactionId tid) throws IOException {
         // some code goes here
         // not necessary for lab1|lab2
+        transactionComplete(tid, true);
     }
 
     /** Return true if the specified transaction has a lock on the specified page */
@@ -115,7 +172,8 @@ public class BufferPool {
 
     /**
      * Commit or abort a given transaction; release all locks associated to
-     * the transaction.
+     * the transaction. Committing writes the pages the transaction dirtied;
+     * aborting discards them, since they were never written (NO STEAL).
      *
      * @param tid the ID of the transaction requesting the unlock
      * @param commit a flag indicating whether we should commit or abort
@@ -124,6 +182,23 @@ public class BufferPool {
         throws IOException {
         // some code goes here
         // not necessary for lab1|lab2
+        synchronized (this) {
+            boolean dirtied = false;
+            for (Page p : pool.values()) {
+                if (tid.equals(p.isDirty())) {
+                    dirtied = true;
+                    if (commit) {
+                        flushPage(p.getId());
+                    } else {
+                        // the copy on disk doesn't have tid's changes
+                        discardPage(p.getId());
+                    }
+                }
+            }
+            if (commit && dirtied) {
+                Database.getLogFile().logCommit(tid);
+            }
+        }
     }
 
     /**
@@ -144,7 +219,8 @@ public class BufferPool {
     public void insertTuple(TransactionId tid, int tableId, Tuple t)
         throws DbException, IOException, TransactionAbortedException {
         // some code goes here
-        // not necessary for lab1
+        DbFile file = Database.getCatalog().getDatabaseFile(tableId);
+        cacheDirtied(tid, file.insertTuple(tid, t));
     }
 
     /**
@@ -163,7 +239,26 @@ public class BufferPool {
     public  void deleteTuple(TransactionId tid, Tuple t)
         throws DbException, IOException, TransactionAbortedException {
         // some code goes here
-        // not necessary for lab1
+        if (t.getRecordId() == null) {
+            throw new DbException("tuple is not stored in any table");
+        }
+        DbFile file = Database.getCatalog().getDatabaseFile(t.getRecordId().getPageId().getTableId());
+        cacheDirtied(tid, file.deleteTuple(tid, t));
+    }
+
+    /**
+     * Marks pages modified by tid as dirty and makes sure the pool holds
+     * those versions of the pages.
+     */
+    private synchronized void cacheDirtied(TransactionId tid, ArrayList<Page> pages)
+        throws DbException {
+        for (Page p : pages) {
+            p.markDirty(true, tid);
+            if (!pool.containsKey(p.getId()) && pool.size() >= numPages) {
+                evictPage();
+            }
+            pool.put(p.getId(), p);
+        }
     }
 
     /**
@@ -173,8 +268,9 @@ public class BufferPool {
      */
     public synchronized void flushAllPages() throws IOException {
         // some code goes here
-        // not necessary for lab1
-
+        for (PageId pid : pool.keySet()) {
+            flushPage(pid);
+        }
     }
 
     /** Remove the specific page id from the buffer pool.
@@ -187,23 +283,40 @@ public class BufferPool {
     */
     public synchronized void discardPage(PageId pid) {
         // some code goes here
-        // not necessary for lab1
+        pool.remove(pid);
     }
 
+
     /**
-     * Flushes a certain page to disk
+     * Flushes a certain page to disk. The page's before and after images
+     * are logged, and the log forced up to the page's LSN, before the page
+     * is written (write-ahead logging).
      * @param pid an ID indicating the page to flush
      */
     private synchronized  void flushPage(PageId pid) throws IOException {
         // some code goes here
-        // not necessary for lab1
+        Page p = pool.get(pid);
+        if (p == null || p.isDirty() == null) {
+            return;
+        }
+        LogFile log = Database.getLogFile();
+        log.logWrite(p.isDirty(), p.getBeforeImage(), p);
+        log.force(p.getLSN());
+        Database.getCatalog().getDatabaseFile(pid.getTableId()).writePage(p);
+        p.markDirty(false, null);
+        // the next change is logged against what's now on disk
+        p.setBeforeImage();
     }
 
     /** Write all pages of the specified transaction to disk.
      */
     public synchronized  void flushPages(TransactionId tid) throws IOException {
         // some code goes here
-        // not necessary for lab1|lab2
+        for (Page p : pool.values()) {
+            if (tid.equals(p.isDirty())) {
+                flushPage(p.getId());
+            }
+        }
     }
 
     /**
@@ -212,7 +325,14 @@ public class BufferPool {
      */
     private synchronized  void evictPage() throws DbException {
         // some code goes here
-        // not necessary for lab1
+        // only clean pages are evicted, so there is nothing to flush
+        for (Iterator<Page> it = pool.values().iterator(); it.hasNext();) {
+            if (it.next().isDirty() == null) {
+                it.remove();
+                return;
+            }
+        }
+        throw new DbException("all pages in the buffer pool are dirty");
     }
 
 }
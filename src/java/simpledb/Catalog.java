@@ -172,6 +172,9 @@ public class Catalog {
     /** Delete all tables from the catalog */
     public void clear() {
         // some code goes here
+        for (Table t : tables) {
+            release(t.getDBFile());
+        }
         tables.clear();
     }
     
@@ -187,7 +190,18 @@ public class Catalog {
     private void checkForId(DbFile file){
         for (int i=0; i<tables.size(); i++) {
             if (tables.get(i).getTableID() == file.getId()){
-                tables.remove(i);
+                release(tables.remove(i).getDBFile());
+            }
+        }
+    }
+
+    /** Releases the files of a table dropped from the catalog. */
+    private void release(DbFile file) {
+        if (file instanceof HeapFile) {
+            try {
+                ((HeapFile) file).close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
     }
@@ -203,7 +217,7 @@ public class Catalog {
             BufferedReader br = new BufferedReader(new FileReader(new File(catalogFile)));
             
             while ((line = br.readLine()) != null) {
-                //assume line is of the format name (field type, field type, ...)
+                //assume line is of the format name (field type, field type, ...) [layout] [compressed]
                 String name = line.substring(0, line.indexOf("(")).trim();
                 //System.out.println("TABLE NAME: " + name);
                 String fields = line.substring(line.indexOf("(") + 1, line.indexOf(")")).trim();
@@ -214,11 +228,9 @@ public class Catalog {
                 for (String e : els) {
                     String[] els2 = e.trim().split(" ");
                     names.add(els2[0].trim());
-                    if (els2[1].trim().toLowerCase().equals("int"))
-                        types.add(Type.INT_TYPE);
-                    else if (els2[1].trim().toLowerCase().equals("string"))
-                        types.add(Type.STRING_TYPE);
-                    else {
+                    try {
+                        types.add(Type.forName(els2[1]));
+                    } catch (IllegalArgumentException ex) {
                         System.out.println("Unknown type " + els2[1]);
                         System.exit(0);
                     }
@@ -234,7 +246,30 @@ public class Catalog {
                 Type[] typeAr = types.toArray(new Type[0]);
                 String[] namesAr = names.toArray(new String[0]);
                 TupleDesc t = new TupleDesc(typeAr, namesAr);
-                HeapFile tabHf = new HeapFile(new File(baseFolder+"/"+name + ".dat"), t);
+                PageLayout layout = PageLayout.FIXED;
+                boolean compressed = false;
+                for (String option : line.substring(line.indexOf(")") + 1).trim().split("\\s+")) {
+                    if (option.length() == 0)
+                        continue;
+                    if (option.toLowerCase().equals("compressed")) {
+                        compressed = true;
+                        continue;
+                    }
+                    try {
+                        layout = PageLayout.forName(option);
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Unknown layout " + option);
+                        System.exit(0);
+                    }
+                }
+                HeapFile tabHf;
+                try {
+                    tabHf = new HeapFile(new File(baseFolder+"/"+name + ".dat"), t, layout, compressed);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Can't open table " + name + ": " + e.getMessage());
+                    System.exit(0);
+                    return;
+                }
                 addTable(tabHf,name,primaryKey);
                 System.out.println("Added table : " + name + " with schema " + t);
             }
@@ -0,0 +1,281 @@
+package simpledb;
+
+/**
+ * A Tuple that stores its values without a Field object per value:
+ * fixed-width values are kept in a primitive array and strings as plain
+ * String references. A tuple of n int fields takes two objects instead of
+ * n + 2. VARCHAR and DICT values are kept as their fields, so values that
+ * haven't been read from overflow pages or looked up in a dictionary yet
+ * stay that way.
+ * <p>
+ * A CompactTuple can be used wherever a Tuple is. {@link #getField} creates a
+ * new Field each time it is called, so code that reads many values should
+ * use {@link #getInt} and {@link #getString} instead. As with Tuple,
+ * getField returns null for a field that hasn't been set; the primitive
+ * getters read an unset numeric field as 0.
+ */
+public class CompactTuple extends Tuple {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Fixed-width values, by field index; unused for string fields. */
+    private final long[] values;
+    /** String values, by field index; null if there are no string fields. */
+    private final String[] strings;
+    /**
+     * VARCHAR and DICT values, by field index; null if there are no such
+     * fields.
+     */
+    private final Field[] objects;
+    /**
+     * Bit i is set once fixed-width field i has been set, for the first 64
+     * fields; the rest are tracked in moreSet, which is null if there are
+     * no more than 64 fields.
+     */
+    private long set;
+    private final long[] moreSet;
+
+    /**
+     * Create a new, empty compact tuple with the specified schema.
+     *
+     * @param td
+     *            the schema of this tuple. It must be a valid TupleDesc
+     *            instance with at least one field.
+     */
+    public CompactTuple(TupleDesc td) {
+        super(td, null);
+        this.values = new long[td.numFields()];
+        String[] s = null;
+        Field[] o = null;
+        for (int i = 0; i < td.numFields(); i++) {
+            if (td.getFieldType(i) == Type.STRING_TYPE && s == null) {
+                s = new String[td.numFields()];
+            } else if (isKeptAsField(td.getFieldType(i)) && o == null) {
+                o = new Field[td.numFields()];
+            }
+        }
+        this.strings = s;
+        this.objects = o;
+        this.moreSet = td.numFields() > 64 ? new long[(td.numFields() - 1) / 64] : null;
+    }
+
+    /**
+     * @return a compact copy of the values and RecordId of t.
+     */
+    public static CompactTuple copyOf(Tuple t) {
+        if (t instanceof CompactTuple) {
+            return ((CompactTuple) t).copy();
+        }
+        TupleDesc td = t.getTupleDesc();
+        CompactTuple copy = new CompactTuple(td);
+        for (int i = 0; i < td.numFields(); i++) {
+            Field f = t.getField(i);
+            if (f != null) {
+                copy.setField(i, f);
+            }
+        }
+        copy.setRecordId(t.getRecordId());
+        return copy;
+    }
+
+    /**
+     * @return a compact copy of the values and RecordId of this tuple.
+     */
+    public CompactTuple copy() {
+        CompactTuple copy = new CompactTuple(getTupleDesc());
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        if (strings != null) {
+            System.arraycopy(strings, 0, copy.strings, 0, strings.length);
+        }
+        if (objects != null) {
+            System.arraycopy(objects, 0, copy.objects, 0, objects.length);
+        }
+        copy.set = set;
+        if (moreSet != null) {
+            System.arraycopy(moreSet, 0, copy.moreSet, 0, moreSet.length);
+        }
+        copy.setRecordId(getRecordId());
+        return copy;
+    }
+
+    /** Records that fixed-width field i has been set. */
+    private void markSet(int i) {
+        if (i < 64) {
+            set |= 1L << i;
+        } else {
+            moreSet[i / 64 - 1] |= 1L << i;
+        }
+    }
+
+    /** @return true if fixed-width field i has been set. */
+    private boolean isSet(int i) {
+        long word = i < 64 ? set : moreSet[i / 64 - 1];
+        return (word & 1L << i) != 0;
+    }
+
+    private void checkType(int i, Type type) {
+        if (getTupleDesc().getFieldType(i) != type) {
+            throw new IllegalArgumentException("field " + i + " is not of type " + type);
+        }
+    }
+
+    /**
+     * @return the value of the ith field, which must be an int field, or 0
+     *   if it has not been set.
+     */
+    public int getInt(int i) {
+        checkType(i, Type.INT_TYPE);
+        return (int) values[i];
+    }
+
+    /**
+     * Changes the value of the ith field, which must be an int field.
+     */
+    public void setInt(int i, int value) {
+        checkType(i, Type.INT_TYPE);
+        values[i] = value;
+        markSet(i);
+    }
+
+    /**
+     * @return the value of the ith field, which must be a string field, or
+     *   null if it has not been set.
+     */
+    public String getString(int i) {
+        checkType(i, Type.STRING_TYPE);
+        return strings[i];
+    }
+
+    /**
+     * Changes the value of the ith field, which must be a string field.
+     * Strings longer than {@link Type#STRING_LEN} are truncated, as they
+     * are by StringField.
+     */
+    public void setString(int i, String value) {
+        checkType(i, Type.STRING_TYPE);
+        strings[i] = value != null && value.length() > Type.STRING_LEN
+                ? value.substring(0, Type.STRING_LEN) : value;
+    }
+
+    /**
+     * @return the value of the ith field, which must be a long field, or 0
+     *   if it has not been set.
+     */
+    public long getLong(int i) {
+        checkType(i, Type.LONG_TYPE);
+        return values[i];
+    }
+
+    /**
+     * Changes the value of the ith field, which must be a long field.
+     */
+    public void setLong(int i, long value) {
+        checkType(i, Type.LONG_TYPE);
+        values[i] = value;
+        markSet(i);
+    }
+
+    /**
+     * @return the value of the ith field, which must be a double field, or 0
+     *   if it has not been set.
+     */
+    public double getDouble(int i) {
+        checkType(i, Type.DOUBLE_TYPE);
+        return Double.longBitsToDouble(values[i]);
+    }
+
+    /**
+     * Changes the value of the ith field, which must be a double field.
+     */
+    public void setDouble(int i, double value) {
+        checkType(i, Type.DOUBLE_TYPE);
+        values[i] = Double.doubleToRawLongBits(value);
+        markSet(i);
+    }
+
+    /**
+     * @return true if values of the specified type are kept as their Field
+     *   objects rather than as primitives or Strings.
+     */
+    static boolean isKeptAsField(Type type) {
+        return type == Type.VARCHAR_TYPE || type == Type.DICT_TYPE;
+    }
+
+    /**
+     * @return the value of a fixed-width field, as stored in a long.
+     */
+    static long toBits(Field f) {
+        switch (f.getType()) {
+        case INT_TYPE:
+            return ((IntField) f).getValue();
+        case BYTE_TYPE:
+            return ((ByteField) f).getValue();
+        case SHORT_TYPE:
+            return ((ShortField) f).getValue();
+        case LONG_TYPE:
+            return ((LongField) f).getValue();
+        case DOUBLE_TYPE:
+            return Double.doubleToRawLongBits(((DoubleField) f).getValue());
+        default:
+            throw new IllegalArgumentException(f.getType() + " is not a fixed-width type");
+        }
+    }
+
+    /**
+     * @return a Field of the specified fixed-width type holding a value
+     *   stored by {@link #toBits}.
+     */
+    static Field fromBits(Type type, long bits) {
+        switch (type) {
+        case INT_TYPE:
+            return new IntField((int) bits);
+        case BYTE_TYPE:
+            return new ByteField((byte) bits);
+        case SHORT_TYPE:
+            return new ShortField((short) bits);
+        case LONG_TYPE:
+            return new LongField(bits);
+        case DOUBLE_TYPE:
+            return new DoubleField(Double.longBitsToDouble(bits));
+        default:
+            throw new IllegalArgumentException(type + " is not a fixed-width type");
+        }
+    }
+
+    /** Sets a fixed-width field to a value stored by {@link #toBits}. */
+    void setBits(int i, long bits) {
+        values[i] = bits;
+        markSet(i);
+    }
+
+    public void setField(int i, Field f) {
+        Type type = getTupleDesc().getFieldType(i);
+        if (type == Type.STRING_TYPE) {
+            setString(i, ((StringField) f).getValue());
+        } else if (isKeptAsField(type)) {
+            if (f.getType() != type) {
+                throw new IllegalArgumentException("field " + i + " is not of type " + f.getType());
+            }
+            objects[i] = f;
+        } else if (f.getType() != type) {
+            throw new IllegalArgumentException("field " + i + " is not of type " + f.getType());
+        } else {
+            values[i] = toBits(f);
+            markSet(i);
+        }
+    }
+
+    /**
+     * @return a new Field holding the value of the ith field, or null if it
+     *   has not been set.
+     */
+    public Field getField(int i) {
+        Type type = getTupleDesc().getFieldType(i);
+        if (type == Type.STRING_TYPE) {
+            return strings[i] == null ? null : new StringField(strings[i], Type.STRING_LEN);
+        } else if (isKeptAsField(type)) {
+            return objects[i];
+        }
+        return isSet(i) ? fromBits(type, values[i]) : null;
+    }
+}
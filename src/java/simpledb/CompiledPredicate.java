@@ -0,0 +1,226 @@
+package simpledb;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A predicate resolved, once, for its field type: predicates on int and
+ * string fields become a final class holding the field index, the operator
+ * and the constant, which switches on the operator and compares raw values,
+ * so testing a tuple doesn't go through Field.compare, its virtual call and
+ * its casts. These predicates are also tested straight on the page bytes
+ * (see {@link #matches(AbstractHeapPage, int)}), without decoding a Tuple
+ * or creating a Field; predicates on other types fall back to
+ * Field.compare. No code is generated per predicate, so the operator is
+ * still switched on for every tuple.
+ * <p>
+ * Compiled predicates combine into conjunctions and disjunctions with
+ * {@link #and} and {@link #or}, which short-circuit in the order given.
+ *
+ * @see Predicate#compile
+ */
+public abstract class CompiledPredicate {
+
+    /**
+     * @return true if the specified tuple satisfies this predicate.
+     */
+    public abstract boolean matches(Tuple t);
+
+    /**
+     * @return true if the tuple in the specified used slot of the page
+     *   satisfies this predicate.
+     */
+    public abstract boolean matches(AbstractHeapPage page, int slot);
+
+    /**
+     * Compiles the specified predicate. The type of the field it tests is
+     * taken to be the type of its operand.
+     */
+    public static CompiledPredicate compile(Predicate p) {
+        Field operand = p.getOperand();
+        if (operand instanceof IntField) {
+            return new IntCompare(p.getField(), p.getOp(), ((IntField) operand).getValue());
+        } else if (operand instanceof StringField && p.getOp() != Predicate.Op.LIKE) {
+            String value = ((StringField) operand).getValue();
+            // the bytes must decode back to the value for byte comparisons to
+            // order the same way as StringField
+            if (StandardCharsets.ISO_8859_1.newEncoder().canEncode(value)) {
+                return new StringCompare(p.getField(), p.getOp(), (StringField) operand);
+            }
+        }
+        return new Generic(p);
+    }
+
+    /**
+     * @return a predicate satisfied by tuples that satisfy all of the
+     *   specified ones, tested in order.
+     */
+    public static CompiledPredicate and(final CompiledPredicate... preds) {
+        return new CompiledPredicate() {
+            public boolean matches(Tuple t) {
+                for (CompiledPredicate p : preds) {
+                    if (!p.matches(t)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            public boolean matches(AbstractHeapPage page, int slot) {
+                for (CompiledPredicate p : preds) {
+                    if (!p.matches(page, slot)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return a predicate satisfied by tuples that satisfy any of the
+     *   specified ones, tested in order.
+     */
+    public static CompiledPredicate or(final CompiledPredicate... preds) {
+        return new CompiledPredicate() {
+            public boolean matches(Tuple t) {
+                for (CompiledPredicate p : preds) {
+                    if (p.matches(t)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            public boolean matches(AbstractHeapPage page, int slot) {
+                for (CompiledPredicate p : preds) {
+                    if (p.matches(page, slot)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Falls back to Field.compare, for types without a specialization. */
+    private static class Generic extends CompiledPredicate {
+        private final int field;
+        private final Predicate.Op op;
+        private final Field operand;
+
+        Generic(Predicate p) {
+            this.field = p.getField();
+            this.op = p.getOp();
+            this.operand = p.getOperand();
+        }
+
+        public boolean matches(Tuple t) {
+            return t.getField(field).compare(op, operand);
+        }
+
+        public boolean matches(AbstractHeapPage page, int slot) {
+            return page.getField(slot, field).compare(op, operand);
+        }
+    }
+
+    /**
+     * Compares an int field to a constant with an operator resolved when
+     * the predicate is compiled, the way IntField.compare does.
+     */
+    private static final class IntCompare extends CompiledPredicate {
+        private final int field;
+        private final Predicate.Op op;
+        private final int value;
+
+        IntCompare(int field, Predicate.Op op, int value) {
+            this.field = field;
+            this.op = op;
+            this.value = value;
+        }
+
+        private boolean test(int v) {
+            switch (op) {
+            case EQUALS:
+            case LIKE:
+                return v == value;
+            case NOT_EQUALS:
+                return v != value;
+            case GREATER_THAN:
+                return v > value;
+            case GREATER_THAN_OR_EQ:
+                return v >= value;
+            case LESS_THAN:
+                return v < value;
+            case LESS_THAN_OR_EQ:
+                return v <= value;
+            default:
+                throw new IllegalStateException("unknown operator " + op);
+            }
+        }
+
+        public boolean matches(Tuple t) {
+            int v;
+            if (t instanceof CompactTuple) {
+                v = ((CompactTuple) t).getInt(field);
+            } else if (t instanceof SlotTuple) {
+                v = ((SlotTuple) t).getInt(field);
+            } else {
+                v = ((IntField) t.getField(field)).getValue();
+            }
+            return test(v);
+        }
+
+        public boolean matches(AbstractHeapPage page, int slot) {
+            return test(page.getInt(slot, field));
+        }
+    }
+
+    /**
+     * Compares a string field to a constant, on its bytes when tested on a
+     * page, with an operator resolved when the predicate is compiled and
+     * applied to the sign of the comparison. LIKE isn't supported.
+     */
+    private static final class StringCompare extends CompiledPredicate {
+        private final int field;
+        private final Predicate.Op op;
+        private final StringField value;
+        private final byte[] bytes;
+
+        StringCompare(int field, Predicate.Op op, StringField value) {
+            if (op == Predicate.Op.LIKE) {
+                throw new IllegalArgumentException("no string specialization for " + op);
+            }
+            this.field = field;
+            this.op = op;
+            this.value = value;
+            this.bytes = value.getValue().getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        private boolean test(int cmp) {
+            switch (op) {
+            case EQUALS:
+                return cmp == 0;
+            case NOT_EQUALS:
+                return cmp != 0;
+            case GREATER_THAN:
+                return cmp > 0;
+            case GREATER_THAN_OR_EQ:
+                return cmp >= 0;
+            case LESS_THAN:
+                return cmp < 0;
+            case LESS_THAN_OR_EQ:
+                return cmp <= 0;
+            default:
+                throw new IllegalStateException("unknown operator " + op);
+            }
+        }
+
+        public boolean matches(Tuple t) {
+            return test(((StringField) t.getField(field)).compareTo(value));
+        }
+
+        public boolean matches(AbstractHeapPage page, int slot) {
+            return test(page.compareString(slot, field, bytes));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A PageStore that keeps each page compressed on disk with a
+ * {@link PageCodec}, so reading a page reads only its compressed bytes.
+ * <p>
+ * Compressed pages vary in size, so they can't be found by page number
+ * alone. The data file holds the compressed page images one after another,
+ * and a directory file next to it (<code>base.pages</code>) holds a 16 byte
+ * entry per page: the offset of the page's image in the data file, the
+ * image's length, and the space reserved for it. A page that is rewritten
+ * goes back in its old place if it still fits, and is otherwise appended to
+ * the end of the data file; the space it outgrew isn't reused until the
+ * table is truncated past it. A length of 0 means the page is empty.
+ * <p>
+ * A thread interrupted during I/O closes the channel it was using for every
+ * thread; as in {@link SegmentedFile}, closed channels are reopened on next
+ * use and the I/O that found them closed is retried.
+ *
+ * @Threadsafe
+ */
+public class CompressedPageFile implements PageStore {
+
+    /** Size of a directory entry, in bytes. */
+    private static final int ENTRY_SIZE = 16;
+
+    private final File dataFile;
+    private final File directoryFile;
+    private final PageCodec codec;
+
+    private FileChannel data;
+    private FileChannel directory;
+
+    /** The directory, loaded on first use. */
+    private long[] offsets;
+    private int[] lengths;
+    private int[] capacities;
+    private int numPages = -1;
+    private long dataEnd;
+
+    /**
+     * Creates a compressed store rooted at the specified data file for pages
+     * of the specified schema and layout.
+     *
+     * @throws IllegalArgumentException if the data file holds data but has
+     *   no directory file, as an uncompressed table's file does
+     */
+    public CompressedPageFile(File f, TupleDesc td, PageLayout layout) {
+        this.dataFile = f;
+        this.directoryFile = new File(f.getPath() + ".pages");
+        this.codec = new PageCodec(td, layout);
+        if (f.length() > 0 && !directoryFile.exists()) {
+            throw new IllegalArgumentException(f + " has no page directory "
+                    + directoryFile.getName() + "; it isn't a compressed table");
+        }
+    }
+
+    /**
+     * @return the file holding the page directory.
+     */
+    public File getDirectoryFile() {
+        return directoryFile;
+    }
+
+    /**
+     * Reads the directory, the first time it's needed.
+     */
+    private void load() throws IOException {
+        if (numPages >= 0) {
+            return;
+        }
+        int n = (int) (channel(directoryFile).size() / ENTRY_SIZE);
+        ByteBuffer buf = ByteBuffer.allocate(n * ENTRY_SIZE);
+        readFully(directoryFile, buf, 0);
+        buf.flip();
+        offsets = new long[Math.max(16, n)];
+        lengths = new int[offsets.length];
+        capacities = new int[offsets.length];
+        dataEnd = 0;
+        for (int i = 0; i < n; i++) {
+            offsets[i] = buf.getLong();
+            lengths[i] = buf.getInt();
+            capacities[i] = buf.getInt();
+            dataEnd = Math.max(dataEnd, offsets[i] + capacities[i]);
+        }
+        numPages = n;
+    }
+
+    /**
+     * Returns the channel for the data or directory file, opening it if it
+     * hasn't been opened yet or was closed by an interrupted thread.
+     */
+    private synchronized FileChannel channel(File f) throws IOException {
+        FileChannel channel = f == directoryFile ? directory : data;
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (f == directoryFile) {
+                directory = channel;
+            } else {
+                data = channel;
+            }
+        }
+        return channel;
+    }
+
+    private void readFully(File f, ByteBuffer dst, long position) throws IOException {
+        while (true) {
+            FileChannel channel = channel(f);
+            try {
+                while (dst.hasRemaining()) {
+                    if (channel.read(dst, position + dst.position()) < 0) {
+                        throw new EOFException();
+                    }
+                }
+                return;
+            } catch (ClosedChannelException e) {
+                SegmentedFile.retryAfterClose(e);
+            }
+        }
+    }
+
+    private void writeFully(File f, ByteBuffer src, long position) throws IOException {
+        while (true) {
+            FileChannel channel = channel(f);
+            try {
+                while (src.hasRemaining()) {
+                    channel.write(src, position + src.position());
+                }
+                return;
+            } catch (ClosedChannelException e) {
+                SegmentedFile.retryAfterClose(e);
+            }
+        }
+    }
+
+    public synchronized long numPages() throws IOException {
+        load();
+        return numPages;
+    }
+
+    /**
+     * @return the number of bytes of compressed page images on disk.
+     */
+    public synchronized long compressedSize() throws IOException {
+        load();
+        long size = 0;
+        for (int i = 0; i < numPages; i++) {
+            size += lengths[i];
+        }
+        return size;
+    }
+
+    /**
+     * Reads the compressed image of a page, or returns null if the page
+     * doesn't exist.
+     */
+    private synchronized byte[] readImage(int pageNo) throws IOException {
+        load();
+        if (pageNo < 0 || pageNo >= numPages) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(lengths[pageNo]);
+        readFully(dataFile, buf, offsets[pageNo]);
+        return buf.array();
+    }
+
+    public boolean readPage(int pageNo, byte[] buf) throws IOException {
+        byte[] image = readImage(pageNo);
+        if (image == null) {
+            return false;
+        }
+        if (image.length == 0) {
+            Arrays.fill(buf, 0, BufferPool.getPageSize(), (byte) 0);
+        } else {
+            System.arraycopy(codec.decode(image, image.length), 0, buf, 0, BufferPool.getPageSize());
+        }
+        return true;
+    }
+
+    /**
+     * Reads and decompresses the page on a pool thread.
+     */
+    public CompletableFuture<byte[]> readPageAsync(final int pageNo) {
+        return CompletableFuture.supplyAsync(() -> {
+            byte[] page = new byte[BufferPool.getPageSize()];
+            try {
+                if (!readPage(pageNo, page)) {
+                    throw new IllegalArgumentException("page " + pageNo + " does not exist");
+                }
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            return page;
+        });
+    }
+
+    public void writePage(int pageNo, byte[] page) throws IOException {
+        byte[] image = isEmpty(page) ? new byte[0] : codec.encode(page);
+        writeImage(pageNo, image);
+    }
+
+    private static boolean isEmpty(byte[] page) {
+        for (int i = 0; i < BufferPool.getPageSize(); i++) {
+            if (page[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void writeImage(int pageNo, byte[] image) throws IOException {
+        load();
+        while (numPages <= pageNo) {
+            // pages skipped over are empty
+            grow(numPages + 1);
+            offsets[numPages] = 0;
+            lengths[numPages] = 0;
+            capacities[numPages] = 0;
+            writeEntry(numPages);
+            numPages++;
+        }
+        if (image.length > capacities[pageNo]) {
+            offsets[pageNo] = dataEnd;
+            capacities[pageNo] = image.length;
+            dataEnd += image.length;
+        }
+        lengths[pageNo] = image.length;
+        writeFully(dataFile, ByteBuffer.wrap(image), offsets[pageNo]);
+        writeEntry(pageNo);
+    }
+
+    private void grow(int size) {
+        if (size > offsets.length) {
+            int n = Math.max(size, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, n);
+            lengths = Arrays.copyOf(lengths, n);
+            capacities = Arrays.copyOf(capacities, n);
+        }
+    }
+
+    private void writeEntry(int pageNo) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        entry.putLong(offsets[pageNo]).putInt(lengths[pageNo]).putInt(capacities[pageNo]);
+        entry.flip();
+        writeFully(directoryFile, entry, (long) pageNo * ENTRY_SIZE);
+    }
+
+    public synchronized void truncate(long newPages) throws IOException {
+        load();
+        numPages = (int) Math.min(numPages, newPages);
+        dataEnd = 0;
+        for (int i = 0; i < numPages; i++) {
+            dataEnd = Math.max(dataEnd, offsets[i] + capacities[i]);
+        }
+        channel(directoryFile).truncate((long) numPages * ENTRY_SIZE);
+        channel(dataFile).truncate(dataEnd);
+    }
+
+    public synchronized void force() throws IOException {
+        if (numPages >= 0) {
+            channel(dataFile).force(false);
+            channel(directoryFile).force(false);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (data != null) {
+            data.close();
+            data = null;
+        }
+        if (directory != null) {
+            directory.close();
+            directory = null;
+        }
+    }
+}
@@ -2,6 +2,8 @@
 package simpledb;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 import java.io.*;
 
 /**
@@ -19,6 +21,15 @@ public interface DbFile {
      */
     public Page readPage(PageId id);
 
+    /**
+     * Start reading the specified page from disk without blocking the caller.
+     * The returned future completes with the page once it has been read, or
+     * exceptionally if the read fails.
+     *
+     * @see #readPage
+     */
+    public CompletableFuture<Page> readPageAsync(PageId id);
+
     /**
      * Push the specified page to disk.
      *
@@ -68,6 +79,29 @@ public interface DbFile {
      */
     public DbFileIterator iterator(TransactionId tid);
 
+    /**
+     * Returns a Spliterator over all the tuples stored in this DbFile. The
+     * spliterator splits on page boundaries, so a parallel stream built on
+     * it scans disjoint sets of pages on each thread.
+     *
+     * @return a Spliterator over all the tuples stored in this DbFile.
+     */
+    public Spliterator<Tuple> tupleSpliterator(TransactionId tid);
+
+    /**
+     * Returns a sequential Stream over all the tuples stored in this DbFile.
+     * Call {@link Stream#parallel} on the result to scan it on several threads.
+     * Errors reading the file are rethrown as RuntimeExceptions.
+     * <p>
+     * Closing the stream closes the page iterators it still has open, which
+     * matters when a terminal operation such as findFirst stops early. The
+     * caller owns tid: the stream never completes it, so the pages read stay
+     * locked until the caller calls {@link BufferPool#transactionComplete}.
+     *
+     * @return a Stream over all the tuples stored in this DbFile.
+     */
+    public Stream<Tuple> stream(TransactionId tid);
+
     /**
      * Returns a unique ID used to identify this DbFile in the Catalog. This id
      * can be used to look up the table via {@link Catalog#getDatabaseFile} and
@@ -0,0 +1,230 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Instance of Field that stores a string as a code in the dictionary of its
+ * table, for string columns with few distinct values. A DICT field takes 4
+ * bytes in its tuple, however long its value; see {@link StringDictionary}.
+ * <p>
+ * A field read from a page holds only its code, and looks its value up the
+ * first time it is asked for. Equality tests between fields of the same
+ * table compare codes; a field created from a string (say, a predicate
+ * operand) looks its code up in the other field's dictionary once and
+ * remembers it. Other comparisons compare the values.
+ * <p>
+ * Fields created from a string get their code when their tuple is inserted
+ * into a HeapFile (see {@link HeapFile#insertTuple}), which adds the value
+ * to the file's dictionary if necessary.
+ */
+public class DictField implements Field {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Code of a value that isn't in a dictionary. */
+    public static final int NO_CODE = -1;
+
+    /** The code of the value in the dictionary of table tableId, or NO_CODE. */
+    private final int code;
+    private int tableId;
+
+    /** The value; null until looked up. */
+    private volatile String value;
+
+    /** The table and code last found by {@link #codeIn}, or null. */
+    private transient volatile int[] lookup;
+
+    /**
+     * Constructor.
+     *
+     * @param s
+     *            The value of this field.
+     */
+    public DictField(String s) {
+        this.code = NO_CODE;
+        this.value = s;
+    }
+
+    /**
+     * Creates a field from the code stored in a tuple. The value is looked
+     * up in the dictionary of the table set with {@link #setTableId}.
+     */
+    DictField(int code) {
+        this.code = code;
+    }
+
+    private DictField(String value, int tableId, int code) {
+        this.code = code;
+        this.tableId = tableId;
+        this.value = value;
+    }
+
+    /**
+     * @return the value of this field, looking it up in the dictionary if
+     *   necessary.
+     * @throws RuntimeException if the dictionary can't be read
+     */
+    public String getValue() {
+        String v = value;
+        if (v == null) {
+            try {
+                v = dictionary(tableId).decode(code);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            value = v;
+        }
+        return v;
+    }
+
+    private static StringDictionary dictionary(int tableId) {
+        return ((HeapFile) Database.getCatalog().getDatabaseFile(tableId)).getDictionary();
+    }
+
+    /**
+     * @return the code of this field in the dictionary of its table, or
+     *   NO_CODE if it hasn't been stored in one.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return true if the value is in memory, so getValue() won't look it
+     *   up.
+     */
+    public boolean isDecoded() {
+        return value != null;
+    }
+
+    int getTableId() {
+        return tableId;
+    }
+
+    void setTableId(int tableId) {
+        this.tableId = tableId;
+    }
+
+    /**
+     * @return a copy of this field with the specified code in the dictionary
+     *   of the specified table.
+     */
+    DictField withCode(int tableId, int code) {
+        return new DictField(value, tableId, code);
+    }
+
+    /**
+     * @return the code of this field's value in the dictionary of the
+     *   specified table, or NO_CODE if it isn't in it.
+     */
+    int codeIn(int table) {
+        if (code != NO_CODE && tableId == table) {
+            return code;
+        }
+        int[] l = lookup;
+        if (l != null && l[0] == table) {
+            return l[1];
+        }
+        int c;
+        try {
+            c = dictionary(table).lookup(getValue());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (c != NO_CODE) {
+            // a value that's missing may still be added, so only codes found
+            // are remembered
+            lookup = new int[] { table, c };
+        }
+        return c;
+    }
+
+    public String toString() {
+        return getValue();
+    }
+
+    public int hashCode() {
+        return getValue().hashCode();
+    }
+
+    public boolean equals(Object field) {
+        if (!(field instanceof DictField)) {
+            return false;
+        }
+        DictField f = (DictField) field;
+        if (code != NO_CODE && f.code != NO_CODE && tableId == f.tableId) {
+            return code == f.code;
+        }
+        return f.getValue().equals(getValue());
+    }
+
+    /**
+     * Write this field to buf. Always writes 4 bytes: the code of the value.
+     *
+     * @param buf
+     *            Where the field is written
+     * @throws IllegalStateException
+     *            if the value hasn't been stored in a dictionary
+     */
+    public void write(ByteBuffer buf) {
+        if (code == NO_CODE) {
+            throw new IllegalStateException("value \"" + value
+                    + "\" must be stored in a dictionary first");
+        }
+        buf.putInt(code);
+    }
+
+    /**
+     * Compare the specified field to the value of this Field. Return semantics
+     * are as specified by Field.compare. Equality is decided by comparing
+     * codes if either field has one.
+     *
+     * @throws IllegalCastException
+     *             if val is not a DictField
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+
+        DictField dVal = (DictField) val;
+        if (op == Predicate.Op.EQUALS || op == Predicate.Op.NOT_EQUALS) {
+            boolean eq;
+            if (code != NO_CODE) {
+                eq = dVal.codeIn(tableId) == code;
+            } else if (dVal.code != NO_CODE) {
+                eq = codeIn(dVal.tableId) == dVal.code;
+            } else {
+                eq = getValue().equals(dVal.getValue());
+            }
+            return op == Predicate.Op.EQUALS ? eq : !eq;
+        }
+        int cmpVal = getValue().compareTo(dVal.getValue());
+
+        switch (op) {
+        case GREATER_THAN:
+            return cmpVal > 0;
+
+        case GREATER_THAN_OR_EQ:
+            return cmpVal >= 0;
+
+        case LESS_THAN:
+            return cmpVal < 0;
+
+        case LESS_THAN_OR_EQ:
+            return cmpVal <= 0;
+
+        case LIKE:
+            return getValue().indexOf(dVal.getValue()) >= 0;
+
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @return the Type for this Field
+     */
+    public Type getType() {
+        return Type.DICT_TYPE;
+    }
+}
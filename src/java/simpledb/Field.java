@@ -1,18 +1,33 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Interface for values of fields in tuples in SimpleDB.
  */
 public interface Field extends Serializable{
+    /**
+     * Write the bytes representing this field to the specified buffer, at
+     * its position, which is advanced by {@link Type#getLen} bytes. The
+     * buffer must have the default, big-endian, byte order.
+     * @param buf The buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer has fewer
+     *   bytes remaining than the field needs.
+     */
+    void write(ByteBuffer buf);
+
     /**
      * Write the bytes representing this field to the specified
-     * DataOutputStream.
+     * DataOutputStream, in the format of {@link #write}.
      * @see DataOutputStream
      * @param dos The DataOutputStream to write to.
      */
-    void serialize(DataOutputStream dos) throws IOException;
+    default void serialize(DataOutputStream dos) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(getType().getLen());
+        write(buf);
+        dos.write(buf.array(), 0, buf.position());
+    }
 
     /**
      * Compare the value of this field object to the passed in value.
@@ -23,7 +38,7 @@ public interface Field extends Serializable{
     public boolean compare(Predicate.Op op, Field value);
 
     /**
-     * Returns the type of this field (see {@link Type#INT_TYPE} or {@link Type#STRING_TYPE}
+     * Returns the type of this field (see {@link Type#INT_TYPE}, {@link Type#STRING_TYPE}, etc.)
      * @return type of this field
      */
     public Type getType();
@@ -1,7 +1,14 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * HeapFile is an implementation of a DbFile that stores a collection of tuples
@@ -9,6 +16,23 @@ import java.util.*;
  * size, and the file is simply a collection of those pages. HeapFile works
  * closely with HeapPage. The format of HeapPages is described in the HeapPage
  * constructor.
+ * <p>
+ * The pages are stored in a {@link SegmentedFile}, so large tables are split
+ * across several segment files of at most segmentSize bytes each, and the
+ * file can be grown a whole extent at a time as tuples are appended.
+ * Alternatively the pages can be stored compressed, in a
+ * {@link CompressedPageFile}.
+ * <p>
+ * How tuples are laid out on the pages is chosen per file; see
+ * {@link PageLayout}. By default pages use the fixed-width layout of HeapPage.
+ * <p>
+ * Once asked for, a {@link ZoneMap} of the file is kept up to date as tuples
+ * are inserted, deleted and written out, and scans with a predicate (see
+ * {@link #iterator(TransactionId, Predicate)}) use it to skip pages.
+ * <p>
+ * VARCHAR values too long to be stored in their tuples are kept in the
+ * file's {@link OverflowFile}, and the values of DICT fields in its
+ * {@link StringDictionary}.
  * 
  * @see simpledb.HeapPage#HeapPage
  * @author Sam Madden
@@ -17,6 +41,18 @@ public class HeapFile implements DbFile {
 
     private File heapFile;
     private TupleDesc tupleDesc;
+    private PageStore store;
+    private PageLayout layout;
+    private volatile ZoneMap zoneMap;
+    private volatile OverflowFile overflow;
+    private volatile StringDictionary dictionary;
+
+    /** Per-thread buffer pages are serialized into when they're written. */
+    private static final ThreadLocal<byte[]> WRITE_BUFFER = new ThreadLocal<byte[]>() {
+        protected byte[] initialValue() {
+            return new byte[BufferPool.getPageSize()];
+        }
+    };
 
     /**
      * Constructs a heap file backed by the specified file.
@@ -26,9 +62,112 @@ public class HeapFile implements DbFile {
      *            file.
      */
     public HeapFile(File f, TupleDesc td) {
+        this(f, td, SegmentedFile.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs a heap file backed by the specified file whose pages use the
+     * specified layout.
+     *
+     * @param f
+     *            the file that stores the on-disk backing store for this heap
+     *            file.
+     * @param layout
+     *            how tuples are laid out on the pages of the file.
+     */
+    public HeapFile(File f, TupleDesc td, PageLayout layout) {
+        this(f, td, SegmentedFile.DEFAULT_SEGMENT_SIZE, 0, layout);
+    }
+
+    /**
+     * Constructs a heap file backed by the specified file whose pages use the
+     * specified layout and are optionally compressed on disk.
+     *
+     * @param f
+     *            the file that stores the on-disk backing store for this heap
+     *            file.
+     * @param layout
+     *            how tuples are laid out on the pages of the file.
+     * @param compressed
+     *            whether to store the pages compressed.
+     * @see CompressedPageFile
+     */
+    public HeapFile(File f, TupleDesc td, PageLayout layout, boolean compressed) {
+        this(f, td, layout, compressed ? new CompressedPageFile(f, td, layout)
+                : new SegmentedFile(f, SegmentedFile.DEFAULT_SEGMENT_SIZE));
+    }
+
+    /**
+     * Constructs a heap file backed by the specified file, split into segment
+     * files of the specified size.
+     *
+     * @param f
+     *            the file that stores the first segment of this heap file.
+     * @param segmentSize
+     *            the maximum size of each segment file, in bytes.
+     * @see SegmentedFile
+     */
+    public HeapFile(File f, TupleDesc td, long segmentSize) {
+        this(f, td, segmentSize, 0);
+    }
+
+    /**
+     * Constructs a heap file backed by the specified file, split into segment
+     * files of the specified size, that preallocates space on disk an extent
+     * at a time as it grows.
+     *
+     * @param f
+     *            the file that stores the first segment of this heap file.
+     * @param segmentSize
+     *            the maximum size of each segment file, in bytes.
+     * @param extentSize
+     *            the number of bytes to preallocate each time the file grows;
+     *            one page or less grows the file a page at a time.
+     * @see SegmentedFile
+     */
+    public HeapFile(File f, TupleDesc td, long segmentSize, long extentSize) {
+        this(f, td, segmentSize, extentSize, PageLayout.FIXED);
+    }
+
+    /**
+     * Constructs a heap file backed by the specified file, split into segment
+     * files of the specified size, that preallocates space on disk an extent
+     * at a time as it grows and whose pages use the specified layout.
+     *
+     * @param f
+     *            the file that stores the first segment of this heap file.
+     * @param segmentSize
+     *            the maximum size of each segment file, in bytes.
+     * @param extentSize
+     *            the number of bytes to preallocate each time the file grows;
+     *            one page or less grows the file a page at a time.
+     * @param layout
+     *            how tuples are laid out on the pages of the file.
+     * @see SegmentedFile
+     * @see PageLayout
+     */
+    public HeapFile(File f, TupleDesc td, long segmentSize, long extentSize,
+            PageLayout layout) {
+        this(f, td, layout, new SegmentedFile(f, segmentSize, extentSize));
+    }
+
+    /**
+     * Constructs a heap file whose pages use the specified layout and are
+     * stored in the specified store.
+     *
+     * @param f
+     *            the file that identifies this heap file; see {@link #getId}.
+     * @param layout
+     *            how tuples are laid out on the pages of the file.
+     * @param store
+     *            where the pages are stored.
+     */
+    public HeapFile(File f, TupleDesc td, PageLayout layout, PageStore store) {
         // some code goes here
         heapFile = f;
         tupleDesc = td;
+        this.layout = layout;
+        this.store = store;
     }
 
     /**
@@ -41,6 +180,112 @@ public class HeapFile implements DbFile {
         return heapFile;
     }
 
+    /**
+     * Returns the layout of the pages of this HeapFile.
+     */
+    public PageLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the zone map of this file, creating it the first time it is
+     * asked for. Pages the file has at that point are summarized when the
+     * zone map is rebuilt (see {@link ZoneMap#rebuildAsync}).
+     */
+    public ZoneMap getZoneMap() {
+        ZoneMap zm = zoneMap;
+        if (zm == null) {
+            synchronized (this) {
+                if (zoneMap == null) {
+                    zoneMap = new ZoneMap(this);
+                }
+                zm = zoneMap;
+            }
+        }
+        return zm;
+    }
+
+    /**
+     * Returns the overflow pages of this file, which hold its long VARCHAR
+     * values.
+     */
+    public OverflowFile getOverflowFile() {
+        OverflowFile ovf = overflow;
+        if (ovf == null) {
+            synchronized (this) {
+                if (overflow == null) {
+                    overflow = new OverflowFile(heapFile);
+                }
+                ovf = overflow;
+            }
+        }
+        return ovf;
+    }
+
+    /**
+     * Returns the dictionary of this file, which holds the values of its
+     * DICT fields.
+     */
+    public StringDictionary getDictionary() {
+        StringDictionary dict = dictionary;
+        if (dict == null) {
+            synchronized (this) {
+                if (dictionary == null) {
+                    dictionary = new StringDictionary(StringDictionary.fileFor(heapFile));
+                }
+                dict = dictionary;
+            }
+        }
+        return dict;
+    }
+
+    /**
+     * Stores the values of t that don't go on the page as they are: VARCHAR
+     * values too long for the tuple are written to overflow pages of this
+     * file, and DICT values are given codes in its dictionary, unless they
+     * already are. The fields are replaced in t with ones referring to the
+     * overflow pages or codes.
+     */
+    private void storeOutOfLine(Tuple t) throws IOException {
+        for (int i = 0; i < tupleDesc.numFields(); i++) {
+            if (tupleDesc.getFieldType(i) == Type.VARCHAR_TYPE) {
+                VarcharField f = (VarcharField) t.getField(i);
+                if (f.isInline() || (f.getOverflowPage() != OverflowFile.NO_PAGE
+                        && f.getTableId() == getId())) {
+                    continue;
+                }
+                byte[] bytes = f.getValue().getBytes(StandardCharsets.UTF_8);
+                t.setField(i, f.withOverflowPage(getId(), getOverflowFile().write(bytes)));
+            } else if (tupleDesc.getFieldType(i) == Type.DICT_TYPE) {
+                DictField f = (DictField) t.getField(i);
+                if (f.getCode() != DictField.NO_CODE && f.getTableId() == getId()) {
+                    continue;
+                }
+                t.setField(i, f.withCode(getId(), getDictionary().encode(f.getValue())));
+            }
+        }
+    }
+
+    /**
+     * Tells the zone map, if there is one, that t was added to page.
+     */
+    void tupleInserted(AbstractHeapPage page, Tuple t) {
+        ZoneMap zm = zoneMap;
+        if (zm != null) {
+            zm.tupleInserted(page.getId().pageNumber(), t);
+        }
+    }
+
+    /**
+     * Tells the zone map, if there is one, that a tuple was removed from page.
+     */
+    void tupleDeleted(AbstractHeapPage page) {
+        ZoneMap zm = zoneMap;
+        if (zm != null) {
+            zm.tupleDeleted(page);
+        }
+    }
+
     /**
      * Returns an ID uniquely identifying this HeapFile. Implementation note:
      * you will need to generate this tableid somewhere ensure that each
@@ -68,28 +313,55 @@ public class HeapFile implements DbFile {
     // see DbFile.java for javadocs
     public Page readPage(PageId pid) {
         // some code goes here
+        byte[] data = new byte[BufferPool.getPageSize()];
         try {
-            int position = Database.getBufferPool().getPageSize()*pid.pageNumber();
-            FileInputStream fileInputStream = null;
-            byte[] bFile = new byte[(int) heapFile.length()];
-            fileInputStream = new FileInputStream(heapFile);
-            fileInputStream.read(bFile);
-            fileInputStream.close();
-            byte[] data = Arrays.copyOfRange(bFile, position, position + Database.getBufferPool().getPageSize());
-            HeapPageId heapPageId = (HeapPageId) pid;
-            return new HeapPage(heapPageId, data);
+            if (!store.readPage(pid.pageNumber(), data)) {
+                throw new IllegalArgumentException("page " + pid.pageNumber() + " does not exist");
+            }
+            return layout.createPage((HeapPageId) pid, data);
         } catch (IOException e) {
-            return null;
-        } catch (NoSuchElementException e) {
-            return null;
+            throw new RuntimeException(e);
         }
-        
+    }
+
+    // see DbFile.java for javadocs
+    public CompletableFuture<Page> readPageAsync(final PageId pid) {
+        return store.readPageAsync(pid.pageNumber()).thenApply(data -> {
+            try {
+                return (Page) layout.createPage((HeapPageId) pid, data);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
     }
 
     // see DbFile.java for javadocs
     public void writePage(Page page) throws IOException {
         // some code goes here
-        // not necessary for lab1
+        ZoneMap zm = zoneMap;
+        if (zm != null) {
+            zm.pageWritten((AbstractHeapPage) page);
+        }
+        OverflowFile ovf = overflow;
+        if (ovf != null) {
+            ovf.force();
+        }
+        StringDictionary dict = dictionary;
+        if (dict != null) {
+            dict.force();
+        }
+        if (page instanceof HeapPage) {
+            // serialize into a reused buffer instead of a fresh array
+            byte[] buf = WRITE_BUFFER.get();
+            if (buf.length != BufferPool.getPageSize()) {
+                buf = new byte[BufferPool.getPageSize()];
+                WRITE_BUFFER.set(buf);
+            }
+            ((HeapPage) page).writePageData(ByteBuffer.wrap(buf));
+            store.writePage(page.getId().pageNumber(), buf);
+        } else {
+            store.writePage(page.getId().pageNumber(), page.getPageData());
+        }
     }
 
     /**
@@ -97,95 +369,344 @@ public class HeapFile implements DbFile {
      */
     public int numPages() {
         // some code goes here
-        return (int) Math.ceil(this.heapFile.length()/Database.getBufferPool().getPageSize());
+        long pages;
+        try {
+            pages = store.numPages();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (pages > Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many pages in " + heapFile);
+        }
+        return (int) pages;
     }
 
     // see DbFile.java for javadocs
     public ArrayList<Page> insertTuple(TransactionId tid, Tuple t)
             throws DbException, IOException, TransactionAbortedException {
         // some code goes here
-        return null;
-        // not necessary for lab1
+        if (t instanceof SlotTuple) {
+            // it reads from a page and can't be stored on one
+            t = t.copy();
+        }
+        storeOutOfLine(t);
+        ArrayList<Page> modified = new ArrayList<Page>();
+        for (int i = 0; i < numPages(); i++) {
+            AbstractHeapPage page = (AbstractHeapPage) Database.getBufferPool().getPage(tid,
+                    new HeapPageId(getId(), i), Permissions.READ_WRITE);
+            if (page.hasRoomFor(t)) {
+                page.insertTuple(t);
+                tupleInserted(page, t);
+                modified.add(page);
+                return modified;
+            }
+        }
+
+        // every page is full, so add a new one to the end of the file
+        HeapPageId pid = new HeapPageId(getId(), numPages());
+        store.writePage(pid.pageNumber(), HeapPage.createEmptyPageData());
+        AbstractHeapPage page = (AbstractHeapPage) Database.getBufferPool().getPage(tid, pid,
+                Permissions.READ_WRITE);
+        page.insertTuple(t);
+        tupleInserted(page, t);
+        modified.add(page);
+        return modified;
     }
 
     // see DbFile.java for javadocs
     public ArrayList<Page> deleteTuple(TransactionId tid, Tuple t) throws DbException,
             TransactionAbortedException {
         // some code goes here
-        return null;
-        // not necessary for lab1
+        RecordId rid = t.getRecordId();
+        if (rid == null || rid.getPageId().getTableId() != getId()) {
+            throw new DbException("tuple is not a member of this file");
+        }
+        if (t instanceof SlotTuple) {
+            // its RecordId can't be cleared, so delete a copy
+            t = t.copy();
+        }
+        AbstractHeapPage page = (AbstractHeapPage) Database.getBufferPool().getPage(tid,
+                rid.getPageId(), Permissions.READ_WRITE);
+        page.deleteTuple(t);
+        tupleDeleted(page);
+        ArrayList<Page> modified = new ArrayList<Page>();
+        modified.add(page);
+        return modified;
+    }
+
+    /**
+     * Shrinks this file to the specified number of pages, discarding any
+     * cached copies of the removed pages. The caller must make sure the
+     * removed pages hold no tuples.
+     */
+    void truncate(int numPages) throws IOException {
+        int oldPages = numPages();
+        for (int i = numPages; i < oldPages; i++) {
+            Database.getBufferPool().discardPage(new HeapPageId(getId(), i));
+        }
+        store.truncate(numPages);
+    }
+
+    /**
+     * Closes the files holding this file's pages, for a table that has been
+     * dropped from the catalog. They are reopened if the file is used again.
+     */
+    public void close() throws IOException {
+        store.close();
     }
 
     // see DbFile.java for javadocs
     public DbFileIterator iterator(TransactionId tid){
         // some code goes here
-        return new HeapFileIterator(this, tid);
+        return new HeapFileIterator(this, tid, 0, numPages(), null, null, false);
+    }
+
+    /**
+     * Returns an iterator over the tuples of this file that, in reuse mode,
+     * returns the same {@link SlotTuple} for every tuple instead of a new
+     * Tuple each time. A tuple returned in reuse mode is only valid until the
+     * next call to hasNext() or next(); call {@link Tuple#copy} to keep it.
+     *
+     * @param tid the transaction the iterator runs as part of
+     * @param reuse whether to return the same SlotTuple for every tuple
+     */
+    public DbFileIterator iterator(TransactionId tid, boolean reuse) {
+        return new HeapFileIterator(this, tid, 0, numPages(), null, null, reuse);
+    }
+
+    /**
+     * Returns an iterator over the tuples of this file that satisfy the
+     * specified predicate. Blocks of pages the zone map shows can't hold a
+     * matching tuple are skipped without being read.
+     *
+     * @param tid the transaction the iterator runs as part of
+     * @param pred the predicate returned tuples satisfy
+     */
+    public DbFileIterator iterator(TransactionId tid, Predicate pred) {
+        return iterator(tid, pred, false);
+    }
+
+    /**
+     * Returns an iterator over the tuples of this file that satisfy the
+     * specified predicate, optionally in reuse mode (see
+     * {@link #iterator(TransactionId, boolean)}).
+     *
+     * @param tid the transaction the iterator runs as part of
+     * @param pred the predicate returned tuples satisfy
+     * @param reuse whether to return the same SlotTuple for every tuple
+     */
+    public DbFileIterator iterator(TransactionId tid, Predicate pred, boolean reuse) {
+        return new HeapFileIterator(this, tid, 0, numPages(), pred,
+                pred == null ? null : pred.compile(), reuse);
     }
 
-    private class HeapFileIterator implements DbFileIterator {
+    /**
+     * Returns an iterator over the tuples of this file that satisfy the
+     * specified compiled predicate, which may combine several predicates
+     * with {@link CompiledPredicate#and} and {@link CompiledPredicate#or}.
+     * The predicate is tested on the page bytes, so tuples that don't
+     * satisfy it are never decoded. The zone map isn't consulted.
+     *
+     * @param tid the transaction the iterator runs as part of
+     * @param filter the predicate returned tuples satisfy
+     * @param reuse whether to return the same SlotTuple for every tuple
+     */
+    public DbFileIterator iterator(TransactionId tid, CompiledPredicate filter, boolean reuse) {
+        return new HeapFileIterator(this, tid, 0, numPages(), null, filter, reuse);
+    }
+
+    /**
+     * Returns an iterator over the tuples stored on pages [startPage,
+     * endPage) of this file. Used by scans that split a table into page
+     * ranges (see {@link ParallelSeqScan}).
+     *
+     * @param tid the transaction the iterator runs as part of
+     * @param startPage the first page to scan (inclusive)
+     * @param endPage the last page to scan (exclusive); clamped to numPages()
+     */
+    public DbFileIterator iterator(TransactionId tid, int startPage, int endPage) {
+        return new HeapFileIterator(this, tid, startPage, Math.min(endPage, numPages()), null,
+                null, false);
+    }
+
+    // see DbFile.java for javadocs
+    public Spliterator<Tuple> tupleSpliterator(TransactionId tid) {
+        return new HeapFileSpliterator(tid, 0, numPages(),
+                new ArrayList<HeapFileSpliterator>());
+    }
+
+    // see DbFile.java for javadocs
+    public Stream<Tuple> stream(TransactionId tid) {
+        HeapFileSpliterator split = new HeapFileSpliterator(tid, 0, numPages(),
+                new ArrayList<HeapFileSpliterator>());
+        return StreamSupport.stream(split, false).onClose(split::closeAll);
+    }
+
+    /**
+     * @return the most tuples that fit on a page of this file.
+     */
+    private int slotsPerPage() {
+        return layout.maxTuplesPerPage(tupleDesc);
+    }
+
+    /**
+     * Spliterator over pages [startPage, endPage) of this file. Splitting
+     * hands the lower half of the remaining page range to the new
+     * spliterator, as long as this one hasn't started reading yet. A
+     * spliterator and all the ones split from it share one list, so a
+     * stream cut short can close the iterators that are still open.
+     */
+    private class HeapFileSpliterator implements Spliterator<Tuple> {
+
+        private TransactionId tid;
+        private int startPage;
+        private int endPage;
+        private List<HeapFileSpliterator> family;
+        private DbFileIterator iter;
+
+        public HeapFileSpliterator(TransactionId tid, int startPage, int endPage,
+                List<HeapFileSpliterator> family) {
+            this.tid = tid;
+            this.startPage = startPage;
+            this.endPage = endPage;
+            this.family = family;
+            synchronized (family) {
+                family.add(this);
+            }
+        }
+
+        public boolean tryAdvance(Consumer<? super Tuple> action) {
+            try {
+                if (iter == null) {
+                    iter = iterator(tid, startPage, endPage);
+                    iter.open();
+                }
+                if (!iter.hasNext()) {
+                    close();
+                    return false;
+                }
+                action.accept(iter.next());
+                return true;
+            } catch (DbException e) {
+                throw new RuntimeException(e);
+            } catch (TransactionAbortedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public Spliterator<Tuple> trySplit() {
+            if (iter != null || endPage - startPage < 2) {
+                return null;
+            }
+            int mid = startPage + (endPage - startPage) / 2;
+            Spliterator<Tuple> prefix = new HeapFileSpliterator(tid, startPage, mid, family);
+            startPage = mid;
+            return prefix;
+        }
+
+        /**
+         * Upper bound on the remaining tuples: every slot of every remaining
+         * page. Pages aren't necessarily full, so this is not reported as SIZED.
+         */
+        public long estimateSize() {
+            return (long) (endPage - startPage) * slotsPerPage();
+        }
+
+        public int characteristics() {
+            return Spliterator.NONNULL;
+        }
+
+        /** Closes this spliterator's page iterator, if it is open. */
+        private void close() {
+            if (iter != null) {
+                iter.close();
+                iter = null;
+                startPage = endPage;
+            }
+        }
+
+        /** Closes this spliterator and every spliterator split from it. */
+        void closeAll() {
+            synchronized (family) {
+                for (HeapFileSpliterator split : family)
+                    split.close();
+            }
+        }
+    }
+
+    private class HeapFileIterator extends AbstractDbFileIterator {
 
         private HeapFile hfile;
-        private int numPages;
         private TransactionId tid;
+        private int startPage;
+        private int endPage;
+        private Predicate pred;
+        private CompiledPredicate filter;
+        private ZoneMap zoneMap;
+        private SlotTuple reuse;
         private int currentPageNum;
         private Iterator<Tuple> currentIter;
         private boolean open;
 
-        
-        public HeapFileIterator(HeapFile hfile, TransactionId tid){
+        public HeapFileIterator(HeapFile hfile, TransactionId tid, int startPage, int endPage,
+                Predicate pred, CompiledPredicate filter, boolean reuse){
             this.hfile = hfile;
-            this.numPages = hfile.numPages();
             this.tid = tid;
-            this.currentPageNum = 0;
-            this.currentIter = getPageIterator(currentPageNum);
-            this.open = false;          
-
+            this.startPage = startPage;
+            this.endPage = endPage;
+            this.pred = pred;
+            this.filter = filter;
+            this.zoneMap = pred == null ? null : hfile.getZoneMap();
+            this.reuse = reuse ? new SlotTuple(hfile.getTupleDesc()) : null;
+            this.open = false;
         }
 
         public void open(){
+            currentPageNum = startPage;
+            currentIter = null;
             open = true;
         }
 
-        public boolean hasNext(){
-            if (open) {
-                return currentPageNum < numPages;
-            }
-            else {
-                return false;
+        protected Tuple readNext() throws DbException, TransactionAbortedException {
+            if (!open) {
+                return null;
             }
-        }
-
-
-        public Tuple next() {
-            if (hasNext()){
-                if (currentIter.hasNext()) {
-                    Tuple result = currentIter.next();
-                    if (!currentIter.hasNext()){
-                        currentPageNum++;
-                        currentIter = getPageIterator(currentPageNum);
+            // skip over pages with no (remaining) matching tuples on them;
+            // the page iterator tests the filter
+            while (currentIter == null || !currentIter.hasNext()) {
+                if (currentPageNum >= endPage) {
+                    return null;
+                }
+                if (zoneMap != null) {
+                    int block = currentPageNum / zoneMap.getBlockPages();
+                    if (zoneMap.canSkip(block, pred)) {
+                        currentPageNum = (block + 1) * zoneMap.getBlockPages();
+                        continue;
                     }
-                    return result;
-                } 
-            } else {
-                throw new NoSuchElementException();
+                }
+                currentIter = getPageIterator(currentPageNum++);
             }
-            return null;
+            return currentIter.next();
         }
 
         public void rewind(){
-
+            close();
+            open();
         }
 
         public void close(){
+            super.close();
+            currentIter = null;
             open = false;
         }
 
-        private Iterator<Tuple> getPageIterator(int pageNum){
+        private Iterator<Tuple> getPageIterator(int pageNum)
+                throws DbException, TransactionAbortedException {
             
             HeapPageId heapPageId = new HeapPageId(hfile.getId(), pageNum);
-            //HeapPage currentPage = (HeapPage) Database.getBufferPool().getPage(tid, heapPageId, Permissions.READ_ONLY);
-            HeapPage currentPage = (HeapPage) hfile.readPage(heapPageId);
-            Iterator<Tuple> iter = currentPage.iterator();
+            AbstractHeapPage currentPage = (AbstractHeapPage) Database.getBufferPool().getPage(tid,
+                    heapPageId, Permissions.READ_ONLY);
+            Iterator<Tuple> iter = currentPage.iterator(reuse, filter);
             return iter;
            
            
@@ -193,4 +714,3 @@ public class HeapFile implements DbFile {
     }
 
 }
-
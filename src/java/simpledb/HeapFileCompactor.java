@@ -0,0 +1,171 @@
+package simpledb;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * HeapFileCompactor reclaims the space left behind by deletes in a HeapFile.
+ * It moves tuples off the pages at the end of the file into free slots on
+ * pages nearer the start, then truncates the emptied pages off the end.
+ * <p>
+ * The work is done incrementally: each call to {@link #step} moves at most
+ * a fixed number of tuples in its own transaction and commits it before
+ * returning, so a compaction can be interleaved with other work instead of
+ * holding the table for the whole pass. Moved tuples get new RecordIds.
+ * Tuples are moved into the first page with room for them, so with
+ * variable-length records (see {@link PageLayout#SLOTTED}) a page that is
+ * too full for one tuple is not revisited for smaller ones. Pages holding
+ * another transaction's uncommitted changes are left alone: their tuples
+ * stay where they are and their free slots aren't used. The pages of a step
+ * are logged as they are written, so recovery undoes a step that crashed
+ * before its commit record was written.
+ */
+public class HeapFileCompactor {
+
+    /** Default number of tuples moved per step. */
+    public static final int DEFAULT_TUPLES_PER_STEP = 128;
+
+    private final HeapFile file;
+    private final int tuplesPerStep;
+    private final int pagesBefore;
+    private int pagesAfter;
+
+    /** Lowest page that may still have a free slot. */
+    private int head;
+    /** Highest page that may still hold tuples. */
+    private int tail;
+    private boolean done;
+
+    /**
+     * Creates a compactor for the specified file.
+     *
+     * @param file the file to compact
+     * @param tuplesPerStep the maximum number of tuples to move per step
+     */
+    public HeapFileCompactor(HeapFile file, int tuplesPerStep) {
+        if (tuplesPerStep < 1) {
+            throw new IllegalArgumentException("tuplesPerStep must be positive");
+        }
+        this.file = file;
+        this.tuplesPerStep = tuplesPerStep;
+        this.pagesBefore = file.numPages();
+        this.pagesAfter = pagesBefore;
+        this.head = 0;
+        this.tail = pagesBefore - 1;
+        this.done = false;
+    }
+
+    public HeapFileCompactor(HeapFile file) {
+        this(file, DEFAULT_TUPLES_PER_STEP);
+    }
+
+    /**
+     * Moves up to tuplesPerStep tuples from the end of the file into free
+     * slots earlier in the file, in a transaction of its own. Once no more
+     * tuples can be moved, truncates the empty pages off the end of the file.
+     *
+     * @return true if there is more work to do, false once compaction is done
+     */
+    public boolean step() throws DbException, IOException, TransactionAbortedException {
+        if (done) {
+            return false;
+        }
+        TransactionId tid = new TransactionId();
+        int moved = 0;
+        while (moved < tuplesPerStep && head < tail) {
+            AbstractHeapPage tailPage = getPage(tid, tail);
+            Iterator<Tuple> it = tailPage.iterator();
+            if (!it.hasNext() || isDirtiedByOther(tailPage, tid)) {
+                tail--;
+                continue;
+            }
+            Tuple t = it.next();
+            AbstractHeapPage headPage = getPage(tid, head);
+            if (!headPage.hasRoomFor(t) || isDirtiedByOther(headPage, tid)) {
+                head++;
+                continue;
+            }
+            tailPage.deleteTuple(t);
+            file.tupleDeleted(tailPage);
+            headPage.insertTuple(t);
+            file.tupleInserted(headPage, t);
+            tailPage.markDirty(true, tid);
+            headPage.markDirty(true, tid);
+            moved++;
+        }
+        Database.getBufferPool().transactionComplete(tid);
+
+        if (head >= tail) {
+            finish();
+        }
+        return !done;
+    }
+
+    /**
+     * Runs the compaction to completion.
+     *
+     * @return this compactor, for reading the page counts
+     */
+    public HeapFileCompactor run() throws DbException, IOException, TransactionAbortedException {
+        while (step()) {
+            // keep going until step() reports there is nothing left to move
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of pages in the file when the compactor was created.
+     */
+    public int getPagesBefore() {
+        return pagesBefore;
+    }
+
+    /**
+     * @return the number of pages left in the file after compaction, or the
+     *   starting number of pages if compaction hasn't finished yet.
+     */
+    public int getPagesAfter() {
+        return pagesAfter;
+    }
+
+    /**
+     * Truncates the pages past the last non-empty page. Inserts go to the
+     * first page with room, so once every page up to the tail is full they
+     * can land on pages we already emptied; all the pages past the tail are
+     * read again, through the buffer pool so that inserts not yet written
+     * are seen, and only the empty ones at the end are truncated. If the
+     * file grew while we were compacting, the new pages sit past the ones we
+     * emptied, so the file is left at its current length.
+     */
+    private void finish() throws DbException, IOException, TransactionAbortedException {
+        done = true;
+        TransactionId tid = new TransactionId();
+        int keep = Math.max(tail, 0);
+        for (int i = file.numPages() - 1; i >= keep; i--) {
+            if (getPage(tid, i).iterator().hasNext()) {
+                keep = i + 1;
+                break;
+            }
+        }
+        if (file.numPages() == pagesBefore && keep < pagesBefore) {
+            file.truncate(keep);
+        }
+        Database.getBufferPool().transactionComplete(tid);
+        pagesAfter = file.numPages();
+    }
+
+    private AbstractHeapPage getPage(TransactionId tid, int pageNo)
+            throws DbException, TransactionAbortedException {
+        return (AbstractHeapPage) Database.getBufferPool().getPage(tid,
+                new HeapPageId(file.getId(), pageNo), Permissions.READ_WRITE);
+    }
+
+    /**
+     * @return true if the page holds changes of a transaction other than
+     *   tid that haven't been committed.
+     */
+    private static boolean isDirtiedByOther(AbstractHeapPage page, TransactionId tid) {
+        TransactionId dirtier = page.isDirty();
+        return dirtier != null && !dirtier.equals(tid);
+    }
+}
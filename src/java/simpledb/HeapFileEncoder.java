@@ -1,7 +1,13 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 
 /**
  * HeapFileEncoder reads a comma delimited text file or accepts
@@ -68,15 +74,18 @@ public class HeapFileEncoder {
 
    /** Convert the specified input text file into a binary
     * page file. <br>
-    * Assume format of the input file is (note that only integer fields are
-    * supported):<br>
-    * int,...,int\n<br>
-    * int,...,int\n<br>
+    * Assume format of the input file is (each value is parsed according to
+    * the type of its field; see {@link Type#parseValue}):<br>
+    * value,...,value\n<br>
+    * value,...,value\n<br>
     * ...<br>
     * where each row represents a tuple.<br>
     * <p>
     * The format of the output file will be as specified in HeapPage and
-    * HeapFile.
+    * HeapFile. VARCHAR values too long to be stored in their tuples are
+    * written to the overflow file of the output file (see
+    * {@link OverflowFile}), and DICT values to its dictionary (see
+    * {@link StringDictionary}), replacing any previous ones.
     *
     * @see HeapPage
     * @see HeapFile
@@ -107,8 +116,11 @@ public class HeapFileEncoder {
     BufferedReader br = new BufferedReader(new FileReader(inFile));
     FileOutputStream os = new FileOutputStream(outFile);
 
-    // our numbers probably won't be much larger than 1024 digits
+    // our numbers probably won't be much larger than 1024 digits, but
+    // VARCHAR values can be
     char buf[] = new char[1024];
+    OverflowFile overflowFile = null;
+    StringDictionary dictionary = null;
 
     int curpos = 0;
     int recordcount = 0;
@@ -117,8 +129,9 @@ public class HeapFileEncoder {
 
     ByteArrayOutputStream headerBAOS = new ByteArrayOutputStream(nheaderbytes);
     DataOutputStream headerStream = new DataOutputStream(headerBAOS);
-    ByteArrayOutputStream pageBAOS = new ByteArrayOutputStream(npagebytes);
-    DataOutputStream pageStream = new DataOutputStream(pageBAOS);
+    // the records of the page being written, encoded with Field.write;
+    // what isn't written stays zero
+    ByteBuffer pageBuf = ByteBuffer.allocate(npagebytes - nheaderbytes);
 
     boolean done = false;
     boolean first = true;
@@ -138,24 +151,45 @@ public class HeapFileEncoder {
             first = false;
         if (c == fieldSeparator || c == '\n' || c == '\r') {
             String s = new String(buf, 0, curpos);
-            if (typeAr[fieldNo] == Type.INT_TYPE) {
+            if (typeAr[fieldNo] == Type.VARCHAR_TYPE) {
+                VarcharField f = (VarcharField) typeAr[fieldNo].parseValue(s);
+                if (!f.isInline()) {
+                    if (overflowFile == null) {
+                        OverflowFile.fileFor(outFile).delete();
+                        overflowFile = new OverflowFile(outFile);
+                    }
+                    byte[] bytes = f.getValue().getBytes(StandardCharsets.UTF_8);
+                    f = f.withOverflowPage(0, overflowFile.write(bytes));
+                }
+                f.write(pageBuf);
+            }
+            else if (typeAr[fieldNo] == Type.DICT_TYPE) {
+                if (dictionary == null) {
+                    StringDictionary.fileFor(outFile).delete();
+                    dictionary = new StringDictionary(StringDictionary.fileFor(outFile));
+                }
+                DictField f = (DictField) typeAr[fieldNo].parseValue(s);
+                f.withCode(0, dictionary.encode(f.getValue())).write(pageBuf);
+            }
+            else if (typeAr[fieldNo] != Type.STRING_TYPE) {
                 try {
-                    pageStream.writeInt(Integer.parseInt(s.trim()));
+                    typeAr[fieldNo].parseValue(s).write(pageBuf);
                 } catch (NumberFormatException e) {
                     System.out.println ("BAD LINE : " + s);
                 }
             }
-            else   if (typeAr[fieldNo] == Type.STRING_TYPE) {
+            else {
                 s = s.trim();
                 int overflow = Type.STRING_LEN - s.length();
                 if (overflow < 0) {
                     String news = s.substring(0,Type.STRING_LEN);
                     s  = news;
                 }
-                pageStream.writeInt(s.length());
-                pageStream.writeBytes(s);
-                while (overflow-- > 0)
-                    pageStream.write((byte)0);
+                pageBuf.putInt(s.length());
+                for (int i = 0; i < s.length(); i++)
+                    pageBuf.put((byte) s.charAt(i));
+                if (overflow > 0)
+                    pageBuf.position(pageBuf.position() + overflow);
             }
             curpos = 0;
             if (c == '\n')
@@ -167,6 +201,8 @@ public class HeapFileEncoder {
             done = true;
             
         } else {
+            if (curpos == buf.length)
+                buf = Arrays.copyOf(buf, buf.length * 2);
             buf[curpos++] = (char)c;
             continue;
         }
@@ -199,22 +235,17 @@ public class HeapFileEncoder {
             if (i % 8 > 0)
                 headerStream.writeByte(headerbyte);
             
-            // pad the rest of the page with zeroes
-            
-            for (i=0; i<(npagebytes - (recordcount * nrecbytes + nheaderbytes)); i++)
-                pageStream.writeByte(0);
-            
-            // write header and body to file
+            // write header and body to file; the rest of the body is
+            // already zero
             headerStream.flush();
             headerBAOS.writeTo(os);
-            pageStream.flush();
-            pageBAOS.writeTo(os);
+            os.write(pageBuf.array());
             
             // reset header and body for next page
             headerBAOS = new ByteArrayOutputStream(nheaderbytes);
             headerStream = new DataOutputStream(headerBAOS);
-            pageBAOS = new ByteArrayOutputStream(npagebytes);
-            pageStream = new DataOutputStream(pageBAOS);
+            Arrays.fill(pageBuf.array(), (byte) 0);
+            pageBuf.clear();
             
             recordcount = 0;
             npages++;
@@ -222,5 +253,83 @@ public class HeapFileEncoder {
     }
     br.close();
     os.close();
+    if (overflowFile == null)
+        OverflowFile.fileFor(outFile).delete();
+    else
+        overflowFile.force();
+    if (dictionary == null)
+        StringDictionary.fileFor(outFile).delete();
+    else
+        dictionary.force();
+  }
+
+  /** Convert the specified input text file into a binary page file with
+   * pages of the specified layout, as
+   * {@link #convert(File, File, int, int, Type[], char)} does for
+   * {@link PageLayout#FIXED}. For the other layouts the file is first
+   * written with the fixed layout, then each of its tuples is moved onto
+   * pages of the requested layout; pages are of the buffer pool's page
+   * size. The output file is registered in the catalog, as a table of the
+   * specified types, so its pages can be built.
+   *
+   * @param inFile The input file to read data from
+   * @param outFile The output file to write data to
+   * @param numFields the number of fields in each input line/output tuple
+   * @param layout the layout of the pages of the output file
+   * @throws IOException if the input/output file can't be opened or a
+   *   malformed input line is encountered
+   */
+  public static void convert(File inFile, File outFile, int numFields,
+                 Type[] typeAr, char fieldSeparator, PageLayout layout)
+      throws IOException {
+      convert(inFile, outFile, BufferPool.getPageSize(), numFields, typeAr, fieldSeparator);
+      if (layout != PageLayout.FIXED)
+          relayout(outFile, new TupleDesc(Arrays.copyOf(typeAr, numFields)), layout);
+  }
+
+  /** Rewrites a file of fixed-layout pages with pages of the specified
+   * layout, keeping the order of the tuples. VARCHAR overflow pages and
+   * DICT codes stay as they are, since the file keeps its name.
+   */
+  private static void relayout(File file, TupleDesc td, PageLayout layout)
+      throws IOException {
+      HeapFile hf = new HeapFile(file, td, layout);
+      Database.getCatalog().addTable(hf);
+      int tableId = hf.getId();
+      int pageSize = BufferPool.getPageSize();
+      File temp = new File(file.getPath() + ".relayout");
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+           OutputStream os = new BufferedOutputStream(new FileOutputStream(temp))) {
+          long numPages = file.length() / pageSize;
+          int npages = 0;
+          AbstractHeapPage out = layout.createPage(new HeapPageId(tableId, npages),
+                  HeapPage.createEmptyPageData());
+          boolean empty = true;
+          for (long i = 0; i < numPages; i++) {
+              byte[] data = new byte[pageSize];
+              in.readFully(data);
+              Iterator<Tuple> it = new HeapPage(new HeapPageId(tableId, (int) i), data).iterator();
+              while (it.hasNext()) {
+                  Tuple t = it.next().copy();
+                  if (!out.hasRoomFor(t)) {
+                      os.write(out.getPageData());
+                      npages++;
+                      out = layout.createPage(new HeapPageId(tableId, npages),
+                              HeapPage.createEmptyPageData());
+                      empty = true;
+                  }
+                  try {
+                      out.insertTuple(t);
+                  } catch (DbException e) {
+                      throw new IOException("tuple doesn't fit on a " + layout + " page", e);
+                  }
+                  empty = false;
+              }
+          }
+          // as for the fixed layout, an empty file still gets one page
+          if (!empty || npages == 0)
+              os.write(out.getPageData());
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
   }
 }
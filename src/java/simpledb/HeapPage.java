@@ -2,26 +2,27 @@ package simpledb;
 
 import java.util.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Each instance of HeapPage stores data for one page of HeapFiles and 
- * implements the Page interface that is used by BufferPool.
+ * implements the Page interface that is used by BufferPool. HeapPage stores
+ * tuples in fixed-width slots; this is the {@link PageLayout#FIXED} layout.
  *
  * @see HeapFile
  * @see BufferPool
  *
  */
-public class HeapPage implements Page {
+public class HeapPage extends AbstractHeapPage {
 
-    final HeapPageId pid;
-    final TupleDesc td;
-    final byte header[];
+    final SlotBitmap header;
+
+    /** Slots whose tuple was inserted since the page was read. */
+    final SlotBitmap dirty;
+    final int headerSize;
     final Tuple tuples[];
     final int numSlots;
 
-    byte[] oldData;
-    private final Byte oldDataLock=new Byte((byte)0);
-
     /**
      * Create a HeapPage from a set of bytes of data read from disk.
      * The format of a HeapPage is a set of header bytes indicating
@@ -34,32 +35,35 @@ public class HeapPage implements Page {
      * <p>
      *      ceiling(no. tuple slots / 8)
      * <p>
+     * Tuples are not decoded here; the page keeps the bytes it was read from
+     * and decodes a slot the first time its tuple (or one of its fields) is
+     * asked for. The data array is not modified by the page, so callers may
+     * share it, and it doubles as the page's before image until the page is
+     * first modified.
      * @see Database#getCatalog
      * @see Catalog#getTupleDesc
      * @see BufferPool#getPageSize()
      */
     public HeapPage(HeapPageId id, byte[] data) throws IOException {
-        this.pid = id;
-        this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+        super(id, data);
         this.numSlots = getNumTuples();
-        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
 
-        // allocate and read the header slots of this page
-        header = new byte[getHeaderSize()];
-        for (int i=0; i<header.length; i++)
-            header[i] = dis.readByte();
-        
+        // copy out the header slots of this page, which change as tuples
+        // are inserted and deleted
+        this.headerSize = getHeaderSize();
+        header = new SlotBitmap(data, 0, numSlots);
+        dirty = new SlotBitmap(numSlots);
+
+        // a null entry for a used slot means the tuple hasn't been decoded yet
         tuples = new Tuple[numSlots];
-        try{
-            // allocate and read the actual records of this page
-            for (int i=0; i<tuples.length; i++)
-                tuples[i] = readNextTuple(dis,i);
-        }catch(NoSuchElementException e){
-            e.printStackTrace();
-        }
-        dis.close();
+    }
 
-        setBeforeImage();
+    public PageLayout getLayout() {
+        return PageLayout.FIXED;
+    }
+
+    public int getNumSlots() {
+        return numSlots;
     }
 
     /** Retrieve the number of tuples on this page.
@@ -78,72 +82,90 @@ public class HeapPage implements Page {
     private int getHeaderSize() {        
         
         // some code goes here
-        return (int) Math.ceil(getNumTuples()/8);
+        return (getNumTuples() + 7) / 8;
                  
     }
     
     /** Return a view of this page before it was modified
         -- used by recovery */
     public HeapPage getBeforeImage(){
-        try {
-            byte[] oldDataRef = null;
-            synchronized(oldDataLock)
-            {
-                oldDataRef = oldData;
-            }
-            return new HeapPage(pid,oldDataRef);
-        } catch (IOException e) {
-            e.printStackTrace();
-            //should never happen -- we parsed it OK before!
-            System.exit(1);
-        }
-        return null;
+        return (HeapPage) super.getBeforeImage();
     }
-    
-    public void setBeforeImage() {
-        synchronized(oldDataLock)
-        {
-        oldData = getPageData().clone();
-        }
+
+    /**
+     * @return the offset within the page data of the specified slot.
+     */
+    private int slotOffset(int slotId) {
+        return headerSize + slotId * td.getSize();
     }
 
     /**
-     * @return the PageId associated with this page.
+     * Returns the tuple in the specified slot, decoding it from the page data
+     * if this is the first time it's been asked for.
+     *
+     * @return the tuple in the slot, or null if the slot is empty
+     * @throws NoSuchElementException if the tuple can't be parsed
      */
-    public HeapPageId getId() {
-    // some code goes here
-    return this.pid;
+    public synchronized Tuple getTuple(int slotId) throws NoSuchElementException {
+        if (!isSlotUsed(slotId)) {
+            return null;
+        }
+        if (tuples[slotId] == null) {
+            tuples[slotId] = readTuple(slotId);
+        }
+        return tuples[slotId];
     }
 
     /**
-     * Suck up tuples from the source file.
+     * Returns a single field of the tuple in the specified slot. If the tuple
+     * hasn't been decoded, only the requested field is.
+     *
+     * @return the field, or null if the slot is empty
+     * @throws NoSuchElementException if the field can't be parsed
      */
-    private Tuple readNextTuple(DataInputStream dis, int slotId) throws NoSuchElementException {
-        // if associated bit is not set, read forward to the next tuple, and
-        // return null.
+    public synchronized Field getField(int slotId, int fieldIndex) throws NoSuchElementException {
         if (!isSlotUsed(slotId)) {
-            for (int i=0; i<td.getSize(); i++) {
-                try {
-                    dis.readByte();
-                } catch (IOException e) {
-                    throw new NoSuchElementException("error reading empty tuple");
-                }
-            }
             return null;
         }
+        if (tuples[slotId] != null) {
+            return tuples[slotId].getField(fieldIndex);
+        }
+        return decodeField(data, slotOffset(slotId) + td.getFieldOffset(fieldIndex),
+                td.getFieldType(fieldIndex));
+    }
+
+    public synchronized int getInt(int slotId, int fieldIndex) throws NoSuchElementException {
+        checkField(slotId, fieldIndex, Type.INT_TYPE);
+        if (tuples[slotId] != null) {
+            return ((IntField) tuples[slotId].getField(fieldIndex)).getValue();
+        }
+        return readInt(data, slotOffset(slotId) + td.getFieldOffset(fieldIndex));
+    }
+
+    public synchronized int compareString(int slotId, int fieldIndex, byte[] bytes)
+            throws NoSuchElementException {
+        checkField(slotId, fieldIndex, Type.STRING_TYPE);
+        if (tuples[slotId] != null) {
+            return compareBytes(((StringField) tuples[slotId].getField(fieldIndex)).getValue(), bytes);
+        }
+        int offset = slotOffset(slotId) + td.getFieldOffset(fieldIndex);
+        return compareBytes(data, offset + 4, readInt(data, offset), bytes);
+    }
 
+    /**
+     * Decodes the tuple stored in the specified slot of the page data. String
+     * fields refer to the page data rather than copying it.
+     */
+    private Tuple readTuple(int slotId) throws NoSuchElementException {
         // read fields in the tuple
         Tuple t = new Tuple(td);
         RecordId rid = new RecordId(pid, slotId);
         t.setRecordId(rid);
-        try {
-            for (int j=0; j<td.numFields(); j++) {
-                Field f = td.getFieldType(j).parse(dis);
-                t.setField(j, f);
-            }
-        } catch (java.text.ParseException e) {
-            e.printStackTrace();
-            throw new NoSuchElementException("parsing error!");
+        int offset = slotOffset(slotId);
+        for (int j=0; j<td.numFields(); j++) {
+            Type type = td.getFieldType(j);
+            t.setField(j, decodeField(data, offset, type));
+            offset += type.getLen();
         }
 
         return t;
@@ -160,65 +182,76 @@ public class HeapPage implements Page {
      * @see #HeapPage
      * @return A byte array correspond to the bytes of this page.
      */
-    public byte[] getPageData() {
-        int len = BufferPool.getPageSize();
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(len);
-        DataOutputStream dos = new DataOutputStream(baos);
-
-        // create the header of the page
-        for (int i=0; i<header.length; i++) {
-            try {
-                dos.writeByte(header[i]);
-            } catch (IOException e) {
-                // this really shouldn't happen
-                e.printStackTrace();
-            }
-        }
+    public synchronized byte[] getPageData() {
+        byte[] page = new byte[BufferPool.getPageSize()];
+        writePageData(ByteBuffer.wrap(page));
+        return page;
+    }
 
-        // create the tuples
-        for (int i=0; i<tuples.length; i++) {
+    /**
+     * Writes the contents of this page to dst. Runs of slots that haven't
+     * changed since the page was read are copied from the page data in bulk;
+     * only slots filled by insertTuple are encoded.
+     */
+    public synchronized void writePageData(ByteBuffer dst) {
+        header.writeTo(dst);
 
-            // empty slot
+        int i = 0;
+        while (i < numSlots) {
+            int j = i + 1;
             if (!isSlotUsed(i)) {
-                for (int j=0; j<td.getSize(); j++) {
-                    try {
-                        dos.writeByte(0);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-
+                // empty slot
+                while (j < numSlots && !isSlotUsed(j)) {
+                    j++;
                 }
-                continue;
-            }
-
-            // non-empty slot
-            for (int j=0; j<td.numFields(); j++) {
-                Field f = tuples[i].getField(j);
-                try {
-                    f.serialize(dos);
-                
-                } catch (IOException e) {
-                    e.printStackTrace();
+                putZeroes(dst, (j - i) * td.getSize());
+            } else if (!dirty.get(i)) {
+                // non-empty slots still as they were read
+                while (j < numSlots && isSlotUsed(j) && !dirty.get(j)) {
+                    j++;
+                }
+                dst.put(data, slotOffset(i), (j - i) * td.getSize());
+            } else {
+                // inserted tuple
+                for (int f = 0; f < td.numFields(); f++) {
+                    putField(dst, tuples[i].getField(f), td.getFieldType(f));
                 }
             }
+            i = j;
         }
 
         // padding
-        int zerolen = BufferPool.getPageSize() - (header.length + td.getSize() * tuples.length); //- numSlots * td.getSize();
-        byte[] zeroes = new byte[zerolen];
-        try {
-            dos.write(zeroes, 0, zerolen);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        putZeroes(dst, BufferPool.getPageSize() - (headerSize + td.getSize() * numSlots));
+    }
 
-        try {
-            dos.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Writes a field in the format of {@link Field#write}. Strings are
+     * padded to the length of the column whatever their field's maximum
+     * size.
+     */
+    private static void putField(ByteBuffer dst, Field f, Type type) {
+        if (f instanceof StringField) {
+            StringField s = (StringField) f;
+            int maxLen = type.getLen() - 4;
+            int len = Math.min(s.length(), maxLen);
+            dst.putInt(len);
+            for (int c = 0; c < len; c++) {
+                dst.put((byte) s.charAt(c));
+            }
+            putZeroes(dst, maxLen - len);
+        } else {
+            f.write(dst);
         }
+    }
+
+    private static final byte[] ZEROES = new byte[1024];
 
-        return baos.toByteArray();
+    private static void putZeroes(ByteBuffer dst, int n) {
+        while (n > 0) {
+            int chunk = Math.min(n, ZEROES.length);
+            dst.put(ZEROES, 0, chunk);
+            n -= chunk;
+        }
     }
 
     /**
@@ -242,9 +275,17 @@ public class HeapPage implements Page {
      *         already empty.
      * @param t The tuple to delete
      */
-    public void deleteTuple(Tuple t) throws DbException {
+    public synchronized void deleteTuple(Tuple t) throws DbException {
         // some code goes here
-        // not necessary for lab1
+        if (t instanceof SlotTuple) {
+            throw new DbException("a SlotTuple can't be deleted from a page; copy() it first");
+        }
+        int slot = slotOf(t);
+        captureBeforeImage();
+        markSlotUsed(slot, false);
+        dirty.set(slot, false);
+        tuples[slot] = null;
+        t.setRecordId(null);
     }
 
     /**
@@ -254,27 +295,23 @@ public class HeapPage implements Page {
      *         is mismatch.
      * @param t The tuple to add.
      */
-    public void insertTuple(Tuple t) throws DbException {
+    public synchronized void insertTuple(Tuple t) throws DbException {
         // some code goes here
-        // not necessary for lab1
-    }
-
-    /**
-     * Marks this page as dirty/not dirty and record that transaction
-     * that did the dirtying
-     */
-    public void markDirty(boolean dirty, TransactionId tid) {
-        // some code goes here
-	// not necessary for lab1
-    }
-
-    /**
-     * Returns the tid of the transaction that last dirtied this page, or null if the page is not dirty
-     */
-    public TransactionId isDirty() {
-        // some code goes here
-	// Not necessary for lab1
-        return null;      
+        if (!td.equals(t.getTupleDesc())) {
+            throw new DbException("tupledesc is mismatched");
+        }
+        if (t instanceof SlotTuple) {
+            throw new DbException("a SlotTuple can't be stored on a page; copy() it first");
+        }
+        int i = header.nextClearBit(0);
+        if (i < 0) {
+            throw new DbException("page is full");
+        }
+        captureBeforeImage();
+        markSlotUsed(i, true);
+        dirty.set(i, true);
+        tuples[i] = t;
+        t.setRecordId(new RecordId(pid, i));
     }
 
     /**
@@ -282,13 +319,11 @@ public class HeapPage implements Page {
      */
     public int getNumEmptySlots() {
         // some code goes here
-        int numEmpty = 0; 
-        for (int i = 0; i< this.getNumTuples(); i++) {
-            if (!this.isSlotUsed(i)) {
-                numEmpty++;
-            }
-        }
-        return numEmpty;
+        return numSlots - header.cardinality();
+    }
+
+    public boolean hasRoomFor(Tuple t) {
+        return getNumEmptySlots() > 0;
     }
 
     /**
@@ -296,57 +331,19 @@ public class HeapPage implements Page {
      */
     public boolean isSlotUsed(int i) {
         // some code goes here
-        int byteNum = i / 8;
-    	int bitNum = i % 8;
-        if (byteNum >= header.length || byteNum < 0) {
-            return false;
-        }
-    	byte byteWithSlot = header[byteNum];
-    	int bitmask = 1 << bitNum;
-        return (byteWithSlot&bitmask) > 0;
-        
+        return header.get(i);
     }
 
-    /**
-     * Abstraction to fill or clear a slot on this page.
-     */
-    private void markSlotUsed(int i, boolean value) {
-        // some code goes here
-        // not necessary for lab1
+    protected int nextUsedSlot(int from) {
+        return header.nextSetBit(from);
     }
 
     /**
-     * @return an iterator over all tuples on this page (calling remove on this iterator throws an UnsupportedOperationException)
-     * (note that this iterator shouldn't return tuples in empty slots!)
+     * Abstraction to fill or clear a slot on this page.
      */
-    public Iterator<Tuple> iterator() {
+    private void markSlotUsed(int i, boolean value) {
         // some code goes here
-        return new HeapPageIterator(this);
-    }
-
-    private class HeapPageIterator implements Iterator<Tuple> {
-        private Tuple[] tuples;
-        private int currentTuple;
-        private int numTuples;
-
-        public HeapPageIterator(HeapPage page) {
-            currentTuple = 0;
-            tuples = page.tuples;
-            numTuples = getNumTuples() - getNumEmptySlots();
-        }
-
-        public boolean hasNext(){
-            if (currentTuple < numTuples) {
-                return true;
-            } else {
-                return false;
-            }
-        }
-
-        public Tuple next(){
-            return tuples[currentTuple++];
-        }
+        header.set(i, value);
     }
 
 }
-
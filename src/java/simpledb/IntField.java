@@ -1,6 +1,6 @@
 package simpledb;
 
-import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Instance of Field that stores a single integer.
@@ -36,8 +36,8 @@ public class IntField implements Field {
         return ((IntField) field).value == value;
     }
 
-    public void serialize(DataOutputStream dos) throws IOException {
-        dos.writeInt(value);
+    public void write(ByteBuffer buf) {
+        buf.putInt(value);
     }
 
     /**
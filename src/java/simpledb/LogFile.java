@@ -2,6 +2,7 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.lang.reflect.*;
 
@@ -69,6 +70,15 @@ for each active transaction.
 
 </ul>
 
+<p> Each log record is identified by a log sequence number (LSN): its
+offset in the log, plus the number of bytes that have been truncated
+from the front of the log since it was opened, so that the LSN of a
+record doesn't change when the log is truncated.  logWrite() stamps
+the after image with the LSN of its UPDATE record (see Page.getLSN()),
+which lets BufferPool force the log only as far as a page needs before
+writing it.  LSNs only order page writes after the log: they are kept
+on the page in memory, not on disk, and recover() doesn't use them.
+
 */
 
 public class LogFile {
@@ -84,6 +94,9 @@ public class LogFile {
     static final int CHECKPOINT_RECORD = 5;
     static final long NO_CHECKPOINT_ID = -1;
 
+    /** The LSN of a page that hasn't been logged. */
+    public static final long NO_LSN = -1;
+
     final static int INT_SIZE = 4;
     final static int LONG_SIZE = 8;
 
@@ -91,6 +104,11 @@ public class LogFile {
 //    int pageSize;
     int totalRecords = 0; // for PatchTest //protected by this
 
+    /** Bytes truncated from the front of the log; LSN = lsnBase + offset. */
+    long lsnBase = 0; //protected by this
+    /** Records with an LSN below this are known to be on disk. */
+    long flushedLSN = 0; //protected by this
+
     HashMap<Long,Long> tidToFirstLogRecord = new HashMap<Long,Long>();
 
     /** Constructor.
@@ -207,18 +225,44 @@ public class LogFile {
            after page data
            start offset
         */
-        raf.writeInt(UPDATE_RECORD);
-        raf.writeLong(tid.getId());
-
-        writePageData(raf,before);
-        writePageData(raf,after);
-        raf.writeLong(currentOffset);
+        long lsn = lsnBase + currentOffset;
+        // the record is encoded into one buffer and written in one call
+        ByteBuffer record = ByteBuffer.allocate(INT_SIZE + LONG_SIZE
+                + pageDataSize(before) + pageDataSize(after) + LONG_SIZE);
+        record.putInt(UPDATE_RECORD);
+        record.putLong(tid.getId());
+
+        putPageData(record,before);
+        putPageData(record,after);
+        record.putLong(currentOffset);
+        raf.write(record.array());
         currentOffset = raf.getFilePointer();
+        after.setLSN(lsn);
 
         Debug.log("WRITE OFFSET = " + currentOffset);
     }
 
     void writePageData(RandomAccessFile raf, Page p) throws IOException{
+        ByteBuffer buf = ByteBuffer.allocate(pageDataSize(p));
+        putPageData(buf, p);
+        raf.write(buf.array());
+    }
+
+    /** @return the number of bytes putPageData writes for p. */
+    static int pageDataSize(Page p) {
+        int pageDataLen = p instanceof AbstractHeapPage ? BufferPool.getPageSize()
+                : p.getPageData().length;
+        return 2 + utfLength(p.getClass().getName())
+                + 2 + utfLength(p.getId().getClass().getName())
+                + INT_SIZE * (1 + p.getId().serialize().length)
+                + INT_SIZE + pageDataLen;
+    }
+
+    /**
+     * Writes p to buf in the format readPageData reads. Heap pages are
+     * written straight into buf, without copying their data first.
+     */
+    static void putPageData(ByteBuffer buf, Page p) {
         PageId pid = p.getId();
         int pageInfo[] = pid.serialize();
 
@@ -233,19 +277,52 @@ public class LogFile {
         String pageClassName = p.getClass().getName();
         String idClassName = pid.getClass().getName();
 
-        raf.writeUTF(pageClassName);
-        raf.writeUTF(idClassName);
+        putUTF(buf, pageClassName);
+        putUTF(buf, idClassName);
 
-        raf.writeInt(pageInfo.length);
+        buf.putInt(pageInfo.length);
         for (int i = 0; i < pageInfo.length; i++) {
-            raf.writeInt(pageInfo[i]);
+            buf.putInt(pageInfo[i]);
+        }
+        if (p instanceof AbstractHeapPage) {
+            buf.putInt(BufferPool.getPageSize());
+            ((AbstractHeapPage) p).writePageData(buf);
+        } else {
+            byte[] pageData = p.getPageData();
+            buf.putInt(pageData.length);
+            buf.put(pageData);
         }
-        byte[] pageData = p.getPageData();
-        raf.writeInt(pageData.length);
-        raf.write(pageData);
         //        Debug.log ("WROTE PAGE DATA, CLASS = " + pageClassName + ", table = " +  pid.getTableId() + ", page = " + pid.pageno());
     }
 
+    /** Writes s to buf in the modified UTF-8 format of DataOutput.writeUTF. */
+    private static void putUTF(ByteBuffer buf, String s) {
+        buf.putShort((short) utfLength(s));
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x01 && c <= 0x7f) {
+                buf.put((byte) c);
+            } else if (c <= 0x7ff) {
+                buf.put((byte) (0xc0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3f)));
+            } else {
+                buf.put((byte) (0xe0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buf.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    /** @return the number of bytes putUTF writes for s, less the length. */
+    private static int utfLength(String s) {
+        int len = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            len += c >= 0x01 && c <= 0x7f ? 1 : c <= 0x7ff ? 2 : 3;
+        }
+        return len;
+    }
+
     Page readPageData(RandomAccessFile raf) throws IOException {
         PageId pid;
         Page newPage = null;
@@ -449,6 +526,9 @@ public class LogFile {
         raf.seek(raf.length());
         newFile.delete();
 
+        // records keep their LSNs, but the rewritten log hasn't been forced
+        lsnBase += minLogRecord - LONG_SIZE;
+        flushedLSN = lsnBase;
         currentOffset = raf.getFilePointer();
         //print();
     }
@@ -494,10 +574,77 @@ public class LogFile {
             synchronized (this) {
                 recoveryUndecided = false;
                 // some code goes here
+                if (raf.length() < LONG_SIZE) {
+                    // nothing was ever logged
+                    raf.setLength(0);
+                    raf.writeLong(NO_CHECKPOINT_ID);
+                } else {
+                    replay();
+                }
+                raf.seek(raf.length());
+                currentOffset = raf.getFilePointer();
             }
          }
     }
 
+    /** Redo the updates of committed transactions and undo those of
+        the others, writing each affected page to disk once and
+        discarding any cached copy.
+    */
+    private void replay() throws IOException {
+        BufferPool pool = Database.getBufferPool();
+        ArrayList<Long> tids = new ArrayList<Long>();
+        ArrayList<Page[]> images = new ArrayList<Page[]>();
+        HashSet<Long> committed = new HashSet<Long>();
+
+        raf.seek(LONG_SIZE);
+        while (true) {
+            try {
+                int type = raf.readInt();
+                long tid = raf.readLong();
+                switch (type) {
+                case UPDATE_RECORD:
+                    Page before = readPageData(raf);
+                    Page after = readPageData(raf);
+                    tids.add(tid);
+                    images.add(new Page[] { before, after });
+                    break;
+                case COMMIT_RECORD:
+                    committed.add(tid);
+                    break;
+                case CHECKPOINT_RECORD:
+                    int numXactions = raf.readInt();
+                    raf.skipBytes(numXactions * 2 * LONG_SIZE);
+                    break;
+                }
+                raf.readLong();
+            } catch (EOFException e) {
+                break;
+            }
+        }
+
+        // the image each page should end up with
+        HashMap<PageId,Page> install = new HashMap<PageId,Page>();
+        for (int i = 0; i < images.size(); i++) {
+            Page after = images.get(i)[1];
+            if (committed.contains(tids.get(i))) {
+                install.put(after.getId(), after);
+            }
+        }
+        // undo in reverse, so the earliest before image wins
+        for (int i = images.size() - 1; i >= 0; i--) {
+            Page before = images.get(i)[0];
+            if (!committed.contains(tids.get(i))) {
+                install.put(before.getId(), before);
+            }
+        }
+
+        for (Page p : install.values()) {
+            pool.discardPage(p.getId());
+            Database.getCatalog().getDatabaseFile(p.getId().getTableId()).writePage(p);
+        }
+    }
+
     /** Print out a human readable represenation of the log */
     public void print() throws IOException {
         // some code goes here
@@ -505,6 +652,19 @@ public class LogFile {
 
     public  synchronized void force() throws IOException {
         raf.getChannel().force(true);
+        flushedLSN = lsnBase + raf.length();
+    }
+
+    /** Force the log to disk if the record with the specified LSN may
+        not be on disk yet; used to write ahead of a page flush.
+
+        @param lsn The LSN of the last record that must be on disk, or
+        NO_LSN if there is none
+    */
+    public synchronized void force(long lsn) throws IOException {
+        if (lsn != NO_LSN && lsn >= flushedLSN) {
+            force();
+        }
     }
 
 }
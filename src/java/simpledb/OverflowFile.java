@@ -0,0 +1,132 @@
+package simpledb;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * The overflow pages of a HeapFile, which hold the VARCHAR values too long
+ * to be stored in their tuples (see {@link VarcharField}). The pages are
+ * kept in a SegmentedFile next to the heap file, named after it with a
+ * <code>.ovf</code> suffix, which is only created once the first value is
+ * written.
+ * <p>
+ * A value is stored in a chain of pages. Each page starts with the number of
+ * the next page of the chain, or {@link #NO_PAGE} on the last one, followed
+ * by up to a page size minus 4 bytes of the value. The length of the value
+ * is stored in the tuple, not here.
+ * <p>
+ * Values are only ever appended. A chain is written before any tuple that
+ * refers to it, and is not changed afterwards, so overflow pages don't go
+ * through the buffer pool or the log. The pages of values that are deleted,
+ * or whose insert is rolled back, are not reused.
+ *
+ * @Threadsafe
+ */
+public class OverflowFile {
+
+    /** Page number marking the end of a chain, or a value with no chain. */
+    public static final int NO_PAGE = -1;
+
+    private final SegmentedFile store;
+    /** True if pages have been written since the store was last forced. */
+    private boolean dirty;
+
+    /**
+     * Creates the overflow file of the heap file stored in the specified
+     * file.
+     */
+    public OverflowFile(File heapFile) {
+        this.store = new SegmentedFile(fileFor(heapFile), SegmentedFile.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @return the file the overflow pages of the specified heap file are
+     *   stored in.
+     */
+    public static File fileFor(File heapFile) {
+        return new File(heapFile.getPath() + ".ovf");
+    }
+
+    /**
+     * @return the number of value bytes stored on each overflow page.
+     */
+    private static int bytesPerPage() {
+        return BufferPool.getPageSize() - 4;
+    }
+
+    /**
+     * Appends a chain of pages holding the specified value.
+     *
+     * @return the first page of the chain
+     */
+    public synchronized int write(byte[] value) throws IOException {
+        int perPage = bytesPerPage();
+        int n = Math.max(1, (value.length + perPage - 1) / perPage);
+        long first = store.numPages();
+        if (first + n > Integer.MAX_VALUE) {
+            throw new IOException("too many overflow pages");
+        }
+        byte[] page = new byte[BufferPool.getPageSize()];
+        for (int i = 0; i < n; i++) {
+            int next = i == n - 1 ? NO_PAGE : (int) first + i + 1;
+            writeInt(page, next);
+            int off = i * perPage;
+            int len = Math.min(perPage, value.length - off);
+            System.arraycopy(value, off, page, 4, len);
+            Arrays.fill(page, 4 + len, page.length, (byte) 0);
+            store.writePage((int) first + i, page);
+        }
+        dirty = true;
+        return (int) first;
+    }
+
+    /**
+     * Reads a value of the specified length from the chain starting at the
+     * specified page.
+     *
+     * @throws IOException if the chain ends before the whole value is read
+     */
+    public byte[] read(int firstPage, int length) throws IOException {
+        byte[] value = new byte[length];
+        byte[] page = new byte[BufferPool.getPageSize()];
+        int perPage = bytesPerPage();
+        int pageNo = firstPage;
+        int off = 0;
+        while (off < length) {
+            if (pageNo == NO_PAGE || !store.readPage(pageNo, page)) {
+                throw new IOException("overflow chain starting at page " + firstPage
+                        + " ends after " + off + " of " + length + " bytes");
+            }
+            int len = Math.min(perPage, length - off);
+            System.arraycopy(page, 4, value, off, len);
+            off += len;
+            pageNo = AbstractHeapPage.readInt(page, 0);
+        }
+        return value;
+    }
+
+    /**
+     * @return the number of overflow pages.
+     */
+    public long numPages() throws IOException {
+        return store.numPages();
+    }
+
+    /**
+     * Forces the pages written since the last call to disk. Called before a
+     * heap page is written, so no page on disk refers to a chain that isn't.
+     */
+    public synchronized void force() throws IOException {
+        if (dirty) {
+            store.force();
+            dirty = false;
+        }
+    }
+
+    private static void writeInt(byte[] b, int v) {
+        b[0] = (byte) (v >>> 24);
+        b[1] = (byte) (v >>> 16);
+        b[2] = (byte) (v >>> 8);
+        b[3] = (byte) v;
+    }
+}
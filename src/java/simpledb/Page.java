@@ -56,4 +56,18 @@ public interface Page {
      * copy current content to the before image.
      */
     public void setBeforeImage();
+
+    /**
+     * Returns the log sequence number of the last logged change to this
+     * page: the LSN of the UPDATE record {@link LogFile#logWrite} wrote for
+     * it, or {@link LogFile#NO_LSN} if this copy of the page hasn't been
+     * logged. The log must be durable up to this LSN before the page is
+     * written out.
+     */
+    public long getLSN();
+
+    /**
+     * Sets the log sequence number of the last logged change to this page.
+     */
+    public void setLSN(long lsn);
 }
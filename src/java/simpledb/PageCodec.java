@@ -0,0 +1,372 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Lightweight compression of heap pages for storing them on disk; see
+ * {@link CompressedPageFile}. A page is decompressed back to exactly the
+ * bytes it was compressed from, so the in-memory page is unaffected.
+ * <p>
+ * Pages with fixed-width values ({@link PageLayout#FIXED} and
+ * {@link PageLayout#PAX}) are compressed column by column, looking only at
+ * the values of used slots. Each column gets whichever of these encodings
+ * is smallest for the page:
+ * <ul>
+ * <li>int columns: frame of reference (the page minimum, then each value's
+ * difference from it packed into as few bits as the largest difference
+ * needs) or run-length encoding (value, count) pairs.
+ * <li>string columns: plain (each string without its padding) or a per-page
+ * dictionary of the distinct strings followed by bit-packed indexes.
+ * </ul>
+ * Pages that don't compress this way (slotted pages, pages with bytes where
+ * the layout expects zeroes, or pages that come out bigger) are stored
+ * as they are.
+ */
+public class PageCodec {
+
+    /** Page formats, stored in the first byte of a compressed page. */
+    private static final byte RAW = 0;
+    private static final byte COLUMNS = 1;
+
+    /** Column encodings. */
+    private static final byte INT_FOR = 0;
+    private static final byte INT_RLE = 1;
+    private static final byte STRING_PLAIN = 2;
+    private static final byte STRING_DICT = 3;
+    private static final byte PLAIN = 4;
+
+    private final TupleDesc td;
+    private final boolean columnar;
+    private final int numSlots;
+    private final int headerSize;
+
+    /** Offset of field i of slot 0, and the distance between slots. */
+    private final int[] base;
+    private final int[] stride;
+
+    /**
+     * Creates a codec for pages of the specified schema and layout.
+     */
+    public PageCodec(TupleDesc td, PageLayout layout) {
+        this.td = td;
+        this.columnar = layout == PageLayout.FIXED || layout == PageLayout.PAX;
+        this.numSlots = layout.maxTuplesPerPage(td);
+        this.headerSize = (numSlots + 7) / 8;
+        this.base = new int[td.numFields()];
+        this.stride = new int[td.numFields()];
+        int minipage = headerSize;
+        for (int i = 0; i < td.numFields(); i++) {
+            if (layout == PageLayout.PAX) {
+                base[i] = minipage;
+                stride[i] = td.getFieldType(i).getLen();
+                minipage += numSlots * stride[i];
+            } else {
+                base[i] = headerSize + td.getFieldOffset(i);
+                stride[i] = td.getSize();
+            }
+        }
+    }
+
+    /**
+     * @return the compressed form of the specified page.
+     */
+    public byte[] encode(byte[] page) {
+        if (columnar) {
+            byte[] encoded = encodeColumns(page);
+            if (encoded != null && encoded.length <= page.length
+                    && Arrays.equals(page, decode(encoded, encoded.length))) {
+                return encoded;
+            }
+        }
+        byte[] raw = new byte[page.length + 1];
+        raw[0] = RAW;
+        System.arraycopy(page, 0, raw, 1, page.length);
+        return raw;
+    }
+
+    /**
+     * @return the page the first len bytes of encoded were compressed from.
+     */
+    public byte[] decode(byte[] encoded, int len) {
+        byte[] page = new byte[BufferPool.getPageSize()];
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded, 0, len));
+        try {
+            if (in.readByte() == RAW) {
+                in.readFully(page);
+                return page;
+            }
+            in.readFully(page, 0, headerSize);
+            int[] slots = usedSlots(page);
+            for (int f = 0; f < td.numFields(); f++) {
+                decodeColumn(in, page, f, slots);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("corrupt compressed page", e);
+        }
+        return page;
+    }
+
+    private int[] usedSlots(byte[] page) {
+        SlotBitmap used = new SlotBitmap(page, 0, numSlots);
+        int[] slots = new int[used.cardinality()];
+        int n = 0;
+        for (int i = used.nextSetBit(0); i >= 0; i = used.nextSetBit(i + 1)) {
+            slots[n++] = i;
+        }
+        return slots;
+    }
+
+    private int offset(int slot, int field) {
+        return base[field] + slot * stride[field];
+    }
+
+    /**
+     * @return the columnar encoding of the page, or null if it has string
+     *   lengths that don't fit the layout.
+     */
+    private byte[] encodeColumns(byte[] page) {
+        int[] slots = usedSlots(page);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(page.length / 2);
+        DataOutputStream out = new DataOutputStream(baos);
+        try {
+            out.writeByte(COLUMNS);
+            out.write(page, 0, headerSize);
+            for (int f = 0; f < td.numFields(); f++) {
+                Type type = td.getFieldType(f);
+                if (type == Type.INT_TYPE) {
+                    int[] values = new int[slots.length];
+                    for (int i = 0; i < slots.length; i++) {
+                        values[i] = AbstractHeapPage.readInt(page, offset(slots[i], f));
+                    }
+                    encodeInts(out, values);
+                } else if (type == Type.STRING_TYPE) {
+                    byte[][] values = new byte[slots.length][];
+                    for (int i = 0; i < slots.length; i++) {
+                        int offset = offset(slots[i], f);
+                        int len = AbstractHeapPage.readInt(page, offset);
+                        if (len < 0 || len > Type.STRING_LEN) {
+                            return null;
+                        }
+                        values[i] = Arrays.copyOfRange(page, offset + 4, offset + 4 + len);
+                    }
+                    encodeStrings(out, values);
+                } else {
+                    out.writeByte(PLAIN);
+                    for (int slot : slots) {
+                        out.write(page, offset(slot, f), type.getLen());
+                    }
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // writing to a byte array really shouldn't fail
+            throw new RuntimeException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    private static void encodeInts(DataOutputStream out, int[] values) throws IOException {
+        long min = Integer.MAX_VALUE;
+        long max = Integer.MIN_VALUE;
+        int runs = 0;
+        for (int i = 0; i < values.length; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+            if (i == 0 || values[i] != values[i - 1]) {
+                runs++;
+            }
+        }
+        int bits = values.length == 0 ? 0 : 64 - Long.numberOfLeadingZeros(max - min);
+        long forSize = 5 + ((long) values.length * bits + 7) / 8;
+        long rleSize = 4 + 8L * runs;
+
+        if (rleSize < forSize) {
+            out.writeByte(INT_RLE);
+            out.writeInt(runs);
+            int i = 0;
+            while (i < values.length) {
+                int j = i;
+                while (j < values.length && values[j] == values[i]) {
+                    j++;
+                }
+                out.writeInt(values[i]);
+                out.writeInt(j - i);
+                i = j;
+            }
+        } else {
+            out.writeByte(INT_FOR);
+            out.writeInt((int) min);
+            out.writeByte(bits);
+            long[] deltas = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                deltas[i] = values[i] - min;
+            }
+            out.write(pack(deltas, bits));
+        }
+    }
+
+    private static void encodeStrings(DataOutputStream out, byte[][] values) throws IOException {
+        LinkedHashMap<String, Integer> dict = new LinkedHashMap<String, Integer>();
+        int[] indexes = new int[values.length];
+        long plainSize = 1;
+        long dictSize = 4;
+        for (int i = 0; i < values.length; i++) {
+            // ISO-8859-1 maps every byte to a char and back unchanged
+            String key = new String(values[i], StandardCharsets.ISO_8859_1);
+            Integer index = dict.get(key);
+            if (index == null) {
+                index = dict.size();
+                dict.put(key, index);
+                dictSize += 2 + values[i].length;
+            }
+            indexes[i] = index;
+            plainSize += 2 + values[i].length;
+        }
+        int bits = dict.size() <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(dict.size() - 1);
+        dictSize += ((long) values.length * bits + 7) / 8;
+
+        if (dictSize < plainSize) {
+            out.writeByte(STRING_DICT);
+            out.writeShort(dict.size());
+            for (String key : dict.keySet()) {
+                byte[] bytes = key.getBytes(StandardCharsets.ISO_8859_1);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            out.writeByte(bits);
+            long[] packed = new long[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                packed[i] = indexes[i];
+            }
+            out.write(pack(packed, bits));
+        } else {
+            out.writeByte(STRING_PLAIN);
+            for (byte[] value : values) {
+                out.writeShort(value.length);
+                out.write(value);
+            }
+        }
+    }
+
+    private void decodeColumn(DataInputStream in, byte[] page, int f, int[] slots)
+            throws IOException {
+        byte encoding = in.readByte();
+        switch (encoding) {
+        case INT_FOR: {
+            long min = in.readInt();
+            int bits = in.readUnsignedByte();
+            byte[] packed = new byte[(slots.length * bits + 7) / 8];
+            in.readFully(packed);
+            long[] deltas = unpack(packed, slots.length, bits);
+            for (int i = 0; i < slots.length; i++) {
+                putInt(page, offset(slots[i], f), (int) (min + deltas[i]));
+            }
+            break;
+        }
+        case INT_RLE: {
+            int runs = in.readInt();
+            int i = 0;
+            for (int r = 0; r < runs; r++) {
+                int value = in.readInt();
+                int count = in.readInt();
+                for (int k = 0; k < count; k++) {
+                    putInt(page, offset(slots[i++], f), value);
+                }
+            }
+            break;
+        }
+        case STRING_PLAIN:
+            for (int slot : slots) {
+                putString(page, offset(slot, f), readBytes(in));
+            }
+            break;
+        case STRING_DICT: {
+            byte[][] dict = new byte[in.readUnsignedShort()][];
+            for (int i = 0; i < dict.length; i++) {
+                dict[i] = readBytes(in);
+            }
+            int bits = in.readUnsignedByte();
+            byte[] packed = new byte[(slots.length * bits + 7) / 8];
+            in.readFully(packed);
+            long[] indexes = unpack(packed, slots.length, bits);
+            for (int i = 0; i < slots.length; i++) {
+                putString(page, offset(slots[i], f), dict[(int) indexes[i]]);
+            }
+            break;
+        }
+        case PLAIN:
+            for (int slot : slots) {
+                in.readFully(page, offset(slot, f), td.getFieldType(f).getLen());
+            }
+            break;
+        default:
+            throw new IOException("unknown column encoding " + encoding);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void putInt(byte[] page, int offset, int value) {
+        page[offset] = (byte) (value >>> 24);
+        page[offset + 1] = (byte) (value >>> 16);
+        page[offset + 2] = (byte) (value >>> 8);
+        page[offset + 3] = (byte) value;
+    }
+
+    private static void putString(byte[] page, int offset, byte[] bytes) {
+        putInt(page, offset, bytes.length);
+        System.arraycopy(bytes, 0, page, offset + 4, bytes.length);
+    }
+
+    /**
+     * Packs the low bits bits of each value into consecutive bits of the
+     * returned array, least significant bit first.
+     */
+    static byte[] pack(long[] values, int bits) {
+        byte[] packed = new byte[(int) (((long) values.length * bits + 7) / 8)];
+        long mask = bits == 64 ? -1L : (1L << bits) - 1;
+        long acc = 0;
+        int accBits = 0;
+        int pos = 0;
+        for (long value : values) {
+            acc |= (value & mask) << accBits;
+            accBits += bits;
+            while (accBits >= 8) {
+                packed[pos++] = (byte) acc;
+                acc >>>= 8;
+                accBits -= 8;
+            }
+        }
+        if (accBits > 0) {
+            packed[pos] = (byte) acc;
+        }
+        return packed;
+    }
+
+    /**
+     * Reverses {@link #pack} for n values of bits bits each.
+     */
+    static long[] unpack(byte[] packed, int n, int bits) {
+        long[] values = new long[n];
+        long mask = (1L << bits) - 1;
+        long acc = 0;
+        int accBits = 0;
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            while (accBits < bits) {
+                acc |= (packed[pos++] & 0xffL) << accBits;
+                accBits += 8;
+            }
+            values[i] = acc & mask;
+            acc >>>= bits;
+            accBits -= bits;
+        }
+        return values;
+    }
+}
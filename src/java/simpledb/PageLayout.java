@@ -0,0 +1,88 @@
+package simpledb;
+
+import java.io.*;
+
+/**
+ * The ways the tuples of a HeapFile can be laid out on its pages. The layout
+ * is chosen per table when its HeapFile is created (or with a trailing
+ * layout name in a catalog schema line) and applies to every page of the
+ * file. In every layout an all-zero page is an empty page.
+ */
+public enum PageLayout {
+    /**
+     * Fixed-width slots of {@link TupleDesc#getSize} bytes after a bitmap of
+     * used slots. Every string takes its maximum length on the page.
+     *
+     * @see HeapPage
+     */
+    FIXED() {
+        @Override
+        public AbstractHeapPage createPage(HeapPageId id, byte[] data) throws IOException {
+            return new HeapPage(id, data);
+        }
+
+        @Override
+        public int maxTuplesPerPage(TupleDesc td) {
+            return (BufferPool.getPageSize() * 8) / (td.getSize() * 8 + 1);
+        }
+
+    },
+
+    /**
+     * A slot directory of (offset, length) entries and records of variable
+     * length, so strings take only as much room as they need.
+     *
+     * @see SlottedHeapPage
+     */
+    SLOTTED() {
+        @Override
+        public AbstractHeapPage createPage(HeapPageId id, byte[] data) throws IOException {
+            return new SlottedHeapPage(id, data);
+        }
+
+        @Override
+        public int maxTuplesPerPage(TupleDesc td) {
+            return (BufferPool.getPageSize() - SlottedHeapPage.HEADER_SIZE)
+                    / (SlottedHeapPage.SLOT_SIZE + SlottedHeapPage.getMinRecordSize(td));
+        }
+
+    },
+
+    /**
+     * The same slots as FIXED, but stored column by column in one minipage
+     * per field, for tables that are mostly scanned a few columns at a time.
+     *
+     * @see PaxHeapPage
+     */
+    PAX() {
+        @Override
+        public AbstractHeapPage createPage(HeapPageId id, byte[] data) throws IOException {
+            return new PaxHeapPage(id, data);
+        }
+
+        @Override
+        public int maxTuplesPerPage(TupleDesc td) {
+            return FIXED.maxTuplesPerPage(td);
+        }
+    };
+
+    /**
+     * @return a page of this layout with contents read from the specified
+     *   bytes.
+     */
+    public abstract AbstractHeapPage createPage(HeapPageId id, byte[] data) throws IOException;
+
+    /**
+     * @return an upper bound on the number of tuples of the specified schema
+     *   that fit on one page of this layout.
+     */
+    public abstract int maxTuplesPerPage(TupleDesc td);
+
+    /**
+     * @return the layout with the specified (case-insensitive) name.
+     * @throws IllegalArgumentException if there is no such layout
+     */
+    public static PageLayout forName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,58 @@
+package simpledb;
+
+import java.io.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The on-disk storage behind a HeapFile: a numbered sequence of pages of
+ * {@link BufferPool#getPageSize} bytes each. Pages that have never been
+ * written past the end of the store don't exist; an all-zero page is an
+ * empty page.
+ *
+ * @see SegmentedFile
+ * @see CompressedPageFile
+ */
+public interface PageStore {
+
+    /**
+     * @return the number of pages in the store.
+     */
+    public long numPages() throws IOException;
+
+    /**
+     * Reads the specified page into buf.
+     *
+     * @param pageNo the page to read
+     * @param buf a buffer of at least one page
+     * @return false if the page does not exist
+     */
+    public boolean readPage(int pageNo, byte[] buf) throws IOException;
+
+    /**
+     * Starts reading the specified page without blocking the caller. The
+     * future completes exceptionally with an IllegalArgumentException if the
+     * page does not exist.
+     */
+    public CompletableFuture<byte[]> readPageAsync(int pageNo);
+
+    /**
+     * Writes one page of data to the specified page, growing the store if
+     * necessary. The data array is not used after this returns, so callers
+     * may reuse it.
+     */
+    public void writePage(int pageNo, byte[] data) throws IOException;
+
+    /**
+     * Shrinks the store to the specified number of pages.
+     */
+    public void truncate(long numPages) throws IOException;
+
+    /** Forces all written pages to disk. */
+    public void force() throws IOException;
+
+    /**
+     * Releases the files behind the store. They are reopened if the store
+     * is used again.
+     */
+    public void close() throws IOException;
+}
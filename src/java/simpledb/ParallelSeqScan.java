@@ -0,0 +1,253 @@
+package simpledb;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ParallelSeqScan is a sequential scan that splits the pages of a HeapFile
+ * into fixed-size page ranges ("morsels") and scans them on a pool of worker
+ * threads. Morsels are handed out dynamically, so a worker that finishes early
+ * simply claims the next unscanned range. Tuples are returned in no particular
+ * order through a bounded queue.
+ * <p>
+ * Files that are not HeapFiles cannot be split by page and are scanned by a
+ * single worker.
+ */
+public class ParallelSeqScan implements DbIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Default number of pages claimed by a worker at a time. */
+    public static final int DEFAULT_MORSEL_PAGES = 16;
+
+    /** Maximum number of scanned tuples buffered ahead of the consumer. */
+    private static final int QUEUE_CAPACITY = 4096;
+
+    /** Marker a worker puts on the queue once it has run out of morsels. */
+    private static final Tuple END_OF_WORKER = new Tuple(new TupleDesc(new Type[] { Type.INT_TYPE }));
+
+    private TransactionId tid;
+    private int tableId;
+    private String tableAlias;
+    private int parallelism;
+    private int morselPages;
+
+    private transient ScanRun run;
+    private transient Tuple next;
+
+    /**
+     * State shared by the workers of a single open()..close() cycle. Each
+     * open() starts a fresh run, so stragglers from a closed run can never
+     * claim pages from or deliver tuples to a later one.
+     */
+    private class ScanRun {
+        final DbFile file;
+        final ExecutorService workers;
+        final BlockingQueue<Tuple> queue = new ArrayBlockingQueue<Tuple>(QUEUE_CAPACITY);
+        final AtomicInteger nextPage = new AtomicInteger(0);
+        final AtomicReference<Exception> error = new AtomicReference<Exception>();
+        volatile boolean cancelled = false;
+        int runningWorkers;
+
+        ScanRun(DbFile file, int numWorkers) {
+            this.file = file;
+            this.runningWorkers = numWorkers;
+            this.workers = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ParallelSeqScan-" + tableId);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            for (int i = 0; i < numWorkers; i++) {
+                workers.execute(new Runnable() {
+                    public void run() {
+                        scanMorsels();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Worker loop: claim page ranges until the file is exhausted, pushing
+         * every tuple onto the queue, then signal completion.
+         */
+        void scanMorsels() {
+            try {
+                if (file instanceof HeapFile) {
+                    HeapFile hf = (HeapFile) file;
+                    int numPages = hf.numPages();
+                    int start;
+                    while (!cancelled && (start = nextPage.getAndAdd(morselPages)) < numPages) {
+                        drain(hf.iterator(tid, start, start + morselPages));
+                    }
+                } else {
+                    drain(file.iterator(tid));
+                }
+            } catch (InterruptedException e) {
+                // close() interrupted us; nobody is waiting for more tuples
+                return;
+            } catch (Exception e) {
+                error.compareAndSet(null, e);
+            }
+            try {
+                queue.put(END_OF_WORKER);
+            } catch (InterruptedException e) {
+                // close() interrupted us; nobody is waiting for more tuples
+            }
+        }
+
+        void drain(DbFileIterator it) throws DbException,
+                TransactionAbortedException, InterruptedException {
+            it.open();
+            try {
+                while (!cancelled && it.hasNext()) {
+                    queue.put(it.next());
+                }
+            } finally {
+                it.close();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a parallel scan over the specified table.
+     *
+     * @param tid
+     *            The transaction this scan is running as a part of.
+     * @param tableid
+     *            the table to scan.
+     * @param tableAlias
+     *            the alias of this table; see {@link SeqScan#SeqScan}.
+     * @param parallelism
+     *            the number of worker threads to scan with.
+     * @param morselPages
+     *            the number of pages a worker claims at a time.
+     */
+    public ParallelSeqScan(TransactionId tid, int tableid, String tableAlias,
+            int parallelism, int morselPages) {
+        if (parallelism < 1 || morselPages < 1) {
+            throw new IllegalArgumentException("parallelism and morsel size must be positive");
+        }
+        this.tid = tid;
+        this.tableId = tableid;
+        this.tableAlias = tableAlias;
+        this.parallelism = parallelism;
+        this.morselPages = morselPages;
+    }
+
+    /**
+     * Creates a parallel scan using one worker per available processor and
+     * the default morsel size.
+     */
+    public ParallelSeqScan(TransactionId tid, int tableid, String tableAlias) {
+        this(tid, tableid, tableAlias, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_MORSEL_PAGES);
+    }
+
+    /**
+     * @return the table name of the table the operator scans.
+     */
+    public String getTableName() {
+        return Database.getCatalog().getTableName(this.tableId);
+    }
+
+    /**
+     * @return the alias of the table this operator scans.
+     */
+    public String getAlias() {
+        return this.tableAlias;
+    }
+
+    public void open() throws DbException, TransactionAbortedException {
+        if (run != null) {
+            close();
+        }
+        DbFile file = Database.getCatalog().getDatabaseFile(tableId);
+        int numWorkers = 1;
+        if (file instanceof HeapFile) {
+            int numMorsels = (((HeapFile) file).numPages() + morselPages - 1) / morselPages;
+            numWorkers = Math.max(1, Math.min(parallelism, numMorsels));
+        }
+        next = null;
+        run = new ScanRun(file, numWorkers);
+    }
+
+    /**
+     * Returns the TupleDesc with field names from the underlying HeapFile,
+     * prefixed with the tableAlias string from the constructor.
+     */
+    public TupleDesc getTupleDesc() {
+        TupleDesc td = Database.getCatalog().getTupleDesc(tableId);
+
+        Type[] typeArr = new Type[td.numFields()];
+        String[] nameArr = new String[td.numFields()];
+
+        for (int i = 0; i < td.numFields(); i++) {
+            typeArr[i] = td.getFieldType(i);
+            nameArr[i] = tableAlias + "." + td.getFieldName(i);
+        }
+
+        return new TupleDesc(typeArr, nameArr);
+    }
+
+    public boolean hasNext() throws TransactionAbortedException, DbException {
+        if (run == null) {
+            return false;
+        }
+        try {
+            while (next == null && run.runningWorkers > 0) {
+                Tuple t = run.queue.take();
+                if (t == END_OF_WORKER) {
+                    run.runningWorkers--;
+                } else {
+                    next = t;
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new DbException("interrupted while waiting for scan workers");
+        }
+        Exception e = run.error.get();
+        if (e != null) {
+            if (e instanceof TransactionAbortedException) {
+                throw (TransactionAbortedException) e;
+            }
+            if (e instanceof DbException) {
+                throw (DbException) e;
+            }
+            throw new DbException("parallel scan failed: " + e);
+        }
+        return next != null;
+    }
+
+    public Tuple next() throws NoSuchElementException,
+            TransactionAbortedException, DbException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Tuple result = next;
+        next = null;
+        return result;
+    }
+
+    public void close() {
+        if (run != null) {
+            run.cancel();
+            run = null;
+        }
+        next = null;
+    }
+
+    public void rewind() throws DbException, NoSuchElementException,
+            TransactionAbortedException {
+        close();
+        open();
+    }
+}
@@ -0,0 +1,244 @@
+package simpledb;
+
+import java.util.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * A page of a HeapFile that stores its tuples column by column; this is the
+ * {@link PageLayout#PAX} layout (Partition Attributes Across). The page holds
+ * as many tuples as a {@link HeapPage} and starts with the same bitmap of used
+ * slots, but the rest of the page is split into one minipage per field.
+ * Minipage i holds field i of every slot, each taking
+ * {@link Type#getLen} bytes, in slot order.
+ * <p>
+ * Since the values of a column are stored next to each other, reading one
+ * field of many tuples (see {@link #getField} and {@link #getIntColumn})
+ * touches only that column's part of the page.
+ *
+ * @see PageLayout
+ * @see HeapFile
+ */
+public class PaxHeapPage extends AbstractHeapPage {
+
+    final int numSlots;
+    final int headerSize;
+
+    /** The used slots, kept in step with the bitmap at the start of page. */
+    final SlotBitmap header;
+
+    /** Offset of each field's minipage within the page. */
+    final int[] minipages;
+
+    /**
+     * The current contents of the page. Starts out as the data the page was
+     * read from, and is copied before it is first modified if it might be
+     * shared with someone else.
+     */
+    private byte[] page;
+    private boolean shared;
+
+    /** Decoded tuples by slot; null if not decoded yet. */
+    private final Tuple[] tuples;
+
+    /**
+     * Create a PaxHeapPage from a set of bytes of data read from disk.
+     * Tuples are decoded lazily, the first time they are asked for.
+     */
+    public PaxHeapPage(HeapPageId id, byte[] data) throws IOException {
+        super(id, data);
+        if (data.length != BufferPool.getPageSize()) {
+            throw new IOException("expected a page of " + BufferPool.getPageSize()
+                    + " bytes, got " + data.length);
+        }
+        this.numSlots = PageLayout.PAX.maxTuplesPerPage(td);
+        this.headerSize = (numSlots + 7) / 8;
+        this.minipages = new int[td.numFields()];
+        int offset = headerSize;
+        for (int i = 0; i < td.numFields(); i++) {
+            minipages[i] = offset;
+            offset += numSlots * td.getFieldType(i).getLen();
+        }
+        this.header = new SlotBitmap(data, 0, numSlots);
+        this.page = data;
+        this.shared = true;
+        this.tuples = new Tuple[numSlots];
+    }
+
+    public PageLayout getLayout() {
+        return PageLayout.PAX;
+    }
+
+    public int getNumSlots() {
+        return numSlots;
+    }
+
+    /** Return a view of this page before it was modified
+        -- used by recovery */
+    public PaxHeapPage getBeforeImage() {
+        return (PaxHeapPage) super.getBeforeImage();
+    }
+
+    /** @return the offset of the specified field of the specified slot. */
+    private int valueOffset(int slotId, int fieldIndex) {
+        return minipages[fieldIndex] + slotId * td.getFieldType(fieldIndex).getLen();
+    }
+
+    public synchronized boolean isSlotUsed(int i) {
+        return header.get(i);
+    }
+
+    protected synchronized int nextUsedSlot(int from) {
+        return header.nextSetBit(from);
+    }
+
+    private void markSlotUsed(int i, boolean value) {
+        header.set(i, value);
+        page[i / 8] = header.getByte(i);
+    }
+
+    public synchronized int getNumEmptySlots() {
+        return numSlots - header.cardinality();
+    }
+
+    public boolean hasRoomFor(Tuple t) {
+        return getNumEmptySlots() > 0;
+    }
+
+    public synchronized Tuple getTuple(int slotId) throws NoSuchElementException {
+        if (!isSlotUsed(slotId)) {
+            return null;
+        }
+        if (tuples[slotId] == null) {
+            Tuple t = new Tuple(td);
+            t.setRecordId(new RecordId(pid, slotId));
+            for (int j = 0; j < td.numFields(); j++) {
+                t.setField(j, readField(slotId, j));
+            }
+            tuples[slotId] = t;
+        }
+        return tuples[slotId];
+    }
+
+    public synchronized Field getField(int slotId, int fieldIndex) throws NoSuchElementException {
+        if (!isSlotUsed(slotId)) {
+            return null;
+        }
+        if (tuples[slotId] != null) {
+            return tuples[slotId].getField(fieldIndex);
+        }
+        return readField(slotId, fieldIndex);
+    }
+
+    private Field readField(int slotId, int fieldIndex) throws NoSuchElementException {
+        Type type = td.getFieldType(fieldIndex);
+        if (type == Type.STRING_TYPE) {
+            // the field refers to the page bytes, so they're copied before
+            // they are next modified
+            shared = true;
+        }
+        return decodeField(page, valueOffset(slotId, fieldIndex), type);
+    }
+
+    public synchronized int getInt(int slotId, int fieldIndex) throws NoSuchElementException {
+        checkField(slotId, fieldIndex, Type.INT_TYPE);
+        return readInt(page, valueOffset(slotId, fieldIndex));
+    }
+
+    public synchronized int compareString(int slotId, int fieldIndex, byte[] bytes)
+            throws NoSuchElementException {
+        checkField(slotId, fieldIndex, Type.STRING_TYPE);
+        int offset = valueOffset(slotId, fieldIndex);
+        return compareBytes(page, offset + 4, readInt(page, offset), bytes);
+    }
+
+    /**
+     * Returns the values of an int field for every slot of the page, read
+     * straight from the field's minipage. Entries for empty slots are 0; use
+     * {@link #isSlotUsed} to tell them apart.
+     *
+     * @param fieldIndex the field to read; must be of type INT_TYPE
+     * @param dst an array of at least getNumSlots() ints to read into, or
+     *   null to allocate a new one
+     * @return the array the values were read into
+     */
+    public synchronized int[] getIntColumn(int fieldIndex, int[] dst) {
+        if (td.getFieldType(fieldIndex) != Type.INT_TYPE) {
+            throw new IllegalArgumentException("field " + fieldIndex + " is not an int field");
+        }
+        if (dst == null) {
+            dst = new int[numSlots];
+        }
+        byte[] p = page;
+        int offset = minipages[fieldIndex];
+        for (int i = 0; i < numSlots; i++, offset += 4) {
+            dst[i] = readInt(p, offset);
+        }
+        return dst;
+    }
+
+    /**
+     * Returns the current contents of this page. The returned array is not
+     * modified by the page afterwards.
+     */
+    public synchronized byte[] getPageData() {
+        shared = true;
+        return page;
+    }
+
+    public synchronized void writePageData(ByteBuffer dst) {
+        dst.put(page);
+    }
+
+    /**
+     * Copies the page contents before they are modified if the array may
+     * be shared.
+     */
+    private void makeWritable() {
+        captureBeforeImage();
+        if (shared) {
+            page = page.clone();
+            shared = false;
+        }
+    }
+
+    public synchronized void insertTuple(Tuple t) throws DbException {
+        if (!td.equals(t.getTupleDesc())) {
+            throw new DbException("tupledesc is mismatched");
+        }
+        if (t instanceof SlotTuple) {
+            throw new DbException("a SlotTuple can't be stored on a page; copy() it first");
+        }
+        int i = header.nextClearBit(0);
+        if (i < 0) {
+            throw new DbException("page is full");
+        }
+        makeWritable();
+        for (int j = 0; j < td.numFields(); j++) {
+            writeField(i, j, t.getField(j));
+        }
+        markSlotUsed(i, true);
+        tuples[i] = t;
+        t.setRecordId(new RecordId(pid, i));
+    }
+
+    private void writeField(int slotId, int fieldIndex, Field f) {
+        int len = td.getFieldType(fieldIndex).getLen();
+        f.write(ByteBuffer.wrap(page, valueOffset(slotId, fieldIndex), len));
+    }
+
+    public synchronized void deleteTuple(Tuple t) throws DbException {
+        if (t instanceof SlotTuple) {
+            throw new DbException("a SlotTuple can't be deleted from a page; copy() it first");
+        }
+        int slot = slotOf(t);
+        makeWritable();
+        markSlotUsed(slot, false);
+        for (int j = 0; j < td.numFields(); j++) {
+            int offset = valueOffset(slot, j);
+            Arrays.fill(page, offset, offset + td.getFieldType(j).getLen(), (byte) 0);
+        }
+        tuples[slot] = null;
+        t.setRecordId(null);
+    }
+}
@@ -0,0 +1,429 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * SegmentedFile stores the pages of a table across a sequence of fixed-size
+ * segment files, so that a table is not limited by the size of a single file
+ * and page offsets never have to fit in an int.
+ * <p>
+ * Segment 0 is the base file itself; segment i (i &gt; 0) is stored next to it
+ * as <code>base.i</code>. Every segment except the last one holds exactly
+ * {@link #pagesPerSegment} pages. A table that fits in one segment is
+ * therefore laid out exactly like a plain, unsegmented heap file.
+ * <p>
+ * Segment files are opened lazily, the first time one of their pages is
+ * accessed.
+ * <p>
+ * The file can grow in extents: when a page past the end of the file is
+ * written, the segment is extended with zeroed pages up to the next multiple
+ * of the extent size, so an append-heavy table isn't grown (and fragmented on
+ * disk) one page at a time. Since preallocated pages are not yet part of the
+ * table, the logical number of pages is tracked separately from the length
+ * of the segment files. When a preallocating file is opened, trailing
+ * all-zero pages are taken to be unused preallocated space; an all-zero page
+ * is an empty heap page, so no tuples are lost this way.
+ *
+ * @Threadsafe
+ */
+public class SegmentedFile implements PageStore {
+
+    /** Default size of a segment file, in bytes. */
+    public static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+    /** Size of the zero-filled buffer used to preallocate extents. */
+    private static final int ZERO_FILL_SIZE = 1 << 16;
+
+    private final File baseFile;
+    private final long segmentSize;
+    private final long extentSize;
+
+    /** Number of pages in the table, or -1 if not yet computed. */
+    private long logicalPages = -1;
+    /** Number of pages allocated on disk, including preallocated ones. */
+    private long physicalPages = -1;
+    private final ArrayList<FileChannel> channels = new ArrayList<FileChannel>();
+    private final ArrayList<AsynchronousFileChannel> asyncChannels = new ArrayList<AsynchronousFileChannel>();
+
+    /**
+     * Creates a segmented file rooted at the specified base file.
+     *
+     * @param f the file holding segment 0
+     * @param segmentSize the maximum size of each segment file, in bytes
+     */
+    public SegmentedFile(File f, long segmentSize) {
+        this(f, segmentSize, 0);
+    }
+
+    /**
+     * Creates a segmented file rooted at the specified base file that grows
+     * in extents of the specified size.
+     *
+     * @param f the file holding segment 0
+     * @param segmentSize the maximum size of each segment file, in bytes
+     * @param extentSize the number of bytes to preallocate at a time when
+     *   the file grows; values of one page or less disable preallocation
+     */
+    public SegmentedFile(File f, long segmentSize, long extentSize) {
+        if (segmentSize < BufferPool.getPageSize()) {
+            throw new IllegalArgumentException("segments must hold at least one page");
+        }
+        this.baseFile = f;
+        this.segmentSize = segmentSize;
+        this.extentSize = extentSize;
+    }
+
+    /**
+     * @return the number of pages stored in each segment file.
+     */
+    public int pagesPerSegment() {
+        return (int) (segmentSize / BufferPool.getPageSize());
+    }
+
+    /**
+     * @return the file storing the specified segment.
+     */
+    public File segmentFile(int segment) {
+        if (segment == 0) {
+            return baseFile;
+        }
+        return new File(baseFile.getPath() + "." + segment);
+    }
+
+    /**
+     * @return the number of pages preallocated at a time when the file grows.
+     */
+    public int pagesPerExtent() {
+        return (int) Math.max(1, Math.min(extentSize, segmentSize) / BufferPool.getPageSize());
+    }
+
+    /**
+     * @return the number of pages stored across all segments, not counting
+     *   preallocated pages that haven't been written yet.
+     */
+    public synchronized long numPages() throws IOException {
+        if (logicalPages < 0) {
+            loadPageCounts();
+        }
+        return logicalPages;
+    }
+
+    /**
+     * @return the number of pages allocated on disk across all segments,
+     *   including preallocated pages.
+     */
+    public synchronized long allocatedPages() throws IOException {
+        if (physicalPages < 0) {
+            loadPageCounts();
+        }
+        return physicalPages;
+    }
+
+    /**
+     * Computes the page counts from the lengths of the segment files. Only
+     * called once; afterwards the counts are maintained as pages are written.
+     */
+    private void loadPageCounts() throws IOException {
+        long pages = 0;
+        int pageSize = BufferPool.getPageSize();
+        for (int i = 0; segmentFile(i).exists(); i++) {
+            pages += segmentFile(i).length() / pageSize;
+        }
+        physicalPages = pages;
+        logicalPages = pages;
+        if (pagesPerExtent() > 1) {
+            // at most one extent's worth of pages was preallocated past the
+            // last page written
+            byte[] buf = new byte[pageSize];
+            long limit = Math.max(0, physicalPages - pagesPerExtent());
+            while (logicalPages > limit) {
+                if (!read((int) (logicalPages - 1), buf) || !isZero(buf)) {
+                    break;
+                }
+                logicalPages--;
+            }
+        }
+    }
+
+    private static boolean isZero(byte[] buf) {
+        for (byte b : buf) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the specified page into buf.
+     *
+     * @param pageNo the page to read
+     * @param buf a buffer of at least one page
+     * @return false if the page does not exist
+     */
+    public boolean readPage(int pageNo, byte[] buf) throws IOException {
+        if (pageNo >= numPages()) {
+            return false;
+        }
+        return read(pageNo, buf);
+    }
+
+    private boolean read(int pageNo, byte[] buf) throws IOException {
+        long position = offsetOf(pageNo);
+        while (true) {
+            FileChannel channel = channel(segmentOf(pageNo), false);
+            if (channel == null) {
+                return false;
+            }
+            ByteBuffer dst = ByteBuffer.wrap(buf, 0, BufferPool.getPageSize());
+            try {
+                while (dst.hasRemaining()) {
+                    int n = channel.read(dst, position + dst.position());
+                    if (n < 0) {
+                        break;
+                    }
+                }
+                return dst.position() > 0;
+            } catch (ClosedChannelException e) {
+                retryAfterClose(e);
+            }
+        }
+    }
+
+    /**
+     * Called when an I/O operation finds its channel closed. An interrupted
+     * thread closes the channel it was using for every other thread too, so
+     * unless this thread is the one that was interrupted, the operation is
+     * retried on a freshly opened channel.
+     */
+    static void retryAfterClose(ClosedChannelException e) throws ClosedChannelException {
+        if (e instanceof ClosedByInterruptException || Thread.currentThread().isInterrupted()) {
+            throw e;
+        }
+    }
+
+    /**
+     * Starts reading the specified page without blocking the caller. The
+     * future completes exceptionally with an IllegalArgumentException if the
+     * page does not exist.
+     */
+    public CompletableFuture<byte[]> readPageAsync(final int pageNo) {
+        final CompletableFuture<byte[]> result = new CompletableFuture<byte[]>();
+        final ByteBuffer buf = ByteBuffer.allocate(BufferPool.getPageSize());
+        final long position = offsetOf(pageNo);
+        try {
+            final AsynchronousFileChannel channel = pageNo < numPages() ? asyncChannel(segmentOf(pageNo)) : null;
+            if (channel == null) {
+                result.completeExceptionally(new IllegalArgumentException(
+                        "page " + pageNo + " does not exist"));
+                return result;
+            }
+            // a single read may come back short, so keep reading until the
+            // page is full or we hit the end of the segment
+            channel.read(buf, position, null, new CompletionHandler<Integer, Void>() {
+                private AsynchronousFileChannel current = channel;
+
+                public void completed(Integer n, Void attachment) {
+                    if (n < 0 || !buf.hasRemaining()) {
+                        if (buf.position() == 0) {
+                            result.completeExceptionally(new IllegalArgumentException(
+                                    "page " + pageNo + " does not exist"));
+                        } else {
+                            result.complete(buf.array());
+                        }
+                        return;
+                    }
+                    current.read(buf, position + buf.position(), null, this);
+                }
+
+                public void failed(Throwable exc, Void attachment) {
+                    if (exc instanceof ClosedChannelException) {
+                        // reopen the channel and carry on where we were
+                        try {
+                            retryAfterClose((ClosedChannelException) exc);
+                            current = asyncChannel(segmentOf(pageNo));
+                            if (current != null) {
+                                current.read(buf, position + buf.position(), null, this);
+                                return;
+                            }
+                            exc = new IllegalArgumentException("page " + pageNo + " does not exist");
+                        } catch (IOException e) {
+                            exc = e;
+                        }
+                    }
+                    result.completeExceptionally(exc);
+                }
+            });
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Writes one page of data to the specified page, creating the segment
+     * file holding it and preallocating space if necessary.
+     */
+    public void writePage(int pageNo, byte[] data) throws IOException {
+        allocate(pageNo);
+        long position = offsetOf(pageNo);
+        while (true) {
+            FileChannel channel = channel(segmentOf(pageNo), true);
+            ByteBuffer src = ByteBuffer.wrap(data, 0, BufferPool.getPageSize());
+            try {
+                while (src.hasRemaining()) {
+                    channel.write(src, position + src.position());
+                }
+                return;
+            } catch (ClosedChannelException e) {
+                retryAfterClose(e);
+            }
+        }
+    }
+
+    /**
+     * Makes sure the specified page is allocated on disk, preallocating
+     * whole extents as the file grows, and counts it as part of the file.
+     */
+    private synchronized void allocate(int pageNo) throws IOException {
+        if (logicalPages < 0) {
+            loadPageCounts();
+        }
+        int pps = pagesPerSegment();
+        int ppe = pagesPerExtent();
+        while (physicalPages <= pageNo) {
+            int segment = (int) (physicalPages / pps);
+            long from = physicalPages - (long) segment * pps;
+            long to = Math.min(((from + 1 + ppe - 1) / ppe) * ppe, pps);
+            zeroFill(channel(segment, true), from * BufferPool.getPageSize(),
+                    to * BufferPool.getPageSize());
+            physicalPages = (long) segment * pps + to;
+        }
+        logicalPages = Math.max(logicalPages, pageNo + 1);
+    }
+
+    private static void zeroFill(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer zeroes = ByteBuffer.allocate((int) Math.min(ZERO_FILL_SIZE, to - from));
+        long position = from;
+        while (position < to) {
+            zeroes.clear();
+            zeroes.limit((int) Math.min(zeroes.capacity(), to - position));
+            position += channel.write(zeroes, position);
+        }
+    }
+
+    /**
+     * Shrinks the file to the specified number of pages, deleting any
+     * segment files that are no longer needed.
+     */
+    public synchronized void truncate(long numPages) throws IOException {
+        logicalPages = numPages;
+        physicalPages = numPages;
+        int lastSegment = (int) ((numPages - 1) / pagesPerSegment());
+        if (numPages == 0) {
+            lastSegment = 0;
+        }
+        for (int i = lastSegment + 1; segmentFile(i).exists(); i++) {
+            closeSegment(i);
+            if (!segmentFile(i).delete()) {
+                throw new IOException("couldn't delete segment " + segmentFile(i));
+            }
+        }
+        long bytes = (numPages - (long) lastSegment * pagesPerSegment()) * BufferPool.getPageSize();
+        FileChannel channel = channel(lastSegment, false);
+        if (channel != null) {
+            channel.truncate(bytes);
+        }
+    }
+
+    private void closeSegment(int segment) throws IOException {
+        if (segment < channels.size() && channels.get(segment) != null) {
+            channels.get(segment).close();
+            channels.set(segment, null);
+        }
+        if (segment < asyncChannels.size() && asyncChannels.get(segment) != null) {
+            asyncChannels.get(segment).close();
+            asyncChannels.set(segment, null);
+        }
+    }
+
+    /**
+     * Closes the channels of every segment. They are reopened if the file
+     * is used again.
+     */
+    public synchronized void close() throws IOException {
+        int segments = Math.max(channels.size(), asyncChannels.size());
+        for (int i = 0; i < segments; i++) {
+            closeSegment(i);
+        }
+    }
+
+    /** Forces all written pages to disk. */
+    public synchronized void force() throws IOException {
+        for (FileChannel channel : channels) {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+            }
+        }
+    }
+
+    private int segmentOf(int pageNo) {
+        return pageNo / pagesPerSegment();
+    }
+
+    /** @return the byte offset of the page within its segment file. */
+    private long offsetOf(int pageNo) {
+        return (long) (pageNo % pagesPerSegment()) * BufferPool.getPageSize();
+    }
+
+    /**
+     * Returns the channel for the specified segment, opening it on first use.
+     * Returns null if the segment doesn't exist and create is false.
+     */
+    private synchronized FileChannel channel(int segment, boolean create) throws IOException {
+        while (channels.size() <= segment) {
+            channels.add(null);
+        }
+        FileChannel channel = channels.get(segment);
+        if (channel == null || !channel.isOpen()) {
+            File f = segmentFile(segment);
+            if (!create && !f.exists()) {
+                return null;
+            }
+            channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channels.set(segment, channel);
+        }
+        return channel;
+    }
+
+    /**
+     * Returns the asynchronous channel for the specified segment, opening it
+     * if it hasn't been opened yet or was closed, or null if the segment
+     * doesn't exist.
+     */
+    private synchronized AsynchronousFileChannel asyncChannel(int segment) throws IOException {
+        while (asyncChannels.size() <= segment) {
+            asyncChannels.add(null);
+        }
+        AsynchronousFileChannel channel = asyncChannels.get(segment);
+        if (channel == null || !channel.isOpen()) {
+            File f = segmentFile(segment);
+            if (!f.exists()) {
+                return null;
+            }
+            channel = AsynchronousFileChannel.open(f.toPath(), StandardOpenOption.READ);
+            asyncChannels.set(segment, channel);
+        }
+        return channel;
+    }
+}
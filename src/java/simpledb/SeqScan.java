@@ -81,6 +81,52 @@ public class SeqScan implements DbIterator {
         this(tid, tableid, Database.getCatalog().getTableName(tableid));
     }
 
+    /**
+     * Creates a sequential scan that returns only the tuples of the table
+     * satisfying the specified predicate. Scans of a HeapFile skip the pages
+     * its zone map shows can't hold a match (see {@link ZoneMap}).
+     *
+     * @param pred
+     *            the predicate returned tuples satisfy; its field number
+     *            refers to the fields of the table.
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, final Predicate pred) {
+        this.tid = tid;
+        this.tableId = tableid;
+        this.tableAlias = tableAlias;
+        DbFile file = Database.getCatalog().getDatabaseFile(tableid);
+        if (file instanceof HeapFile) {
+            this.iter = ((HeapFile) file).iterator(tid, pred);
+        } else {
+            final DbFileIterator all = file.iterator(tid);
+            this.iter = new AbstractDbFileIterator() {
+                public void open() throws DbException, TransactionAbortedException {
+                    all.open();
+                }
+
+                protected Tuple readNext() throws DbException, TransactionAbortedException {
+                    while (all.hasNext()) {
+                        Tuple t = all.next();
+                        if (pred.filter(t)) {
+                            return t;
+                        }
+                    }
+                    return null;
+                }
+
+                public void rewind() throws DbException, TransactionAbortedException {
+                    super.close();
+                    all.rewind();
+                }
+
+                public void close() {
+                    super.close();
+                    all.close();
+                }
+            };
+        }
+    }
+
     public void open() throws DbException, TransactionAbortedException {
         // some code goes here
         iter.open();
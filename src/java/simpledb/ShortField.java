@@ -0,0 +1,81 @@
+package simpledb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Instance of Field that stores a single 16-bit integer.
+ */
+public class ShortField implements Field {
+
+    private static final long serialVersionUID = 1L;
+
+    private final short value;
+
+    public short getValue() {
+        return value;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param v The value of this field.
+     */
+    public ShortField(short v) {
+        value = v;
+    }
+
+    public String toString() {
+        return Short.toString(value);
+    }
+
+    public int hashCode() {
+        return value;
+    }
+
+    public boolean equals(Object field) {
+        return field instanceof ShortField && ((ShortField) field).value == value;
+    }
+
+    public void write(ByteBuffer buf) {
+        buf.putShort(value);
+    }
+
+    /**
+     * Compare the specified field to the value of this Field.
+     * Return semantics are as specified by Field.compare
+     *
+     * @throws IllegalCastException if val is not a ShortField
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+
+        ShortField bVal = (ShortField) val;
+        int cmpVal = Short.compare(value, bVal.value);
+
+        switch (op) {
+        case EQUALS:
+        case LIKE:
+            return cmpVal == 0;
+        case NOT_EQUALS:
+            return cmpVal != 0;
+        case GREATER_THAN:
+            return cmpVal > 0;
+        case GREATER_THAN_OR_EQ:
+            return cmpVal >= 0;
+        case LESS_THAN:
+            return cmpVal < 0;
+        case LESS_THAN_OR_EQ:
+            return cmpVal <= 0;
+        }
+
+        return false;
+    }
+
+    /**
+     * Return the Type of this field.
+     * @return Type.SHORT_TYPE
+     */
+    public Type getType() {
+        return Type.SHORT_TYPE;
+    }
+}
@@ -7,7 +7,7 @@ public class SimpleDb {
         // convert a file
         if(args[0].equals("convert")) {
         try {
-            if (args.length<3 || args.length>5){
+            if (args.length<3 || args.length>6){
                 System.err.println("Unexpected number of arguments to convert ");
                 return;
             }
@@ -16,6 +16,7 @@ public class SimpleDb {
             int numOfAttributes=Integer.parseInt(args[2]);
             Type[] ts = new Type[numOfAttributes];
             char fieldSeparator=',';
+            PageLayout layout = PageLayout.FIXED;
 
             if (args.length == 3) 
                 for (int i=0;i<numOfAttributes;i++)
@@ -30,21 +31,27 @@ public class SimpleDb {
                 }
                 int index=0;
                 for (String s: typeStringAr) {
-                        if (s.toLowerCase().equals("int"))
-                            ts[index++]=Type.INT_TYPE;
-                        else if (s.toLowerCase().equals("string"))
-                                ts[index++]=Type.STRING_TYPE;
-                            else {
-                                System.err.println("Unknown type " + s);
-                                return;
-                            }
+                        try {
+                            ts[index++]=Type.forName(s);
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Unknown type " + s);
+                            return;
+                        }
                 }
-                if (args.length==5)
+                if (args.length>=5)
                     fieldSeparator=args[4].charAt(0);
+                if (args.length==6) {
+                    try {
+                        layout = PageLayout.forName(args[5]);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Unknown layout " + args[5]);
+                        return;
+                    }
+                }
             }
 
             HeapFileEncoder.convert(sourceTxtFile,targetDatFile,
-                        BufferPool.getPageSize(),numOfAttributes,ts,fieldSeparator);
+                        numOfAttributes,ts,fieldSeparator,layout);
 
         } catch (IOException e) {
                 throw new RuntimeException(e);
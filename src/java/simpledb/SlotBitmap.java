@@ -0,0 +1,161 @@
+package simpledb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed-size bitmap of used slots, kept as 64-bit words so that counting
+ * used slots and finding the next used or free slot take time proportional
+ * to the number of words rather than the number of slots.
+ * <p>
+ * On a page the bitmap is stored as bytes, bit i being bit (i % 8) of byte
+ * i / 8; {@link #SlotBitmap(byte[], int, int)} and {@link #writeTo} convert
+ * between the two.
+ */
+public class SlotBitmap {
+
+    private final long[] words;
+    private final int numBits;
+
+    /**
+     * Creates a bitmap of numBits bits, all clear.
+     */
+    public SlotBitmap(int numBits) {
+        this.numBits = numBits;
+        this.words = new long[(numBits + 63) >>> 6];
+    }
+
+    /**
+     * Creates a bitmap of numBits bits read from (numBits + 7) / 8 bytes of
+     * src starting at offset. Bits past numBits in the last byte are ignored.
+     */
+    public SlotBitmap(byte[] src, int offset, int numBits) {
+        this(numBits);
+        int numBytes = getNumBytes();
+        for (int i = 0; i < numBytes; i++) {
+            words[i >>> 3] |= (src[offset + i] & 0xffL) << ((i & 7) << 3);
+        }
+        if ((numBits & 63) != 0) {
+            words[words.length - 1] &= (1L << numBits) - 1;
+        }
+    }
+
+    /**
+     * @return the number of bits in this bitmap.
+     */
+    public int size() {
+        return numBits;
+    }
+
+    /**
+     * @return the number of bytes this bitmap takes on a page.
+     */
+    public int getNumBytes() {
+        return (numBits + 7) >>> 3;
+    }
+
+    /**
+     * @return true if bit i is set; false if it is clear or out of range.
+     */
+    public boolean get(int i) {
+        if (i < 0 || i >= numBits) {
+            return false;
+        }
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Sets or clears bit i.
+     */
+    public void set(int i, boolean value) {
+        if (value) {
+            words[i >>> 6] |= 1L << i;
+        } else {
+            words[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * @return the number of set bits.
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return the first set bit at or after from, or -1 if there is none.
+     */
+    public int nextSetBit(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        if (from >= numBits) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    /**
+     * @return the first clear bit at or after from, or -1 if there is none.
+     */
+    public int nextClearBit(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        if (from >= numBits) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = ~words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                return i < numBits ? i : -1;
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = ~words[w];
+        }
+    }
+
+    /**
+     * Writes the bitmap to getNumBytes() bytes of dst starting at offset.
+     */
+    public void writeTo(byte[] dst, int offset) {
+        int numBytes = getNumBytes();
+        for (int i = 0; i < numBytes; i++) {
+            dst[offset + i] = (byte) (words[i >>> 3] >>> ((i & 7) << 3));
+        }
+    }
+
+    /**
+     * Writes the bitmap to the next getNumBytes() bytes of dst.
+     */
+    public void writeTo(ByteBuffer dst) {
+        int numBytes = getNumBytes();
+        for (int i = 0; i < numBytes; i++) {
+            dst.put((byte) (words[i >>> 3] >>> ((i & 7) << 3)));
+        }
+    }
+
+    /**
+     * @return the byte of the on-page form of the bitmap holding bit i.
+     */
+    public byte getByte(int i) {
+        return (byte) (words[i >>> 6] >>> ((i >>> 3 & 7) << 3));
+    }
+}
@@ -0,0 +1,98 @@
+package simpledb;
+
+/**
+ * A Tuple that reads its fields straight from a slot of a page, and is
+ * pointed at another slot instead of a new Tuple being created for each
+ * one. Iterators in reuse mode (see {@link HeapFile#iterator(TransactionId,
+ * boolean)} and {@link AbstractHeapPage#iterator(boolean)}) return the same
+ * SlotTuple for every tuple, so its contents are only valid until the next
+ * call to the iterator's hasNext() or next(). Consumers that need to keep a
+ * tuple must {@link #copy} it.
+ * <p>
+ * A SlotTuple can't be modified, or inserted into or deleted from a page;
+ * copy it first. HeapFile.insertTuple and deleteTuple do so themselves, so
+ * the copy, not the SlotTuple, gets (or loses) the RecordId.
+ */
+public class SlotTuple extends Tuple {
+
+    private static final long serialVersionUID = 1L;
+
+    private AbstractHeapPage page;
+    private int slot;
+
+    /**
+     * Creates a tuple with the specified schema that doesn't point at any
+     * slot yet.
+     */
+    public SlotTuple(TupleDesc td) {
+        super(td, null);
+    }
+
+    /**
+     * Points this tuple at the specified slot, which must be in use.
+     *
+     * @return this tuple
+     */
+    SlotTuple pointAt(AbstractHeapPage page, int slot) {
+        this.page = page;
+        this.slot = slot;
+        return this;
+    }
+
+    /**
+     * @return the value of the ith field of the slot this tuple points at.
+     */
+    public Field getField(int i) {
+        return page.getField(slot, i);
+    }
+
+    /**
+     * @return the value of the ith field, which must be an int field, read
+     *   without creating a Field.
+     */
+    public int getInt(int i) {
+        return page.getInt(slot, i);
+    }
+
+    /**
+     * @throws UnsupportedOperationException always
+     */
+    public void setField(int i, Field f) {
+        throw new UnsupportedOperationException("a SlotTuple can't be modified; copy() it first");
+    }
+
+    /**
+     * @return the RecordId of the slot this tuple points at.
+     */
+    public RecordId getRecordId() {
+        return page == null ? null : new RecordId(page.getId(), slot);
+    }
+
+    /**
+     * @throws UnsupportedOperationException always
+     */
+    public void setRecordId(RecordId rid) {
+        throw new UnsupportedOperationException("a SlotTuple can't be modified; copy() it first");
+    }
+
+    /**
+     * @return a new, ordinary Tuple with the values and RecordId of the slot
+     *   this tuple points at.
+     */
+    public Tuple copy() {
+        Tuple t = new Tuple(getTupleDesc());
+        for (int i = 0; i < getTupleDesc().numFields(); i++) {
+            t.setField(i, getField(i));
+        }
+        t.setRecordId(getRecordId());
+        return t;
+    }
+
+    /**
+     * Serializes the values of the slot this tuple points at, rather than
+     * the page it reads them from.
+     */
+    private Object writeReplace() {
+        return copy();
+    }
+}
@@ -0,0 +1,403 @@
+package simpledb;
+
+import java.util.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * A page of a HeapFile that stores variable-length records; this is the
+ * {@link PageLayout#SLOTTED} layout. Strings take only as many bytes as
+ * they are long, so tables with short strings fit many more tuples on a
+ * page than with the fixed layout of {@link HeapPage}.
+ * <p>
+ * The page starts with a header of two unsigned shorts: the number of
+ * entries in the slot directory, and the offset of the start of the record
+ * area (0 meaning the end of the page, i.e. no records). The slot directory
+ * follows the header, with an (offset, length) pair of unsigned shorts for
+ * each slot; an offset of 0 marks an empty slot. Records are stored at the
+ * end of the page, growing down towards the slot directory. A record is its
+ * fields one after the other: an int takes 4 bytes, a string takes a 4 byte
+ * length followed by that many bytes.
+ * <p>
+ * Deleting a tuple leaves a hole in the record area. When an insert doesn't
+ * fit in the space between the slot directory and the records but would fit
+ * if the holes were reclaimed, the records are first compacted towards the
+ * end of the page. A tuple keeps its slot for as long as it is on the page,
+ * so compaction doesn't change RecordIds.
+ *
+ * @see PageLayout
+ * @see HeapFile
+ */
+public class SlottedHeapPage extends AbstractHeapPage {
+
+    /** Size of the page header, in bytes. */
+    public static final int HEADER_SIZE = 4;
+
+    /** Size of a slot directory entry, in bytes. */
+    public static final int SLOT_SIZE = 4;
+
+    /**
+     * The current contents of the page. Starts out as the data the page was
+     * read from, and is copied before it is first modified if it might be
+     * shared with someone else.
+     */
+    private byte[] page;
+    private boolean shared;
+
+    /** Decoded tuples by slot; null if not decoded yet. */
+    private Tuple[] tuples;
+
+    /**
+     * Create a SlottedHeapPage from a set of bytes of data read from disk.
+     * Tuples are decoded lazily, the first time they are asked for.
+     */
+    public SlottedHeapPage(HeapPageId id, byte[] data) throws IOException {
+        super(id, data);
+        if (data.length != BufferPool.getPageSize()) {
+            throw new IOException("expected a page of " + BufferPool.getPageSize()
+                    + " bytes, got " + data.length);
+        }
+        this.page = data;
+        this.shared = true;
+        this.tuples = new Tuple[getNumSlots()];
+    }
+
+    public PageLayout getLayout() {
+        return PageLayout.SLOTTED;
+    }
+
+    /** Return a view of this page before it was modified
+        -- used by recovery */
+    public SlottedHeapPage getBeforeImage() {
+        return (SlottedHeapPage) super.getBeforeImage();
+    }
+
+    /**
+     * @return the smallest number of bytes a record of the specified schema
+     *   can take.
+     */
+    static int getMinRecordSize(TupleDesc td) {
+        int size = 0;
+        for (int i = 0; i < td.numFields(); i++) {
+            size += td.getFieldType(i) == Type.STRING_TYPE ? 4 : td.getFieldType(i).getLen();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes the record for the specified tuple takes.
+     */
+    static int getRecordSize(Tuple t) {
+        TupleDesc td = t.getTupleDesc();
+        int size = 0;
+        for (int i = 0; i < td.numFields(); i++) {
+            if (td.getFieldType(i) == Type.STRING_TYPE) {
+                size += 4 + Math.min(((StringField) t.getField(i)).length(), Type.STRING_LEN);
+            } else {
+                size += td.getFieldType(i).getLen();
+            }
+        }
+        return size;
+    }
+
+    private int getShort(int offset) {
+        return ((page[offset] & 0xff) << 8) | (page[offset + 1] & 0xff);
+    }
+
+    private void putShort(int offset, int value) {
+        page[offset] = (byte) (value >>> 8);
+        page[offset + 1] = (byte) value;
+    }
+
+    public synchronized int getNumSlots() {
+        return getShort(0);
+    }
+
+    /** @return the offset of the first byte of the record area. */
+    private int getRecordStart() {
+        int start = getShort(2);
+        return start == 0 ? BufferPool.getPageSize() : start;
+    }
+
+    private int getSlotOffset(int slotId) {
+        return getShort(HEADER_SIZE + slotId * SLOT_SIZE);
+    }
+
+    private int getSlotLength(int slotId) {
+        return getShort(HEADER_SIZE + slotId * SLOT_SIZE + 2);
+    }
+
+    private void setSlot(int slotId, int offset, int length) {
+        putShort(HEADER_SIZE + slotId * SLOT_SIZE, offset);
+        putShort(HEADER_SIZE + slotId * SLOT_SIZE + 2, length);
+    }
+
+    /** @return the offset of the first byte past the slot directory. */
+    private int getDirectoryEnd() {
+        return HEADER_SIZE + getNumSlots() * SLOT_SIZE;
+    }
+
+    public synchronized boolean isSlotUsed(int i) {
+        return i >= 0 && i < getNumSlots() && getSlotOffset(i) != 0;
+    }
+
+    /**
+     * @return the number of free bytes on the page, counting the holes left
+     *   by deleted records.
+     */
+    private int getFreeSpace() {
+        int used = 0;
+        for (int i = 0; i < getNumSlots(); i++) {
+            if (getSlotOffset(i) != 0) {
+                used += getSlotLength(i);
+            }
+        }
+        return BufferPool.getPageSize() - getDirectoryEnd() - used;
+    }
+
+    /** @return the first empty slot, or getNumSlots() if there is none. */
+    private int findEmptySlot() {
+        int slot = 0;
+        while (slot < getNumSlots() && getSlotOffset(slot) != 0) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the number of tuples of the largest possible size that still
+     * fit on this page. Smaller tuples may fit even if this is 0; use
+     * {@link #hasRoomFor} to check for a particular tuple.
+     */
+    public synchronized int getNumEmptySlots() {
+        int free = getFreeSpace();
+        int emptySlots = 0;
+        for (int i = 0; i < getNumSlots(); i++) {
+            if (getSlotOffset(i) == 0) {
+                emptySlots++;
+            }
+        }
+        int count = 0;
+        while (true) {
+            int need = td.getSize() + (emptySlots > 0 ? 0 : SLOT_SIZE);
+            if (free < need) {
+                return count;
+            }
+            free -= need;
+            emptySlots = Math.max(0, emptySlots - 1);
+            count++;
+        }
+    }
+
+    public synchronized boolean hasRoomFor(Tuple t) {
+        int need = getRecordSize(t);
+        if (findEmptySlot() == getNumSlots()) {
+            need += SLOT_SIZE;
+        }
+        return need <= getFreeSpace();
+    }
+
+    public synchronized Tuple getTuple(int slotId) throws NoSuchElementException {
+        if (!isSlotUsed(slotId)) {
+            return null;
+        }
+        if (tuples[slotId] == null) {
+            Tuple t = new Tuple(td);
+            t.setRecordId(new RecordId(pid, slotId));
+            int offset = getSlotOffset(slotId);
+            for (int j = 0; j < td.numFields(); j++) {
+                t.setField(j, readField(offset, td.getFieldType(j)));
+                offset += fieldLength(offset, td.getFieldType(j));
+            }
+            tuples[slotId] = t;
+        }
+        return tuples[slotId];
+    }
+
+    public synchronized Field getField(int slotId, int fieldIndex) throws NoSuchElementException {
+        if (!isSlotUsed(slotId)) {
+            return null;
+        }
+        if (tuples[slotId] != null) {
+            return tuples[slotId].getField(fieldIndex);
+        }
+        return readField(fieldOffset(slotId, fieldIndex), td.getFieldType(fieldIndex));
+    }
+
+    public synchronized int getInt(int slotId, int fieldIndex) throws NoSuchElementException {
+        checkField(slotId, fieldIndex, Type.INT_TYPE);
+        return readInt(page, fieldOffset(slotId, fieldIndex));
+    }
+
+    public synchronized int compareString(int slotId, int fieldIndex, byte[] bytes)
+            throws NoSuchElementException {
+        checkField(slotId, fieldIndex, Type.STRING_TYPE);
+        int offset = fieldOffset(slotId, fieldIndex);
+        return compareBytes(page, offset + 4, readInt(page, offset), bytes);
+    }
+
+    /**
+     * @return the offset of the specified field of the record in the
+     *   specified slot, found by skipping over the fields before it.
+     */
+    private int fieldOffset(int slotId, int fieldIndex) {
+        int offset = getSlotOffset(slotId);
+        for (int j = 0; j < fieldIndex; j++) {
+            offset += fieldLength(offset, td.getFieldType(j));
+        }
+        return offset;
+    }
+
+    /**
+     * @return the number of bytes taken by the field of the specified type
+     *   stored at the specified offset.
+     */
+    private int fieldLength(int offset, Type type) {
+        return type == Type.STRING_TYPE ? 4 + readInt(page, offset) : type.getLen();
+    }
+
+    /**
+     * Reads the field of the specified type stored at the specified offset.
+     * Strings refer to the page bytes, so they're copied before they are
+     * next modified.
+     */
+    private Field readField(int offset, Type type) throws NoSuchElementException {
+        if (type == Type.STRING_TYPE) {
+            shared = true;
+        }
+        return decodeField(page, offset, type);
+    }
+
+    private static byte[] encode(Tuple t) {
+        ByteBuffer buf = ByteBuffer.allocate(getRecordSize(t));
+        for (int j = 0; j < t.getTupleDesc().numFields(); j++) {
+            Field f = t.getField(j);
+            if (f.getType() == Type.STRING_TYPE) {
+                StringField s = (StringField) f;
+                int len = Math.min(s.length(), Type.STRING_LEN);
+                buf.putInt(len);
+                for (int c = 0; c < len; c++) {
+                    buf.put((byte) s.charAt(c));
+                }
+            } else {
+                f.write(buf);
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * Returns the current contents of this page. The returned array is not
+     * modified by the page afterwards.
+     */
+    public synchronized byte[] getPageData() {
+        shared = true;
+        return page;
+    }
+
+    /**
+     * Static method to generate a byte array corresponding to an empty
+     * SlottedHeapPage.
+     *
+     * @return The returned ByteArray.
+     */
+    public static byte[] createEmptyPageData() {
+        return new byte[BufferPool.getPageSize()];
+    }
+
+    public synchronized void writePageData(ByteBuffer dst) {
+        dst.put(page);
+    }
+
+    /**
+     * Copies the page contents before they are modified if the array may
+     * be shared.
+     */
+    private void makeWritable() {
+        captureBeforeImage();
+        if (shared) {
+            page = page.clone();
+            shared = false;
+        }
+    }
+
+    /**
+     * Moves all records to the end of the page, so that all of the free
+     * space is between the slot directory and the records. Slots are left
+     * where they are.
+     */
+    private void compact() {
+        byte[] old = page.clone();
+        int start = BufferPool.getPageSize();
+        for (int i = 0; i < getNumSlots(); i++) {
+            int offset = getSlotOffset(i);
+            if (offset != 0) {
+                int length = getSlotLength(i);
+                start -= length;
+                System.arraycopy(old, offset, page, start, length);
+                setSlot(i, start, length);
+            }
+        }
+        Arrays.fill(page, getDirectoryEnd(), start, (byte) 0);
+        putShort(2, start == BufferPool.getPageSize() ? 0 : start);
+    }
+
+    public synchronized void insertTuple(Tuple t) throws DbException {
+        if (!td.equals(t.getTupleDesc())) {
+            throw new DbException("tupledesc is mismatched");
+        }
+        if (t instanceof SlotTuple) {
+            throw new DbException("a SlotTuple can't be stored on a page; copy() it first");
+        }
+        if (!hasRoomFor(t)) {
+            throw new DbException("page is full");
+        }
+        byte[] record = encode(t);
+        int slot = findEmptySlot();
+        int dirEnd = getDirectoryEnd() + (slot == getNumSlots() ? SLOT_SIZE : 0);
+
+        makeWritable();
+        if (getRecordStart() - record.length < dirEnd) {
+            compact();
+        }
+        if (slot == getNumSlots()) {
+            putShort(0, slot + 1);
+            if (tuples.length <= slot) {
+                tuples = Arrays.copyOf(tuples, Math.max(slot + 1, tuples.length * 2));
+            }
+        }
+        int start = getRecordStart() - record.length;
+        System.arraycopy(record, 0, page, start, record.length);
+        setSlot(slot, start, record.length);
+        putShort(2, start);
+
+        tuples[slot] = t;
+        t.setRecordId(new RecordId(pid, slot));
+    }
+
+    public synchronized void deleteTuple(Tuple t) throws DbException {
+        if (t instanceof SlotTuple) {
+            throw new DbException("a SlotTuple can't be deleted from a page; copy() it first");
+        }
+        int slot = slotOf(t);
+        makeWritable();
+        int offset = getSlotOffset(slot);
+        int length = getSlotLength(slot);
+        Arrays.fill(page, offset, offset + length, (byte) 0);
+        setSlot(slot, 0, 0);
+        if (offset == getRecordStart()) {
+            // the record was at the start of the record area, so the free
+            // space in the middle of the page grows without compacting
+            putShort(2, offset + length == BufferPool.getPageSize() ? 0 : offset + length);
+        }
+        tuples[slot] = null;
+        t.setRecordId(null);
+
+        // empty slots at the end of the directory are no longer referenced
+        int numSlots = getNumSlots();
+        while (numSlots > 0 && getSlotOffset(numSlots - 1) == 0) {
+            numSlots--;
+        }
+        putShort(0, numSlots);
+    }
+}
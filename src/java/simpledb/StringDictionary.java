@@ -0,0 +1,152 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The dictionary of a HeapFile, which maps the values of its DICT fields
+ * (see {@link DictField}) to the int codes stored on its pages. All DICT
+ * fields of a table share one dictionary; a value's code is the number of
+ * values added to the dictionary before it, and never changes.
+ * <p>
+ * The dictionary is kept in memory and in a file next to the heap file,
+ * named after it with a <code>.dict</code> suffix, which holds the values in
+ * code order, each as a 4 byte length followed by that many bytes of UTF-8.
+ * Values are only ever appended. A value is written before any tuple that
+ * uses its code, and the file is forced before a heap page is written, so
+ * no page on disk holds a code the dictionary doesn't. Values whose insert
+ * is rolled back stay in the dictionary.
+ *
+ * @Threadsafe
+ */
+public class StringDictionary {
+
+    private final File file;
+    /** Values by code; null until the file has been read. */
+    private ArrayList<String> values;
+    private HashMap<String, Integer> codes;
+    /** The length of the part of the file holding whole values. */
+    private long length;
+    private RandomAccessFile out;
+    /** True if values have been written since the file was last forced. */
+    private boolean dirty;
+
+    /**
+     * Creates the dictionary stored in the specified file. The file is read
+     * the first time the dictionary is used.
+     */
+    public StringDictionary(File f) {
+        this.file = f;
+    }
+
+    /**
+     * @return the file the dictionary of the specified heap file is stored
+     *   in.
+     */
+    public static File fileFor(File heapFile) {
+        return new File(heapFile.getPath() + ".dict");
+    }
+
+    private void load() throws IOException {
+        if (values != null) {
+            return;
+        }
+        values = new ArrayList<String>();
+        codes = new HashMap<String, Integer>();
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                byte[] bytes;
+                try {
+                    bytes = new byte[dis.readInt()];
+                    dis.readFully(bytes);
+                } catch (EOFException e) {
+                    // a value cut short by a crash was never used
+                    break;
+                }
+                String v = new String(bytes, StandardCharsets.UTF_8);
+                codes.put(v, values.size());
+                values.add(v);
+                length += 4 + bytes.length;
+            }
+        } finally {
+            dis.close();
+        }
+    }
+
+    /**
+     * @return the value with the specified code.
+     * @throws NoSuchElementException if there is no such code
+     */
+    public synchronized String decode(int code) throws IOException {
+        load();
+        if (code < 0 || code >= values.size()) {
+            throw new NoSuchElementException("no dictionary code " + code + " in " + file);
+        }
+        return values.get(code);
+    }
+
+    /**
+     * @return the code of the specified value, or {@link DictField#NO_CODE}
+     *   if it isn't in the dictionary.
+     */
+    public synchronized int lookup(String value) throws IOException {
+        load();
+        Integer code = codes.get(value);
+        return code == null ? DictField.NO_CODE : code;
+    }
+
+    /**
+     * @return the code of the specified value, adding it to the dictionary
+     *   if necessary.
+     */
+    public synchronized int encode(String value) throws IOException {
+        load();
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (out == null) {
+            out = new RandomAccessFile(file, "rw");
+            // drops what is left of a value cut short by a crash
+            out.setLength(length);
+        }
+        ByteArrayOutputStream entry = new ByteArrayOutputStream(4 + bytes.length);
+        DataOutputStream dos = new DataOutputStream(entry);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+        out.seek(length);
+        out.write(entry.toByteArray());
+        length += entry.size();
+        dirty = true;
+
+        int c = values.size();
+        codes.put(value, c);
+        values.add(value);
+        return c;
+    }
+
+    /**
+     * @return the number of values in the dictionary.
+     */
+    public synchronized int size() throws IOException {
+        load();
+        return values.size();
+    }
+
+    /**
+     * Forces the values added since the last call to disk. Called before a
+     * heap page is written, so no page on disk holds a code that isn't.
+     */
+    public synchronized void force() throws IOException {
+        if (dirty) {
+            out.getChannel().force(false);
+            dirty = false;
+        }
+    }
+}
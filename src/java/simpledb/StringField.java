@@ -1,24 +1,47 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Instance of Field that stores a single String of a fixed length.
+ * <p>
+ * On a page, a string is stored one byte per character. A StringField read
+ * from a page refers to those bytes instead of decoding them: comparisons,
+ * equals, hashCode and LIKE work on the bytes directly, and a String is only
+ * created when {@link #getValue} or {@link #toString} is called. The bytes
+ * are read as ISO-8859-1, so a field compares, hashes and decodes the same
+ * whether it was read from a page or created from the String it decodes to.
  */
-public class StringField implements Field {
+public class StringField implements Field, Comparable<StringField> {
 
 	private static final long serialVersionUID = 1L;
 
-	private final String value;
+	/** The value; null until decoded from bytes. */
+	private volatile String value;
 	private final int maxSize;
 
+	/** The bytes holding the value, or null if created from a String. */
+	private final transient byte[] bytes;
+	private final transient int offset;
+	private final int length;
+
+	/**
+	 * @return the value of this field, decoding it if necessary.
+	 */
 	public String getValue() {
-		return value;
+		String v = value;
+		if (v == null) {
+			v = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+			value = v;
+		}
+		return v;
 	}
 
 	/**
 	 * Constructor.
-	 * 
+	 *
 	 * @param s
 	 *            The value of this field.
 	 * @param maxSize
@@ -31,45 +54,165 @@ public class StringField implements Field {
 			value = s.substring(0, maxSize);
 		else
 			value = s;
+		this.bytes = null;
+		this.offset = 0;
+		this.length = value.length();
+	}
+
+	/**
+	 * Creates a field whose value is the specified bytes, one byte per
+	 * character. The bytes are not copied, so they must not be modified
+	 * afterwards.
+	 */
+	StringField(byte[] bytes, int offset, int length, int maxSize) {
+		this.maxSize = maxSize;
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = Math.min(length, maxSize);
+	}
+
+	/**
+	 * @return the number of characters in the value.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return the ith character of the value, without decoding the rest.
+	 */
+	public char charAt(int i) {
+		if (i < 0 || i >= length)
+			throw new IndexOutOfBoundsException("index " + i + ", length " + length);
+		return bytes != null ? (char) (bytes[offset + i] & 0xff) : value.charAt(i);
+	}
+
+	/**
+	 * @return true if the value was decoded or created as a String, so
+	 *   getValue() won't create one.
+	 */
+	public boolean isDecoded() {
+		return value != null;
 	}
 
 	public String toString() {
-		return value;
+		return getValue();
 	}
 
+	/**
+	 * @return the same hash code as the String value, computed without
+	 *   decoding it.
+	 */
 	public int hashCode() {
-		return value.hashCode();
+		if (bytes == null)
+			return value.hashCode();
+		int h = 0;
+		for (int i = 0; i < length; i++)
+			h = 31 * h + (bytes[offset + i] & 0xff);
+		return h;
 	}
 
 	public boolean equals(Object field) {
-		return ((StringField) field).value.equals(value);
+		if (!(field instanceof StringField))
+			return false;
+		StringField other = (StringField) field;
+		return other.length == length && compareTo(other) == 0;
 	}
 
 	/**
-	 * Write this string to dos. Always writes maxSize + 4 bytes to the passed
-	 * in dos. First four bytes are string length, next bytes are string, with
-	 * remainder padded with 0 to maxSize.
-	 * 
+	 * Compares the values of two fields the way String.compareTo does,
+	 * without decoding either of them.
+	 */
+	public int compareTo(StringField other) {
+		if (bytes == null && other.bytes == null)
+			return value.compareTo(other.value);
+		int n = Math.min(length, other.length);
+		for (int i = 0; i < n; i++) {
+			int cmp = charAt(i) - other.charAt(i);
+			if (cmp != 0)
+				return cmp;
+		}
+		return length - other.length;
+	}
+
+	/**
+	 * @return true if the value of this field starts with the value of
+	 *   prefix.
+	 */
+	public boolean startsWith(StringField prefix) {
+		return regionMatches(0, prefix);
+	}
+
+	/**
+	 * @return the index of the first occurrence of the value of s in the
+	 *   value of this field, or -1 if there is none, as String.indexOf.
+	 */
+	public int indexOf(StringField s) {
+		if (bytes == null && s.bytes == null)
+			return value.indexOf(s.value);
+		for (int i = 0; i + s.length <= length; i++) {
+			if (regionMatches(i, s))
+				return i;
+		}
+		return -1;
+	}
+
+	/** @return true if s occurs in this field's value at index from. */
+	private boolean regionMatches(int from, StringField s) {
+		if (from + s.length > length)
+			return false;
+		for (int i = 0; i < s.length; i++) {
+			if (charAt(from + i) != s.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Write this string to buf. Always writes maxSize + 4 bytes. First four
+	 * bytes are string length, next bytes are string, one byte per
+	 * character, with remainder padded with 0 to maxSize.
+	 *
+	 * @param buf
+	 *            Where the string is written
+	 */
+	public void write(ByteBuffer buf) {
+		int len = Math.min(length, maxSize);
+		buf.putInt(len);
+		if (bytes != null) {
+			buf.put(bytes, offset, len);
+		} else {
+			for (int i = 0; i < len; i++)
+				buf.put((byte) value.charAt(i));
+		}
+		for (int i = len; i < maxSize; i++)
+			buf.put((byte) 0);
+	}
+
+	/**
+	 * Write this string to dos, in the format of {@link #write}.
+	 *
 	 * @param dos
 	 *            Where the string is written
 	 */
 	public void serialize(DataOutputStream dos) throws IOException {
-		String s = value;
-		int overflow = maxSize - s.length();
-		if (overflow < 0) {
-			String news = s.substring(0, maxSize);
-			s = news;
-		}
-		dos.writeInt(s.length());
-		dos.writeBytes(s);
-		while (overflow-- > 0)
-			dos.write((byte) 0);
+		ByteBuffer buf = ByteBuffer.allocate(maxSize + 4);
+		write(buf);
+		dos.write(buf.array());
+	}
+
+	/**
+	 * Serializes a field read from a page as its value, rather than as the
+	 * whole page it refers to.
+	 */
+	private Object writeReplace() {
+		return bytes == null ? this : new StringField(getValue(), maxSize);
 	}
 
 	/**
 	 * Compare the specified field to the value of this Field. Return semantics
 	 * are as specified by Field.compare
-	 * 
+	 *
 	 * @throws IllegalCastException
 	 *             if val is not a StringField
 	 * @see Field#compare
@@ -77,29 +220,28 @@ public class StringField implements Field {
 	public boolean compare(Predicate.Op op, Field val) {
 
 		StringField iVal = (StringField) val;
-		int cmpVal = value.compareTo(iVal.value);
 
 		switch (op) {
 		case EQUALS:
-			return cmpVal == 0;
+			return equals(iVal);
 
 		case NOT_EQUALS:
-			return cmpVal != 0;
+			return !equals(iVal);
 
 		case GREATER_THAN:
-			return cmpVal > 0;
+			return compareTo(iVal) > 0;
 
 		case GREATER_THAN_OR_EQ:
-			return cmpVal >= 0;
+			return compareTo(iVal) >= 0;
 
 		case LESS_THAN:
-			return cmpVal < 0;
+			return compareTo(iVal) < 0;
 
 		case LESS_THAN_OR_EQ:
-			return cmpVal <= 0;
+			return compareTo(iVal) <= 0;
 
 		case LIKE:
-			return value.indexOf(iVal.value) >= 0;
+			return indexOf(iVal) >= 0;
 		}
 
 		return false;
@@ -31,6 +31,17 @@ public class Tuple implements Serializable {
         fields = new Field[td.numFields()];
     }
 
+    /**
+     * Creates a tuple that stores its values with the specified array.
+     * Subclasses that store their values some other way pass null and
+     * override getField and setField.
+     */
+    protected Tuple(TupleDesc td, Field[] fields) {
+        schema = td;
+        recordId = null;
+        this.fields = fields;
+    }
+
     /**
      * @return The TupleDesc representing the schema of this tuple.
      */
@@ -83,6 +94,19 @@ public class Tuple implements Serializable {
         return fields[i];
     }
 
+    /**
+     * @return a new tuple with the same schema, values and RecordId as this
+     *   one. Field objects are shared, since they are never modified.
+     */
+    public Tuple copy() {
+        Tuple t = new Tuple(schema);
+        for (int i = 0; i < schema.numFields(); i++) {
+            t.setField(i, getField(i));
+        }
+        t.setRecordId(getRecordId());
+        return t;
+    }
+
     /**
      * Returns the contents of this Tuple as a string. Note that to pass the
      * system tests, the format needs to be as follows:
@@ -94,8 +118,8 @@ public class Tuple implements Serializable {
     public String toString() {
         // some code goes here
         String output = "";
-        for (int i=0; i<this.fields.length; i++){
-            output += fields[i].toString() + " ";
+        for (int i=0; i<schema.numFields(); i++){
+            output += getField(i).toString() + " ";
         }
         return output;
     }
@@ -108,8 +132,8 @@ public class Tuple implements Serializable {
     {
         // some code goes here
         ArrayList arrList = new ArrayList();
-        for (int i=0; i < this.fields.length; i++) {
-            arrList.add(this.fields[i]);
+        for (int i=0; i < schema.numFields(); i++) {
+            arrList.add(getField(i));
         }
         Iterator iter = arrList.iterator();
         return iter;
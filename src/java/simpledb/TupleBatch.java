@@ -0,0 +1,524 @@
+package simpledb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A batch of up to a fixed number of rows stored column by column, for
+ * processing many tuples per call instead of one. Each int field is an
+ * int[], each other fixed-width field a long[], and each string field is the
+ * bytes of its values packed one after another in a byte[], with an array
+ * of offsets marking where each value starts. As on a page, strings are
+ * kept one byte per character (ISO-8859-1). VARCHAR and DICT
+ * fields are kept as an array of their fields, so overflow pages and
+ * dictionaries are only read if the values are.
+ * <p>
+ * A selection vector lists the rows of the batch that are still active, in
+ * order. Rows are selected when they are added; {@link #select} narrows the
+ * selection to the rows that satisfy a predicate without moving any data.
+ * Rows are converted to and from Tuples at the edges with {@link #add},
+ * {@link #addFrom} and {@link #getTuple}.
+ */
+public class TupleBatch {
+
+    /** Default number of rows in a batch. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final TupleDesc td;
+    private final int capacity;
+    private int numRows;
+
+    /** Int columns by field index; null for other fields. */
+    private final int[][] ints;
+    /**
+     * Other fixed-width columns by field index, as stored by
+     * CompactTuple.toBits; null for int and string fields.
+     */
+    private final long[][] longs;
+    /** String bytes by field index, one per character; null for other fields. */
+    private final byte[][] strings;
+    /**
+     * String offsets by field index: value i is strings[f][offsets[f][i]]
+     * up to offsets[f][i + 1].
+     */
+    private final int[][] offsets;
+    /** VARCHAR and DICT columns by field index; null for other fields. */
+    private final Field[][] objects;
+
+    private final int[] selection;
+    private int numSelected;
+
+    /** Scratch keys for selecting on double columns; null until needed. */
+    private long[] keys;
+
+    /**
+     * Creates an empty batch of up to capacity rows with the specified
+     * schema.
+     */
+    public TupleBatch(TupleDesc td, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.td = td;
+        this.capacity = capacity;
+        this.ints = new int[td.numFields()][];
+        this.longs = new long[td.numFields()][];
+        this.strings = new byte[td.numFields()][];
+        this.offsets = new int[td.numFields()][];
+        this.objects = new Field[td.numFields()][];
+        for (int f = 0; f < td.numFields(); f++) {
+            if (td.getFieldType(f) == Type.INT_TYPE) {
+                ints[f] = new int[capacity];
+            } else if (td.getFieldType(f) == Type.STRING_TYPE) {
+                strings[f] = new byte[capacity * 8];
+                offsets[f] = new int[capacity + 1];
+            } else if (CompactTuple.isKeptAsField(td.getFieldType(f))) {
+                objects[f] = new Field[capacity];
+            } else {
+                longs[f] = new long[capacity];
+            }
+        }
+        this.selection = new int[capacity];
+    }
+
+    public TupleBatch(TupleDesc td) {
+        this(td, DEFAULT_CAPACITY);
+    }
+
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    /**
+     * @return the most rows this batch can hold.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of rows in this batch, selected or not.
+     */
+    public int numRows() {
+        return numRows;
+    }
+
+    public boolean isFull() {
+        return numRows == capacity;
+    }
+
+    /**
+     * Removes every row from this batch.
+     */
+    public void clear() {
+        numRows = 0;
+        numSelected = 0;
+    }
+
+    /**
+     * @return the number of selected rows.
+     */
+    public int numSelected() {
+        return numSelected;
+    }
+
+    /**
+     * @return the row number of the ith selected row.
+     */
+    public int getSelected(int i) {
+        if (i < 0 || i >= numSelected) {
+            throw new NoSuchElementException("no selected row " + i);
+        }
+        return selection[i];
+    }
+
+    private void appendString(int f, byte[] bytes) {
+        int start = offsets[f][numRows];
+        if (start + bytes.length > strings[f].length) {
+            strings[f] = Arrays.copyOf(strings[f],
+                    Math.max(strings[f].length * 2, start + bytes.length));
+        }
+        System.arraycopy(bytes, 0, strings[f], start, bytes.length);
+        offsets[f][numRows + 1] = start + bytes.length;
+    }
+
+    /** Marks the row just filled in as added and selected. */
+    private void endRow() {
+        selection[numSelected++] = numRows++;
+    }
+
+    /**
+     * Adds a row holding the values of t, and selects it.
+     *
+     * @return false if the batch is full, in which case nothing is added
+     */
+    public boolean add(Tuple t) {
+        if (isFull()) {
+            return false;
+        }
+        for (int f = 0; f < td.numFields(); f++) {
+            if (ints[f] != null) {
+                ints[f][numRows] = t instanceof CompactTuple
+                        ? ((CompactTuple) t).getInt(f) : ((IntField) t.getField(f)).getValue();
+            } else if (longs[f] != null) {
+                longs[f][numRows] = CompactTuple.toBits(t.getField(f));
+            } else if (objects[f] != null) {
+                objects[f][numRows] = t.getField(f);
+            } else {
+                String s = ((StringField) t.getField(f)).getValue();
+                appendString(f, s.getBytes(StandardCharsets.ISO_8859_1));
+            }
+        }
+        endRow();
+        return true;
+    }
+
+    /**
+     * Adds the tuples in the used slots of the specified page, starting at
+     * slot from, until the page or the batch runs out. Int fields are read
+     * straight from the page without creating Fields.
+     *
+     * @return the slot to continue from once the batch has been processed
+     *   and cleared, or -1 if every tuple of the page was added
+     */
+    public int addFrom(AbstractHeapPage page, int from) {
+        int slot = page.nextUsedSlot(from);
+        while (slot >= 0 && !isFull()) {
+            for (int f = 0; f < td.numFields(); f++) {
+                if (ints[f] != null) {
+                    ints[f][numRows] = page.getInt(slot, f);
+                } else if (longs[f] != null) {
+                    longs[f][numRows] = CompactTuple.toBits(page.getField(slot, f));
+                } else if (objects[f] != null) {
+                    objects[f][numRows] = page.getField(slot, f);
+                } else {
+                    String s = ((StringField) page.getField(slot, f)).getValue();
+                    appendString(f, s.getBytes(StandardCharsets.ISO_8859_1));
+                }
+            }
+            endRow();
+            slot = page.nextUsedSlot(slot + 1);
+        }
+        return slot;
+    }
+
+    /**
+     * @return the value of an int field of the specified row.
+     */
+    public int getInt(int row, int field) {
+        checkRow(row);
+        if (ints[field] == null) {
+            throw new IllegalArgumentException("field " + field + " is not an int field");
+        }
+        return ints[field][row];
+    }
+
+    /**
+     * @return the value of a string field of the specified row.
+     */
+    public String getString(int row, int field) {
+        checkRow(row);
+        if (strings[field] == null) {
+            throw new IllegalArgumentException("field " + field + " is not a string field");
+        }
+        int start = offsets[field][row];
+        return new String(strings[field], start, offsets[field][row + 1] - start,
+                StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return a new Field holding the value of a field of the specified row.
+     */
+    public Field getField(int row, int field) {
+        checkRow(row);
+        if (ints[field] != null) {
+            return new IntField(ints[field][row]);
+        } else if (longs[field] != null) {
+            return CompactTuple.fromBits(td.getFieldType(field), longs[field][row]);
+        } else if (objects[field] != null) {
+            return objects[field][row];
+        }
+        return new StringField(getString(row, field), Type.STRING_LEN);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= numRows) {
+            throw new NoSuchElementException("no row " + row);
+        }
+    }
+
+    /**
+     * @return the specified row as a Tuple.
+     */
+    public Tuple getTuple(int row) {
+        checkRow(row);
+        CompactTuple t = new CompactTuple(td);
+        for (int f = 0; f < td.numFields(); f++) {
+            if (ints[f] != null) {
+                t.setInt(f, ints[f][row]);
+            } else if (longs[f] != null) {
+                t.setBits(f, longs[f][row]);
+            } else if (objects[f] != null) {
+                t.setField(f, objects[f][row]);
+            } else {
+                t.setString(f, getString(row, f));
+            }
+        }
+        return t;
+    }
+
+    /**
+     * @return the selected rows as Tuples, in order.
+     */
+    public List<Tuple> getSelectedTuples() {
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>(numSelected);
+        for (int i = 0; i < numSelected; i++) {
+            tuples.add(getTuple(selection[i]));
+        }
+        return tuples;
+    }
+
+    /**
+     * Narrows the selection to the selected rows that satisfy the specified
+     * predicate. The operator is resolved once per call, and each operator
+     * has its own loop over the column: int and other fixed-width fields are
+     * compared as ints and longs, and string fields on their bytes, so no
+     * Field is created per row.
+     *
+     * @return the number of rows still selected
+     */
+    public int select(Predicate p) {
+        int f = p.getField();
+        Predicate.Op op = p.getOp();
+        if (ints[f] != null) {
+            numSelected = selectInts(op, ints[f], ((IntField) p.getOperand()).getValue());
+        } else if (longs[f] != null) {
+            long v = CompactTuple.toBits(p.getOperand());
+            if (td.getFieldType(f) == Type.DOUBLE_TYPE) {
+                numSelected = selectLongs(op, doubleKeys(longs[f]), doubleKey(v));
+            } else {
+                numSelected = selectLongs(op, longs[f], v);
+            }
+        } else if (strings[f] != null) {
+            numSelected = selectStrings(op, f, ((StringField) p.getOperand()).getValue());
+        } else {
+            Field[] column = objects[f];
+            Field v = p.getOperand();
+            int n = 0;
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row].compare(op, v)) {
+                    selection[n++] = row;
+                }
+            }
+            numSelected = n;
+        }
+        return numSelected;
+    }
+
+    /** Selects rows the way IntField.compare compares them. */
+    private int selectInts(Predicate.Op op, int[] column, int v) {
+        int n = 0;
+        switch (op) {
+        case EQUALS:
+        case LIKE:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] == v) selection[n++] = row;
+            }
+            break;
+        case NOT_EQUALS:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] != v) selection[n++] = row;
+            }
+            break;
+        case GREATER_THAN:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] > v) selection[n++] = row;
+            }
+            break;
+        case GREATER_THAN_OR_EQ:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] >= v) selection[n++] = row;
+            }
+            break;
+        case LESS_THAN:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] < v) selection[n++] = row;
+            }
+            break;
+        case LESS_THAN_OR_EQ:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] <= v) selection[n++] = row;
+            }
+            break;
+        }
+        return n;
+    }
+
+    /**
+     * Selects rows of a long column the way the fixed-width fields compare
+     * them. Doubles are first turned into keys by {@link #doubleKeys}.
+     */
+    private int selectLongs(Predicate.Op op, long[] column, long v) {
+        int n = 0;
+        switch (op) {
+        case EQUALS:
+        case LIKE:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] == v) selection[n++] = row;
+            }
+            break;
+        case NOT_EQUALS:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] != v) selection[n++] = row;
+            }
+            break;
+        case GREATER_THAN:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] > v) selection[n++] = row;
+            }
+            break;
+        case GREATER_THAN_OR_EQ:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] >= v) selection[n++] = row;
+            }
+            break;
+        case LESS_THAN:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] < v) selection[n++] = row;
+            }
+            break;
+        case LESS_THAN_OR_EQ:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (column[row] <= v) selection[n++] = row;
+            }
+            break;
+        }
+        return n;
+    }
+
+    /**
+     * @return the keys of the selected rows of a double column, in a
+     *   scratch array indexed by row, that compare as longs the way
+     *   Double.compare compares the doubles.
+     */
+    private long[] doubleKeys(long[] column) {
+        if (keys == null) {
+            keys = new long[capacity];
+        }
+        for (int i = 0; i < numSelected; i++) {
+            int row = selection[i];
+            keys[row] = doubleKey(column[row]);
+        }
+        return keys;
+    }
+
+    /**
+     * @return a key for the double with the specified raw bits. NaNs are
+     *   made one NaN, and the other bits of negative numbers are flipped so
+     *   that larger magnitudes sort lower.
+     */
+    private static long doubleKey(long bits) {
+        long b = Double.doubleToLongBits(Double.longBitsToDouble(bits));
+        return b ^ ((b >> 63) & Long.MAX_VALUE);
+    }
+
+    /** Selects rows the way StringField.compare compares them. */
+    private int selectStrings(Predicate.Op op, int f, String v) {
+        byte[] bytes = strings[f];
+        int[] offs = offsets[f];
+        char[] chars = v.toCharArray();
+        int n = 0;
+        switch (op) {
+        case EQUALS:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (offs[row + 1] - offs[row] == chars.length
+                        && compare(bytes, offs[row], offs[row + 1], chars) == 0)
+                    selection[n++] = row;
+            }
+            break;
+        case NOT_EQUALS:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (offs[row + 1] - offs[row] != chars.length
+                        || compare(bytes, offs[row], offs[row + 1], chars) != 0)
+                    selection[n++] = row;
+            }
+            break;
+        case GREATER_THAN:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (compare(bytes, offs[row], offs[row + 1], chars) > 0) selection[n++] = row;
+            }
+            break;
+        case GREATER_THAN_OR_EQ:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (compare(bytes, offs[row], offs[row + 1], chars) >= 0) selection[n++] = row;
+            }
+            break;
+        case LESS_THAN:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (compare(bytes, offs[row], offs[row + 1], chars) < 0) selection[n++] = row;
+            }
+            break;
+        case LESS_THAN_OR_EQ:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (compare(bytes, offs[row], offs[row + 1], chars) <= 0) selection[n++] = row;
+            }
+            break;
+        case LIKE:
+            for (int i = 0; i < numSelected; i++) {
+                int row = selection[i];
+                if (contains(bytes, offs[row], offs[row + 1], chars)) selection[n++] = row;
+            }
+            break;
+        }
+        return n;
+    }
+
+    /**
+     * Compares the string in bytes[start, end) to chars the way
+     * String.compareTo does, reading each byte as one character.
+     */
+    private static int compare(byte[] bytes, int start, int end, char[] chars) {
+        int n = Math.min(end - start, chars.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (bytes[start + i] & 0xff) - chars[i];
+            if (cmp != 0)
+                return cmp;
+        }
+        return (end - start) - chars.length;
+    }
+
+    /**
+     * @return true if the string in bytes[start, end) contains chars, the
+     *   way String.indexOf finds it.
+     */
+    private static boolean contains(byte[] bytes, int start, int end, char[] chars) {
+        outer:
+        for (int s = start; s + chars.length <= end; s++) {
+            for (int i = 0; i < chars.length; i++) {
+                if ((bytes[s + i] & 0xff) != chars[i])
+                    continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+}
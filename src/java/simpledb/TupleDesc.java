@@ -9,6 +9,7 @@ import java.util.*;
 public class TupleDesc implements Serializable {
     private int numFields;
     private TDItem[] fields;
+    private int[] offsets;
 
     /**
      * A help class to facilitate organizing the information of each field
@@ -69,6 +70,7 @@ public class TupleDesc implements Serializable {
         for (int i=0; i < numFields; i++){
             fields[i] = new TDItem(typeAr[i], fieldAr[i]);
         }
+        computeOffsets();
 
     }
 
@@ -88,6 +90,16 @@ public class TupleDesc implements Serializable {
         for (int i=0; i < numFields; i++){
             fields[i] = new TDItem(typeAr[i], null);
         }
+        computeOffsets();
+    }
+
+    private void computeOffsets() {
+        offsets = new int[numFields];
+        int offset = 0;
+        for (int i=0; i < numFields; i++){
+            offsets[i] = offset;
+            offset += fields[i].fieldType.getLen();
+        }
     }
 
     /**
@@ -138,6 +150,18 @@ public class TupleDesc implements Serializable {
         }
     }
 
+    /**
+     * Gets the byte offset of the ith field within a serialized tuple of this
+     * TupleDesc, i.e. the total length of the fields before it.
+     *
+     * @param i
+     *            The index of the field. It must be a valid index.
+     * @return the offset of the ith field, in bytes
+     */
+    public int getFieldOffset(int i) {
+        return offsets[i];
+    }
+
     /**
      * Find the index of the field with a given name.
      * 
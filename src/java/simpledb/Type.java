@@ -2,6 +2,8 @@ package simpledb;
 
 import java.text.ParseException;
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 /**
  * Class representing a type in SimpleDB.
@@ -16,12 +18,8 @@ public enum Type implements Serializable {
         }
 
         @Override
-        public Field parse(DataInputStream dis) throws ParseException {
-            try {
-                return new IntField(dis.readInt());
-            }  catch (IOException e) {
-                throw new ParseException("couldn't parse", 0);
-            }
+        public Field read(ByteBuffer buf) {
+            return new IntField(buf.getInt());
         }
 
     }, STRING_TYPE() {
@@ -30,22 +28,109 @@ public enum Type implements Serializable {
             return STRING_LEN+4;
         }
 
+        /**
+         * A field read from a buffer with a backing array refers to the
+         * bytes of the array, which must not be modified afterwards.
+         */
         @Override
-        public Field parse(DataInputStream dis) throws ParseException {
-            try {
-                int strLen = dis.readInt();
+        public Field read(ByteBuffer buf) throws ParseException {
+            int strLen = buf.getInt();
+            if (strLen < 0 || strLen > STRING_LEN) {
+                throw new ParseException("bad string length " + strLen, 0);
+            }
+            if (buf.remaining() < STRING_LEN) {
+                throw new BufferUnderflowException();
+            }
+            StringField f;
+            if (buf.hasArray()) {
+                f = new StringField(buf.array(), buf.arrayOffset() + buf.position(), strLen,
+                        STRING_LEN);
+            } else {
                 byte bs[] = new byte[strLen];
-                dis.read(bs);
-                dis.skipBytes(STRING_LEN-strLen);
-                return new StringField(new String(bs), STRING_LEN);
-            } catch (IOException e) {
-                throw new ParseException("couldn't parse", 0);
+                buf.duplicate().get(bs);
+                f = new StringField(bs, 0, strLen, STRING_LEN);
+            }
+            buf.position(buf.position() + STRING_LEN);
+            return f;
+        }
+    }, BYTE_TYPE() {
+        @Override
+        public int getLen() {
+            return 1;
+        }
+
+        @Override
+        public Field read(ByteBuffer buf) {
+            return new ByteField(buf.get());
+        }
+    }, SHORT_TYPE() {
+        @Override
+        public int getLen() {
+            return 2;
+        }
+
+        @Override
+        public Field read(ByteBuffer buf) {
+            return new ShortField(buf.getShort());
+        }
+    }, LONG_TYPE() {
+        @Override
+        public int getLen() {
+            return 8;
+        }
+
+        @Override
+        public Field read(ByteBuffer buf) {
+            return new LongField(buf.getLong());
+        }
+    }, DOUBLE_TYPE() {
+        @Override
+        public int getLen() {
+            return 8;
+        }
+
+        @Override
+        public Field read(ByteBuffer buf) {
+            return new DoubleField(buf.getDouble());
+        }
+    }, VARCHAR_TYPE() {
+        @Override
+        public int getLen() {
+            return VARCHAR_INLINE_LEN+8;
+        }
+
+        @Override
+        public Field read(ByteBuffer buf) throws ParseException {
+            int len = buf.getInt();
+            int overflowPage = buf.getInt();
+            if (len < 0) {
+                throw new ParseException("negative VARCHAR length " + len, 0);
             }
+            byte prefix[] = new byte[Math.min(len, VARCHAR_INLINE_LEN)];
+            buf.get(prefix);
+            buf.position(buf.position() + VARCHAR_INLINE_LEN - prefix.length);
+            return new VarcharField(prefix, len, overflowPage);
+        }
+    }, DICT_TYPE() {
+        @Override
+        public int getLen() {
+            return 4;
+        }
+
+        @Override
+        public Field read(ByteBuffer buf) {
+            return new DictField(buf.getInt());
         }
     };
     
     public static final int STRING_LEN = 128;
 
+    /**
+     * The number of bytes of a VARCHAR value stored in the tuple itself.
+     * Longer values are stored in overflow pages; see {@link VarcharField}.
+     */
+    public static final int VARCHAR_INLINE_LEN = 32;
+
   /**
    * @return the number of bytes required to store a field of this type.
    */
@@ -53,11 +138,85 @@ public enum Type implements Serializable {
 
   /**
    * @return a Field object of the same type as this object that has contents
-   *   read from the specified DataInputStream.
+   *   read from the specified buffer, at its position, which is advanced by
+   *   {@link #getLen} bytes. The buffer must have the default, big-endian,
+   *   byte order.
+   * @param buf The buffer to read from
+   * @throws ParseException if the data read from the buffer is not of the
+   *   appropriate type.
+   * @throws java.nio.BufferUnderflowException if the buffer has fewer than
+   *   getLen() bytes remaining.
+   */
+    public abstract Field read(ByteBuffer buf) throws ParseException;
+
+  /**
+   * @return a Field object of the same type as this object that has contents
+   *   read from the specified DataInputStream, in the format of {@link #read}.
    * @param dis The input stream to read from
    * @throws ParseException if the data read from the input stream is not
    *   of the appropriate type.
    */
-    public abstract Field parse(DataInputStream dis) throws ParseException;
+    public Field parse(DataInputStream dis) throws ParseException {
+        byte[] b = new byte[getLen()];
+        try {
+            dis.readFully(b);
+        } catch (IOException e) {
+            throw new ParseException("couldn't parse", 0);
+        }
+        return read(ByteBuffer.wrap(b));
+    }
+
+    /**
+     * @return the type with the specified name, as used in schema files:
+     *   int, string, byte, short, long, double, varchar or dict (in any
+     *   case).
+     * @throws IllegalArgumentException if there is no such type
+     */
+    public static Type forName(String name) {
+        String n = name.trim().toLowerCase();
+        if (n.equals("int"))
+            return INT_TYPE;
+        if (n.equals("string"))
+            return STRING_TYPE;
+        if (n.equals("byte"))
+            return BYTE_TYPE;
+        if (n.equals("short"))
+            return SHORT_TYPE;
+        if (n.equals("long"))
+            return LONG_TYPE;
+        if (n.equals("double"))
+            return DOUBLE_TYPE;
+        if (n.equals("varchar"))
+            return VARCHAR_TYPE;
+        if (n.equals("dict"))
+            return DICT_TYPE;
+        throw new IllegalArgumentException("unknown type " + name);
+    }
+
+    /**
+     * @return a Field of this type holding the value written out in s, as
+     *   in a text file to be converted with {@link HeapFileEncoder}.
+     * @throws NumberFormatException if s is not a valid value of this type
+     */
+    public Field parseValue(String s) {
+        switch (this) {
+        case INT_TYPE:
+            return new IntField(Integer.parseInt(s.trim()));
+        case BYTE_TYPE:
+            return new ByteField(Byte.parseByte(s.trim()));
+        case SHORT_TYPE:
+            return new ShortField(Short.parseShort(s.trim()));
+        case LONG_TYPE:
+            return new LongField(Long.parseLong(s.trim()));
+        case DOUBLE_TYPE:
+            return new DoubleField(Double.parseDouble(s.trim()));
+        case VARCHAR_TYPE:
+            return new VarcharField(s.trim());
+        case DICT_TYPE:
+            return new DictField(s.trim());
+        default:
+            return new StringField(s.trim(), STRING_LEN);
+        }
+    }
 
 }
@@ -0,0 +1,233 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Instance of Field that stores a string of any length, encoded as UTF-8.
+ * <p>
+ * A VARCHAR field always takes {@link Type#VARCHAR_INLINE_LEN} + 8 bytes in
+ * its tuple: the length of the value in bytes, the first of the overflow
+ * pages holding the value (or {@link OverflowFile#NO_PAGE}), and the first
+ * VARCHAR_INLINE_LEN bytes of the value, padded with zeroes. Values that fit
+ * are stored entirely in the tuple. Longer ones are stored in a chain of
+ * overflow pages of the HeapFile, which writes them out when the tuple is
+ * inserted (see {@link HeapFile#insertTuple}).
+ * <p>
+ * A field read from a page holds only what is stored in the tuple; the
+ * overflow pages are read the first time the value is asked for. Code that
+ * passes tuples along without looking at the field never reads them.
+ */
+public class VarcharField implements Field {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The length of the value, in bytes. */
+    private final int length;
+    /** The first min(length, VARCHAR_INLINE_LEN) bytes of the value. */
+    private final byte[] prefix;
+    /** The first overflow page holding the value, or NO_PAGE. */
+    private final int overflowPage;
+    /** The table whose overflow pages overflowPage refers to. */
+    private int tableId;
+
+    /** The value; null until the overflow pages have been read. */
+    private volatile String value;
+
+    /**
+     * Constructor.
+     *
+     * @param s
+     *            The value of this field.
+     */
+    public VarcharField(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        this.length = bytes.length;
+        this.prefix = Arrays.copyOf(bytes, Math.min(bytes.length, Type.VARCHAR_INLINE_LEN));
+        this.overflowPage = OverflowFile.NO_PAGE;
+        this.value = s;
+    }
+
+    /**
+     * Creates a field from what is stored in a tuple. Values longer than
+     * the prefix are read from the overflow pages of the table set with
+     * {@link #setTableId}.
+     */
+    VarcharField(byte[] prefix, int length, int overflowPage) {
+        this.length = length;
+        this.prefix = prefix;
+        this.overflowPage = overflowPage;
+        if (length == prefix.length) {
+            this.value = new String(prefix, StandardCharsets.UTF_8);
+        }
+    }
+
+    private VarcharField(VarcharField f, int tableId, int overflowPage) {
+        this.length = f.length;
+        this.prefix = f.prefix;
+        this.overflowPage = overflowPage;
+        this.tableId = tableId;
+        this.value = f.value;
+    }
+
+    /**
+     * @return the value of this field, reading it from its overflow pages
+     *   if necessary.
+     * @throws RuntimeException if the overflow pages can't be read
+     */
+    public String getValue() {
+        String v = value;
+        if (v == null) {
+            DbFile f = Database.getCatalog().getDatabaseFile(tableId);
+            try {
+                byte[] bytes = ((HeapFile) f).getOverflowFile().read(overflowPage, length);
+                v = new String(bytes, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            value = v;
+        }
+        return v;
+    }
+
+    /**
+     * @return the length of the value in bytes, without reading it.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return true if the whole value is stored in the tuple.
+     */
+    public boolean isInline() {
+        return length <= Type.VARCHAR_INLINE_LEN;
+    }
+
+    /**
+     * @return true if the value is in memory, so getValue() won't read any
+     *   overflow pages.
+     */
+    public boolean isLoaded() {
+        return value != null;
+    }
+
+    /**
+     * @return the first overflow page holding the value, or
+     *   OverflowFile.NO_PAGE if it hasn't been stored in overflow pages.
+     */
+    int getOverflowPage() {
+        return overflowPage;
+    }
+
+    int getTableId() {
+        return tableId;
+    }
+
+    void setTableId(int tableId) {
+        this.tableId = tableId;
+    }
+
+    /**
+     * @return a copy of this field whose value is stored in the specified
+     *   overflow pages of the specified table.
+     */
+    VarcharField withOverflowPage(int tableId, int overflowPage) {
+        return new VarcharField(this, tableId, overflowPage);
+    }
+
+    public String toString() {
+        return getValue();
+    }
+
+    public int hashCode() {
+        return getValue().hashCode();
+    }
+
+    public boolean equals(Object field) {
+        if (!(field instanceof VarcharField)) {
+            return false;
+        }
+        VarcharField f = (VarcharField) field;
+        return f.length == length && f.getValue().equals(getValue());
+    }
+
+    /**
+     * Write this field to buf. Always writes VARCHAR_INLINE_LEN + 8 bytes:
+     * the length of the value, the first overflow page, and the first
+     * VARCHAR_INLINE_LEN bytes of the value padded with 0.
+     *
+     * @param buf
+     *            Where the field is written
+     * @throws IllegalStateException
+     *            if the value doesn't fit in the tuple and hasn't been
+     *            stored in overflow pages
+     */
+    public void write(ByteBuffer buf) {
+        if (!isInline() && overflowPage == OverflowFile.NO_PAGE) {
+            throw new IllegalStateException("VARCHAR value of " + length
+                    + " bytes must be stored in overflow pages first");
+        }
+        buf.putInt(length);
+        buf.putInt(overflowPage);
+        buf.put(prefix);
+        for (int i = prefix.length; i < Type.VARCHAR_INLINE_LEN; i++) {
+            buf.put((byte) 0);
+        }
+    }
+
+    /**
+     * Compare the specified field to the value of this Field. Return semantics
+     * are as specified by Field.compare. Values of different lengths are
+     * (not) equal without reading either of them.
+     *
+     * @throws IllegalCastException
+     *             if val is not a VarcharField
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+
+        VarcharField vVal = (VarcharField) val;
+        if (op == Predicate.Op.EQUALS && length != vVal.length) {
+            return false;
+        }
+        if (op == Predicate.Op.NOT_EQUALS && length != vVal.length) {
+            return true;
+        }
+        int cmpVal = getValue().compareTo(vVal.getValue());
+
+        switch (op) {
+        case EQUALS:
+            return cmpVal == 0;
+
+        case NOT_EQUALS:
+            return cmpVal != 0;
+
+        case GREATER_THAN:
+            return cmpVal > 0;
+
+        case GREATER_THAN_OR_EQ:
+            return cmpVal >= 0;
+
+        case LESS_THAN:
+            return cmpVal < 0;
+
+        case LESS_THAN_OR_EQ:
+            return cmpVal <= 0;
+
+        case LIKE:
+            return getValue().indexOf(vVal.getValue()) >= 0;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the Type for this Field
+     */
+    public Type getType() {
+        return Type.VARCHAR_TYPE;
+    }
+}
@@ -0,0 +1,284 @@
+package simpledb;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A zone map summarizes the contents of a HeapFile in blocks of consecutive
+ * pages, so that a scan with a {@link Predicate} can skip whole blocks that
+ * can't hold a matching tuple. For every block it records the smallest and
+ * largest value of each int field, and which of the block's pages hold
+ * tuples; a block with no tuples is skipped by any predicate.
+ * <p>
+ * The zone map lives in memory and is kept up to date as tuples are inserted
+ * and deleted (see {@link HeapFile#getZoneMap}). Inserts widen a block's
+ * ranges; deletes only clear the pages they empty, so after deletes a
+ * block's ranges may be wider than its contents until the block is rebuilt
+ * with {@link #rebuildBlock}. Blocks that were already on disk when the zone
+ * map was created are unknown, and never skipped, until they are rebuilt.
+ * {@link #rebuildAsync} rebuilds every block in the background; scans and
+ * updates may run while it does.
+ *
+ * @Threadsafe
+ */
+public class ZoneMap {
+
+    /** Default number of pages per block. */
+    public static final int DEFAULT_BLOCK_PAGES = 16;
+
+    /** The summary of a single block. */
+    private static class Zone {
+        /** False until the block has been read or was created empty. */
+        boolean known;
+        /** Bit i is set if page i of the block may hold tuples. */
+        long pages;
+        final int[] min;
+        final int[] max;
+        /** Bumped by every change, so a rebuild can tell it raced one. */
+        int version;
+
+        Zone(int numFields, boolean known) {
+            this.known = known;
+            this.min = new int[numFields];
+            this.max = new int[numFields];
+            Arrays.fill(min, Integer.MAX_VALUE);
+            Arrays.fill(max, Integer.MIN_VALUE);
+        }
+
+        void widen(int field, int value) {
+            min[field] = Math.min(min[field], value);
+            max[field] = Math.max(max[field], value);
+        }
+    }
+
+    private final HeapFile file;
+    private final TupleDesc td;
+    private final int blockPages;
+    private final ArrayList<Zone> zones = new ArrayList<Zone>();
+
+    /**
+     * Creates a zone map for the specified file. Blocks holding pages the
+     * file already has are unknown until rebuilt.
+     *
+     * @param file the file to summarize
+     * @param blockPages the number of pages per block; at most 64
+     */
+    public ZoneMap(HeapFile file, int blockPages) {
+        if (blockPages < 1 || blockPages > 64) {
+            throw new IllegalArgumentException("blockPages must be between 1 and 64");
+        }
+        this.file = file;
+        this.td = file.getTupleDesc();
+        this.blockPages = blockPages;
+        int existing = (file.numPages() + blockPages - 1) / blockPages;
+        for (int i = 0; i < existing; i++) {
+            zones.add(new Zone(td.numFields(), false));
+        }
+    }
+
+    public ZoneMap(HeapFile file) {
+        this(file, DEFAULT_BLOCK_PAGES);
+    }
+
+    /**
+     * @return the number of pages per block.
+     */
+    public int getBlockPages() {
+        return blockPages;
+    }
+
+    /**
+     * Returns the zone of the block holding the specified page. Blocks past
+     * the ones the file had when the zone map was created start out empty.
+     */
+    private Zone zone(int pageNo) {
+        int block = pageNo / blockPages;
+        while (zones.size() <= block) {
+            zones.add(new Zone(td.numFields(), true));
+        }
+        return zones.get(block);
+    }
+
+    private long pageBit(int pageNo) {
+        return 1L << (pageNo % blockPages);
+    }
+
+    /**
+     * Records that the specified tuple was added to the specified page.
+     */
+    synchronized void tupleInserted(int pageNo, Tuple t) {
+        Zone z = zone(pageNo);
+        z.version++;
+        z.pages |= pageBit(pageNo);
+        for (int f = 0; f < td.numFields(); f++) {
+            if (td.getFieldType(f) == Type.INT_TYPE) {
+                z.widen(f, ((IntField) t.getField(f)).getValue());
+            }
+        }
+    }
+
+    /**
+     * Records that a tuple was removed from the specified page.
+     */
+    synchronized void tupleDeleted(AbstractHeapPage page) {
+        Zone z = zone(page.getId().pageNumber());
+        z.version++;
+        if (page.nextUsedSlot(0) < 0) {
+            z.pages &= ~pageBit(page.getId().pageNumber());
+        }
+    }
+
+    /**
+     * Records that the specified page now has exactly the contents it has,
+     * e.g. because it is being written out; ranges are only widened.
+     */
+    synchronized void pageWritten(AbstractHeapPage page) {
+        int pageNo = page.getId().pageNumber();
+        Zone z = zone(pageNo);
+        z.version++;
+        if (page.nextUsedSlot(0) < 0) {
+            z.pages &= ~pageBit(pageNo);
+            return;
+        }
+        z.pages |= pageBit(pageNo);
+        summarize(page, z);
+    }
+
+    /** Widens the ranges of z to cover the tuples on page. */
+    private void summarize(AbstractHeapPage page, Zone z) {
+        for (int f = 0; f < td.numFields(); f++) {
+            if (td.getFieldType(f) != Type.INT_TYPE) {
+                continue;
+            }
+            for (int s = page.nextUsedSlot(0); s >= 0; s = page.nextUsedSlot(s + 1)) {
+                z.widen(f, page.getInt(s, f));
+            }
+        }
+    }
+
+    /**
+     * Returns true if no tuple in the specified block can satisfy the
+     * specified predicate, so a scan may skip the block.
+     */
+    public synchronized boolean canSkip(int block, Predicate p) {
+        if (block >= zones.size()) {
+            return false;
+        }
+        Zone z = zones.get(block);
+        if (!z.known) {
+            return false;
+        }
+        if (z.pages == 0) {
+            return true;
+        }
+        int f = p.getField();
+        if (td.getFieldType(f) != Type.INT_TYPE) {
+            return false;
+        }
+        int v = ((IntField) p.getOperand()).getValue();
+        switch (p.getOp()) {
+        case EQUALS:
+        case LIKE:
+            return v < z.min[f] || v > z.max[f];
+        case NOT_EQUALS:
+            return z.min[f] == v && z.max[f] == v;
+        case GREATER_THAN:
+            return z.max[f] <= v;
+        case GREATER_THAN_OR_EQ:
+            return z.max[f] < v;
+        case LESS_THAN:
+            return z.min[f] >= v;
+        case LESS_THAN_OR_EQ:
+            return z.min[f] > v;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the specified block has been summarized.
+     */
+    public synchronized boolean isKnown(int block) {
+        return block >= zones.size() || zones.get(block).known;
+    }
+
+    /**
+     * @return the smallest value of the specified int field recorded for the
+     *   specified block, or Integer.MAX_VALUE if none is.
+     */
+    public synchronized int getMin(int block, int field) {
+        return block < zones.size() ? zones.get(block).min[field] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the largest value of the specified int field recorded for the
+     *   specified block, or Integer.MIN_VALUE if none is.
+     */
+    public synchronized int getMax(int block, int field) {
+        return block < zones.size() ? zones.get(block).max[field] : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Summarizes the specified block from its pages, read through the buffer
+     * pool, tightening any ranges deletes have left too wide. If the block
+     * changes while it is being read, the new summary is merged into the
+     * current one instead of replacing it.
+     */
+    public void rebuildBlock(TransactionId tid, int block)
+            throws DbException, TransactionAbortedException {
+        int version;
+        synchronized (this) {
+            version = zone(block * blockPages).version;
+        }
+        Zone rebuilt = new Zone(td.numFields(), true);
+        int end = Math.min((block + 1) * blockPages, file.numPages());
+        for (int pageNo = block * blockPages; pageNo < end; pageNo++) {
+            AbstractHeapPage page = (AbstractHeapPage) Database.getBufferPool().getPage(tid,
+                    new HeapPageId(file.getId(), pageNo), Permissions.READ_ONLY);
+            if (page.nextUsedSlot(0) >= 0) {
+                rebuilt.pages |= pageBit(pageNo);
+                summarize(page, rebuilt);
+            }
+        }
+        synchronized (this) {
+            Zone current = zones.get(block);
+            if (current.version != version) {
+                rebuilt.pages |= current.pages;
+                for (int f = 0; f < td.numFields(); f++) {
+                    rebuilt.min[f] = Math.min(rebuilt.min[f], current.min[f]);
+                    rebuilt.max[f] = Math.max(rebuilt.max[f], current.max[f]);
+                }
+            }
+            rebuilt.version = current.version + 1;
+            zones.set(block, rebuilt);
+        }
+    }
+
+    /**
+     * Rebuilds every block of the file, one block at a time.
+     */
+    public void rebuild(TransactionId tid) throws DbException, TransactionAbortedException {
+        int numBlocks = (file.numPages() + blockPages - 1) / blockPages;
+        for (int block = 0; block < numBlocks; block++) {
+            rebuildBlock(tid, block);
+        }
+    }
+
+    /**
+     * Rebuilds every block of the file on a pool thread, in a transaction
+     * of its own.
+     *
+     * @return a future that completes when the rebuild is done
+     */
+    public CompletableFuture<Void> rebuildAsync() {
+        return CompletableFuture.runAsync(() -> {
+            TransactionId tid = new TransactionId();
+            try {
+                rebuild(tid);
+                Database.getBufferPool().transactionComplete(tid);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+}
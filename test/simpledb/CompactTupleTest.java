@@ -0,0 +1,112 @@
+package simpledb;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+
+public class CompactTupleTest extends SimpleDbTestBase {
+
+    private static TupleDesc mixed() {
+        return new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE, Type.INT_TYPE });
+    }
+
+    /**
+     * Unit test for CompactTuple.getField() and CompactTuple.setField()
+     */
+    @Test public void modifyFields() {
+        CompactTuple tup = new CompactTuple(mixed());
+        assertNull(tup.getField(0));
+        assertNull(tup.getField(1));
+        assertEquals(0, tup.getInt(0));
+
+        tup.setField(0, new IntField(-1));
+        tup.setField(1, new StringField("abc", Type.STRING_LEN));
+        tup.setInt(2, 37);
+
+        assertEquals(new IntField(-1), tup.getField(0));
+        assertEquals(new StringField("abc", Type.STRING_LEN), tup.getField(1));
+        assertEquals("abc", tup.getString(1));
+        assertEquals(37, tup.getInt(2));
+        assertEquals(new IntField(37), tup.getField(2));
+
+        try {
+            tup.getInt(1);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Unit test for unset fields of a tuple with more than 64 fields
+     */
+    @Test public void unsetFields() {
+        Type[] types = new Type[70];
+        Arrays.fill(types, Type.LONG_TYPE);
+        CompactTuple tup = new CompactTuple(new TupleDesc(types));
+        tup.setLong(3, 0);
+        tup.setField(68, new LongField(-4));
+
+        CompactTuple copy = tup.copy();
+        for (int i = 0; i < types.length; i++) {
+            if (i == 3) {
+                assertEquals(new LongField(0), copy.getField(i));
+            } else if (i == 68) {
+                assertEquals(new LongField(-4), copy.getField(i));
+            } else {
+                assertNull("field " + i, copy.getField(i));
+            }
+        }
+    }
+
+    /**
+     * Unit test for CompactTuple.copyOf()
+     */
+    @Test public void copyOf() {
+        Tuple t = new Tuple(mixed());
+        t.setField(0, new IntField(1));
+        t.setField(1, new StringField("xyz", Type.STRING_LEN));
+        t.setField(2, new IntField(2));
+        t.setRecordId(new RecordId(new HeapPageId(0, 0), 3));
+
+        CompactTuple copy = CompactTuple.copyOf(t);
+        assertEquals(t.toString(), copy.toString());
+        assertEquals(t.getRecordId(), copy.getRecordId());
+
+        CompactTuple again = CompactTuple.copyOf(copy);
+        again.setInt(0, 5);
+        assertEquals(1, copy.getInt(0));
+        assertEquals("xyz", again.getString(1));
+    }
+
+    /**
+     * Unit test for storing a CompactTuple on a page
+     */
+    @Test public void insertIntoPage() throws Exception {
+        HeapPageId pid = new HeapPageId(-1, -1);
+        Database.getCatalog().addTable(new TestUtil.SkeletonFile(-1, Utility.getTupleDesc(2)),
+                simpledb.systemtest.SystemTestUtil.getUUID());
+        HeapPage page = new HeapPage(pid, HeapPage.createEmptyPageData());
+
+        CompactTuple tup = new CompactTuple(Utility.getTupleDesc(2));
+        tup.setInt(0, 7);
+        tup.setInt(1, 8);
+        page.insertTuple(tup);
+        assertEquals(new RecordId(pid, 0), tup.getRecordId());
+
+        HeapPage copy = new HeapPage(pid, page.getPageData());
+        assertEquals(7, copy.getInt(0, 0));
+        assertEquals(8, copy.getInt(0, 1));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(CompactTupleTest.class);
+    }
+}
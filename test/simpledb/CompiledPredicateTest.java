@@ -0,0 +1,160 @@
+package simpledb;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.util.*;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class CompiledPredicateTest extends SimpleDbTestBase {
+
+    private static final String[] STRINGS = { "", "abc", "abd", "ab", "\u00e9t\u00e9", "z" };
+
+    /**
+     * Unit test for compiled predicates giving the same results as
+     * Field.compare, on tuples and on page bytes
+     */
+    @Test public void matchesFieldCompare() throws Exception {
+        TupleDesc td = new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE });
+        Database.getCatalog().addTable(new TestUtil.SkeletonFile(-1, td),
+                SystemTestUtil.getUUID());
+        HeapPage page = new HeapPage(new HeapPageId(-1, -1), HeapPage.createEmptyPageData());
+        for (int i = 0; i < STRINGS.length; i++) {
+            Tuple t = new Tuple(td);
+            t.setField(0, new IntField(i - 2));
+            t.setField(1, new StringField(STRINGS[i], Type.STRING_LEN));
+            page.insertTuple(t);
+        }
+        // reread the page so fields come from its bytes
+        page = new HeapPage(new HeapPageId(-1, -1), page.getPageData());
+
+        for (Predicate.Op op : Predicate.Op.values()) {
+            for (int i = 0; i < STRINGS.length; i++) {
+                Predicate[] preds = {
+                    new Predicate(0, op, new IntField(i - 3)),
+                    new Predicate(1, op, new StringField(STRINGS[i], Type.STRING_LEN)),
+                };
+                for (Predicate p : preds) {
+                    CompiledPredicate c = p.compile();
+                    for (int slot = 0; slot < STRINGS.length; slot++) {
+                        Tuple t = page.getTuple(slot);
+                        boolean expected = t.getField(p.getField()).compare(op, p.getOperand());
+                        assertEquals(p + " on " + t, expected, c.matches(t));
+                        assertEquals(p + " on " + t, expected, c.matches(page, slot));
+                        assertEquals(p + " on " + t, expected,
+                                c.matches(CompactTuple.copyOf(t)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Unit test for scans filtered by conjunctions and disjunctions of
+     * compiled predicates
+     */
+    @Test public void scanAndOr() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 1000, null, tuples);
+        int pivot = tuples.get(0).get(0);
+        CompiledPredicate low = new Predicate(0, Predicate.Op.LESS_THAN_OR_EQ,
+                new IntField(pivot)).compile();
+        CompiledPredicate high = new Predicate(1, Predicate.Op.GREATER_THAN,
+                new IntField(pivot)).compile();
+
+        int both = 0;
+        int either = 0;
+        for (ArrayList<Integer> tuple : tuples) {
+            boolean a = tuple.get(0) <= pivot;
+            boolean b = tuple.get(1) > pivot;
+            both += a && b ? 1 : 0;
+            either += a || b ? 1 : 0;
+        }
+
+        TransactionId tid = new TransactionId();
+        assertEquals(both, count(hf.iterator(tid, CompiledPredicate.and(low, high), false)));
+        assertEquals(either, count(hf.iterator(tid, CompiledPredicate.or(low, high), true)));
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * Unit test for filtered scans, which test compiled predicates on page
+     * bytes, selecting the same tuples as Predicate.filter on decoded
+     * tuples, for every operator on int and string columns
+     */
+    @Test public void scanAgreesWithFilter() throws Exception {
+        TupleDesc td = new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE });
+        File f = File.createTempFile("compiled", ".dat");
+        f.deleteOnExit();
+        HeapFile hf = new HeapFile(f, td);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        TransactionId tid = new TransactionId();
+        for (int i = 0; i < 600; i++) {
+            Tuple t = new Tuple(td);
+            t.setField(0, new IntField(i % 7 - 3));
+            t.setField(1, new StringField(STRINGS[i % STRINGS.length], Type.STRING_LEN));
+            Database.getBufferPool().insertTuple(tid, hf.getId(), t);
+        }
+        Database.getBufferPool().transactionComplete(tid);
+
+        for (Predicate.Op op : Predicate.Op.values()) {
+            for (int i = 0; i < STRINGS.length; i++) {
+                Predicate[] preds = {
+                    new Predicate(0, op, new IntField(i - 3)),
+                    new Predicate(1, op, new StringField(STRINGS[i], Type.STRING_LEN)),
+                };
+                for (Predicate p : preds) {
+                    assertEquals(p.toString(), filtered(hf, p), scanned(hf, p));
+                }
+            }
+        }
+    }
+
+    /** @return the RecordIds of the tuples of hf that pass p.filter. */
+    private static ArrayList<RecordId> filtered(HeapFile hf, Predicate p) throws Exception {
+        ArrayList<RecordId> rids = new ArrayList<RecordId>();
+        DbFileIterator it = hf.iterator(new TransactionId());
+        it.open();
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            if (p.filter(t))
+                rids.add(t.getRecordId());
+        }
+        it.close();
+        return rids;
+    }
+
+    /** @return the RecordIds of the tuples of a scan of hf filtered by p. */
+    private static ArrayList<RecordId> scanned(HeapFile hf, Predicate p) throws Exception {
+        ArrayList<RecordId> rids = new ArrayList<RecordId>();
+        DbFileIterator it = hf.iterator(new TransactionId(), p.compile(), true);
+        it.open();
+        while (it.hasNext())
+            rids.add(it.next().getRecordId());
+        it.close();
+        return rids;
+    }
+
+    private static int count(DbFileIterator it) throws Exception {
+        int n = 0;
+        it.open();
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        it.close();
+        return n;
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(CompiledPredicateTest.class);
+    }
+}
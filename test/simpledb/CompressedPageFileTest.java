@@ -0,0 +1,152 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.util.*;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class CompressedPageFileTest extends SimpleDbTestBase {
+
+    private HeapFile createFile(TupleDesc td, PageLayout layout) throws Exception {
+        File f = File.createTempFile("compressed", ".dat");
+        f.deleteOnExit();
+        new File(f.getPath() + ".pages").deleteOnExit();
+        HeapFile hf = new HeapFile(f, td, layout, true);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        return hf;
+    }
+
+    private long compressedSize(HeapFile hf) throws Exception {
+        CompressedPageFile store = new CompressedPageFile(hf.getFile(), hf.getTupleDesc(), hf.getLayout());
+        return store.compressedSize();
+    }
+
+    /**
+     * Small and repetitive ints are stored in a fraction of the page size,
+     * and read back unchanged.
+     */
+    @Test public void compressInts() throws Exception {
+        HeapFile hf = createFile(Utility.getTupleDesc(2), PageLayout.FIXED);
+        TransactionId tid = new TransactionId();
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        Random r = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            int a = 1000 + r.nextInt(200);
+            int b = i / 100;
+            Database.getBufferPool().insertTuple(tid, hf.getId(), Utility.getHeapTuple(new int[] { a, b }));
+            tuples.add(new ArrayList<Integer>(Arrays.asList(a, b)));
+        }
+        Database.getBufferPool().flushPages(tid);
+
+        assertEquals(4, hf.numPages());
+        long size = compressedSize(hf);
+        assertTrue("compressed to " + size, size * 3 < hf.numPages() * BufferPool.getPageSize());
+
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(hf, tuples);
+    }
+
+    /**
+     * Strings drop their padding, and repeated strings share a dictionary
+     * entry; deleted tuples leave empty slots behind.
+     */
+    @Test public void compressStrings() throws Exception {
+        TupleDesc td = new TupleDesc(new Type[] { Type.STRING_TYPE, Type.INT_TYPE });
+        HeapFile hf = createFile(td, PageLayout.PAX);
+        TransactionId tid = new TransactionId();
+        String[] cities = { "Boston", "Cambridge", "Somerville" };
+        ArrayList<Tuple> inserted = new ArrayList<Tuple>();
+        for (int i = 0; i < 90; i++) {
+            Tuple t = new Tuple(td);
+            t.setField(0, new StringField(cities[i % 3], Type.STRING_LEN));
+            t.setField(1, new IntField(i));
+            Database.getBufferPool().insertTuple(tid, hf.getId(), t);
+            inserted.add(t);
+        }
+        Database.getBufferPool().deleteTuple(tid, inserted.get(5));
+        Database.getBufferPool().flushPages(tid);
+        assertTrue(compressedSize(hf) < 1024);
+
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        DbFileIterator it = hf.iterator(new TransactionId());
+        it.open();
+        for (int i = 0; i < 90; i++) {
+            if (i == 5)
+                continue;
+            Tuple t = it.next();
+            assertEquals(new StringField(cities[i % 3], Type.STRING_LEN), t.getField(0));
+            assertEquals(new IntField(i), t.getField(1));
+        }
+        assertFalse(it.hasNext());
+        it.close();
+    }
+
+    /**
+     * Closing a parallel scan interrupts its workers in the middle of reads,
+     * which closes the shared channels; the table must still be readable and
+     * writable afterwards.
+     */
+    @Test public void closeParallelScanMidRead() throws Exception {
+        HeapFile hf = createFile(Utility.getTupleDesc(2), PageLayout.FIXED);
+        TransactionId tid = new TransactionId();
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        for (int i = 0; i < 20000; i++) {
+            Database.getBufferPool().insertTuple(tid, hf.getId(), Utility.getHeapTuple(new int[] { i, i / 7 }));
+            tuples.add(new ArrayList<Integer>(Arrays.asList(i, i / 7)));
+        }
+        Database.getBufferPool().flushPages(tid);
+
+        for (int i = 0; i < 20; i++) {
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+            ParallelSeqScan scan = new ParallelSeqScan(new TransactionId(), hf.getId(), "t", 4, 1);
+            scan.open();
+            assertTrue(scan.hasNext());
+            scan.next();
+            scan.close();
+        }
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(hf, tuples);
+
+        Database.getBufferPool().insertTuple(tid, hf.getId(), Utility.getHeapTuple(new int[] { -1, -2 }));
+        Database.getBufferPool().flushPages(tid);
+        tuples.add(new ArrayList<Integer>(Arrays.asList(-1, -2)));
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(hf, tuples);
+    }
+
+    /**
+     * A table written without compression can't be opened as compressed.
+     */
+    @Test public void refuseUncompressedFile() throws Exception {
+        HeapFile plain = SystemTestUtil.createRandomHeapFile(2, 10, null, null);
+        assertFalse(new File(plain.getFile().getPath() + ".pages").exists());
+        try {
+            new HeapFile(plain.getFile(), plain.getTupleDesc(), PageLayout.FIXED, true);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Unit test for PageCodec.pack() and unpack()
+     */
+    @Test public void bitPacking() {
+        long[] values = { 0, 5, 31, 17, 1, 30, 2 };
+        byte[] packed = PageCodec.pack(values, 5);
+        assertEquals(5, packed.length);
+        assertArrayEquals(values, PageCodec.unpack(packed, values.length, 5));
+        assertArrayEquals(new long[] { 0, 0, 0 }, PageCodec.unpack(new byte[0], 3, 0));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(CompressedPageFileTest.class);
+    }
+}
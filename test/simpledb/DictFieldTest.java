@@ -0,0 +1,142 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.*;
+import java.util.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class DictFieldTest extends SimpleDbTestBase {
+
+    private static final TupleDesc TD =
+            new TupleDesc(new Type[] { Type.INT_TYPE, Type.DICT_TYPE });
+    private static final String[] STATUS = { "open", "closed", "pending" };
+
+    private File f;
+    private HeapFile hf;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before
+    public void createFile() throws Exception {
+        f = File.createTempFile("dict", ".dat");
+        f.deleteOnExit();
+        StringDictionary.fileFor(f).deleteOnExit();
+        hf = open();
+    }
+
+    private HeapFile open() {
+        HeapFile file = new HeapFile(f, TD);
+        Database.getCatalog().addTable(file, SystemTestUtil.getUUID());
+        return file;
+    }
+
+    private static Tuple tuple(int i, String s) {
+        Tuple t = new Tuple(TD);
+        t.setField(0, new IntField(i));
+        t.setField(1, new DictField(s));
+        return t;
+    }
+
+    private static List<Tuple> scan(DbFileIterator it) throws Exception {
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+        it.open();
+        while (it.hasNext()) {
+            tuples.add(it.next());
+        }
+        it.close();
+        return tuples;
+    }
+
+    /**
+     * Unit test for DICT values stored as codes by HeapFile.insertTuple()
+     * and decoded after the table is reopened
+     */
+    @Test public void insertAndReopen() throws Exception {
+        TransactionId tid = new TransactionId();
+        for (int i = 0; i < 30; i++) {
+            Database.getBufferPool().insertTuple(tid, hf.getId(), tuple(i, STATUS[i % 3]));
+        }
+        Database.getBufferPool().transactionComplete(tid);
+        Database.getBufferPool().flushAllPages();
+        assertEquals(3, hf.getDictionary().size());
+        assertEquals(8, TD.getSize());
+
+        Database.reset();
+        HeapFile reopened = open();
+        List<Tuple> tuples = scan(reopened.iterator(new TransactionId()));
+        assertEquals(30, tuples.size());
+        DictField d = (DictField) tuples.get(4).getField(1);
+        assertEquals(1, d.getCode());
+        assertFalse(d.isDecoded());
+        assertEquals("closed", d.getValue());
+        assertEquals(3, reopened.getDictionary().size());
+
+        // new values get new codes, old ones keep theirs
+        tid = new TransactionId();
+        Tuple t = tuple(30, "rejected");
+        Database.getBufferPool().insertTuple(tid, reopened.getId(), t);
+        Database.getBufferPool().transactionComplete(tid);
+        assertEquals(3, ((DictField) t.getField(1)).getCode());
+        assertEquals(0, reopened.getDictionary().lookup("open"));
+    }
+
+    /**
+     * Unit test for equality predicates on DICT fields comparing codes
+     */
+    @Test public void filter() throws Exception {
+        TransactionId tid = new TransactionId();
+        for (int i = 0; i < 30; i++) {
+            Database.getBufferPool().insertTuple(tid, hf.getId(), tuple(i, STATUS[i % 3]));
+        }
+        Database.getBufferPool().transactionComplete(tid);
+
+        Database.getBufferPool().flushAllPages();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        Predicate p = new Predicate(1, Predicate.Op.EQUALS, new DictField("pending"));
+        List<Tuple> tuples = scan(hf.iterator(new TransactionId(), p));
+        assertEquals(10, tuples.size());
+        for (Tuple t : tuples) {
+            assertFalse(((DictField) t.getField(1)).isDecoded());
+            assertEquals(2, ((IntField) t.getField(0)).getValue() % 3);
+        }
+        assertEquals("pending", tuples.get(0).getField(1).toString());
+
+        p = new Predicate(1, Predicate.Op.NOT_EQUALS, new DictField("missing"));
+        assertEquals(30, scan(hf.iterator(new TransactionId(), p)).size());
+        p = new Predicate(1, Predicate.Op.LESS_THAN, new DictField("open"));
+        assertEquals(10, scan(hf.iterator(new TransactionId(), p)).size());
+    }
+
+    /**
+     * Unit test for HeapFileEncoder with DICT fields
+     */
+    @Test public void encode() throws Exception {
+        File txt = File.createTempFile("dict", ".txt");
+        txt.deleteOnExit();
+        Writer w = new FileWriter(txt);
+        w.write("1,US\n2,FR\n3,US\n");
+        w.close();
+        HeapFileEncoder.convert(txt, f, BufferPool.getPageSize(), 2,
+                new Type[] { Type.INT_TYPE, Type.DICT_TYPE });
+
+        List<Tuple> tuples = scan(hf.iterator(new TransactionId()));
+        assertEquals(3, tuples.size());
+        assertEquals(new DictField("FR"), tuples.get(1).getField(1));
+        assertEquals(tuples.get(0).getField(1), tuples.get(2).getField(1));
+        assertEquals(2, hf.getDictionary().size());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(DictFieldTest.class);
+    }
+}
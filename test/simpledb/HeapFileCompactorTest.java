@@ -0,0 +1,161 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.util.*;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class HeapFileCompactorTest extends SimpleDbTestBase {
+
+    /**
+     * Deletes every tuple whose first field is odd, keeping the rest in
+     * remaining.
+     */
+    private void deleteOdd(HeapFile hf, ArrayList<ArrayList<Integer>> remaining)
+            throws Exception {
+        TransactionId tid = new TransactionId();
+        ArrayList<Tuple> victims = new ArrayList<Tuple>();
+        DbFileIterator it = hf.iterator(tid);
+        it.open();
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            if (((IntField) t.getField(0)).getValue() % 2 == 1)
+                victims.add(t);
+            else
+                remaining.add(SystemTestUtil.tupleToList(t));
+        }
+        it.close();
+        for (Tuple t : victims)
+            Database.getBufferPool().deleteTuple(tid, t);
+        Database.getBufferPool().flushPages(tid);
+    }
+
+    /**
+     * Unit test for HeapFileCompactor.run()
+     */
+    @Test
+    public void compact() throws Exception {
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 5000, null, null);
+        int before = hf.numPages();
+        assertEquals(10, before);
+
+        ArrayList<ArrayList<Integer>> remaining = new ArrayList<ArrayList<Integer>>();
+        deleteOdd(hf, remaining);
+
+        HeapFileCompactor compactor = new HeapFileCompactor(hf, 50);
+        int steps = 0;
+        while (compactor.step())
+            steps++;
+        assertTrue(steps > 1);
+
+        assertEquals(before, compactor.getPagesBefore());
+        int expectedPages = (remaining.size() + 503) / 504;
+        assertEquals(expectedPages, compactor.getPagesAfter());
+        assertEquals(expectedPages, hf.numPages());
+
+        // every tuple survives, and the moved ones point at their new slots
+        SystemTestUtil.matchTuples(hf, remaining);
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(hf, remaining);
+        DbFileIterator it = hf.iterator(new TransactionId());
+        it.open();
+        while (it.hasNext())
+            assertTrue(it.next().getRecordId().getPageId().pageNumber() < expectedPages);
+        it.close();
+    }
+
+    /**
+     * Tuples inserted between steps survive compaction, even those that land
+     * on pages the compactor has already emptied
+     */
+    @Test
+    public void insertBetweenSteps() throws Exception {
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 5000, null, null);
+        ArrayList<ArrayList<Integer>> remaining = new ArrayList<ArrayList<Integer>>();
+        deleteOdd(hf, remaining);
+
+        HeapFileCompactor compactor = new HeapFileCompactor(hf, 50);
+        for (int i = 0; i < 10; i++)
+            assertTrue(compactor.step());
+
+        // the last page still holding tuples; the ones after it were emptied
+        TransactionId tid = new TransactionId();
+        int last = hf.numPages() - 1;
+        while (!((AbstractHeapPage) Database.getBufferPool().getPage(tid,
+                new HeapPageId(hf.getId(), last), Permissions.READ_ONLY)).iterator().hasNext())
+            last--;
+        assertTrue(last < hf.numPages() - 1);
+
+        // fill the free slots up to it, then put one tuple past it
+        int n = 0;
+        while (true) {
+            Tuple t = Utility.getHeapTuple(new int[] { -1, n++ });
+            Database.getBufferPool().insertTuple(tid, hf.getId(), t);
+            remaining.add(SystemTestUtil.tupleToList(t));
+            if (t.getRecordId().getPageId().pageNumber() > last)
+                break;
+        }
+        Database.getBufferPool().transactionComplete(tid);
+
+        compactor.run();
+        SystemTestUtil.matchTuples(hf, remaining);
+        Database.getBufferPool().flushAllPages();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(hf, remaining);
+    }
+
+    /**
+     * Pages holding another transaction's uncommitted changes are neither
+     * compacted nor written, so that transaction can still abort
+     */
+    @Test
+    public void uncommittedPagesLeftAlone() throws Exception {
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 5000, null, null);
+        ArrayList<ArrayList<Integer>> remaining = new ArrayList<ArrayList<Integer>>();
+        deleteOdd(hf, remaining);
+        int lastPage = hf.numPages() - 1;
+
+        // another transaction inserts into the first page and deletes from
+        // the last one, and hasn't committed
+        TransactionId other = new TransactionId();
+        Database.getBufferPool().insertTuple(other, hf.getId(), Utility.getHeapTuple(new int[] { -1, -1 }));
+        Page first = Database.getBufferPool().getPage(other,
+                new HeapPageId(hf.getId(), 0), Permissions.READ_ONLY);
+        AbstractHeapPage last = (AbstractHeapPage) Database.getBufferPool().getPage(other,
+                new HeapPageId(hf.getId(), lastPage), Permissions.READ_WRITE);
+        Database.getBufferPool().deleteTuple(other, last.iterator().next());
+        assertEquals(other, first.isDirty());
+        assertEquals(other, last.isDirty());
+
+        HeapFileCompactor compactor = new HeapFileCompactor(hf, 50).run();
+        assertEquals(lastPage + 1, compactor.getPagesAfter());
+        assertEquals(other, first.isDirty());
+        assertEquals(other, last.isDirty());
+
+        Database.getBufferPool().transactionComplete(other, false);
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(hf, remaining);
+    }
+
+    /**
+     * A file with no free space is left alone.
+     */
+    @Test
+    public void compactFull() throws Exception {
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 504 * 3, null, null);
+        HeapFileCompactor compactor = new HeapFileCompactor(hf).run();
+        assertEquals(3, compactor.getPagesBefore());
+        assertEquals(3, compactor.getPagesAfter());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(HeapFileCompactorTest.class);
+    }
+}
@@ -3,6 +3,7 @@ package simpledb;
 import simpledb.systemtest.SimpleDbTestBase;
 import simpledb.systemtest.SystemTestUtil;
 
+import java.io.File;
 import java.util.*;
 import org.junit.After;
 import org.junit.Before;
@@ -77,6 +78,79 @@ public class HeapFileReadTest extends SimpleDbTestBase {
         assertFalse(page.isSlotUsed(20));
     }
 
+    /**
+     * Unit test for HeapFile.readPageAsync() and BufferPool.getPageAsync()
+     */
+    @Test
+    public void readPageAsync() throws Exception {
+        HeapPageId pid = new HeapPageId(hf.getId(), 0);
+        HeapPage page = (HeapPage) hf.readPageAsync(pid).get();
+        assertEquals(pid, page.getId());
+        assertEquals(484, page.getNumEmptySlots());
+        assertTrue(page.isSlotUsed(1));
+        assertFalse(page.isSlotUsed(20));
+
+        // a page read asynchronously ends up cached in the buffer pool
+        Page cached = Database.getBufferPool().getPageAsync(tid, pid, Permissions.READ_ONLY).get();
+        assertSame(cached, Database.getBufferPool().getPage(tid, pid, Permissions.READ_ONLY));
+
+        try {
+            hf.readPageAsync(new HeapPageId(hf.getId(), 1)).get();
+            fail("expected exception");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    /**
+     * Unit test for HeapFile.close(): the channels it closes, asynchronous
+     * ones included, are reopened on next use
+     */
+    @Test
+    public void closeReopens() throws Exception {
+        HeapPageId pid = new HeapPageId(hf.getId(), 0);
+        assertEquals(484, ((HeapPage) hf.readPageAsync(pid).get()).getNumEmptySlots());
+        hf.close();
+        assertEquals(484, ((HeapPage) hf.readPageAsync(pid).get()).getNumEmptySlots());
+        hf.close();
+        assertEquals(484, ((HeapPage) hf.readPage(pid)).getNumEmptySlots());
+
+        // reads in flight when their channel is closed are retried
+        ArrayList<java.util.concurrent.CompletableFuture<Page>> reads =
+                new ArrayList<java.util.concurrent.CompletableFuture<Page>>();
+        for (int i = 0; i < 200; i++) {
+            reads.add(hf.readPageAsync(pid));
+            hf.close();
+        }
+        for (java.util.concurrent.CompletableFuture<Page> read : reads)
+            assertEquals(484, ((HeapPage) read.get()).getNumEmptySlots());
+    }
+
+    /**
+     * Unit test for a HeapFile split across several segment files
+     */
+    @Test
+    public void segmentedFile() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile source = SystemTestUtil.createRandomHeapFile(2, 2000, null, tuples);
+        assertEquals(4, source.numPages());
+
+        // copy the table into a file with two pages per segment
+        File f = File.createTempFile("segmented", ".dat");
+        f.deleteOnExit();
+        HeapFile segmented = new HeapFile(f, td, 2 * BufferPool.getPageSize());
+        Database.getCatalog().addTable(segmented, SystemTestUtil.getUUID());
+        for (int i = 0; i < source.numPages(); i++)
+            segmented.writePage(source.readPage(new HeapPageId(source.getId(), i)));
+
+        File secondSegment = new File(f.getPath() + ".1");
+        secondSegment.deleteOnExit();
+        assertTrue(secondSegment.exists());
+        assertEquals(2 * BufferPool.getPageSize(), f.length());
+        assertEquals(4, segmented.numPages());
+        SystemTestUtil.matchTuples(segmented, tuples);
+    }
+
     @Test
     public void testIteratorBasic() throws Exception {
         HeapFile smallFile = SystemTestUtil.createRandomHeapFile(2, 3, null,
@@ -121,6 +195,81 @@ public class HeapFileReadTest extends SimpleDbTestBase {
         it.close();
     }
 
+    /**
+     * Unit test for HeapFile.iterator() in reuse mode, and Tuple.copy()
+     */
+    @Test
+    public void testIteratorReuse() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile twoPageFile = SystemTestUtil.createRandomHeapFile(2, 600,
+                null, tuples);
+
+        DbFileIterator it = twoPageFile.iterator(tid, true);
+        it.open();
+        Tuple first = it.next();
+        assertTrue(first instanceof SlotTuple);
+        Tuple kept = first.copy();
+        assertFalse(kept instanceof SlotTuple);
+        assertEquals(first.getRecordId(), kept.getRecordId());
+        assertEquals(tuples.get(0).get(0).intValue(), ((IntField) kept.getField(0)).getValue());
+        try {
+            first.setField(0, new IntField(0));
+            fail("expected exception");
+        } catch (UnsupportedOperationException e) {
+        }
+
+        int count = 1;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            assertSame(first, t);
+            ArrayList<Integer> expected = tuples.get(count++);
+            assertEquals(expected.get(0).intValue(), ((SlotTuple) t).getInt(0));
+            assertEquals(expected.get(1).intValue(), ((IntField) t.getField(1)).getValue());
+        }
+        it.close();
+        assertEquals(600, count);
+        // the copy still holds the first row
+        assertEquals(tuples.get(0).get(1).intValue(), ((IntField) kept.getField(1)).getValue());
+        assertEquals(0, kept.getRecordId().getPageId().pageNumber());
+    }
+
+    /**
+     * Unit test for HeapFile.stream() and HeapFile.tupleSpliterator()
+     */
+    @Test
+    public void testStream() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile bigFile = SystemTestUtil.createRandomHeapFile(2, 5000, null,
+                tuples);
+
+        long expectedSum = 0;
+        for (ArrayList<Integer> tuple : tuples)
+            expectedSum += tuple.get(0);
+
+        assertEquals(5000, bigFile.stream(tid).count());
+        assertEquals(expectedSum, bigFile.stream(tid).parallel()
+                .mapToLong(t -> ((IntField) t.getField(0)).getValue()).sum());
+
+        // splits must cover disjoint page ranges
+        Spliterator<Tuple> whole = bigFile.tupleSpliterator(tid);
+        long estimate = whole.estimateSize();
+        Spliterator<Tuple> prefix = whole.trySplit();
+        assertNotNull(prefix);
+        assertEquals(estimate, prefix.estimateSize() + whole.estimateSize());
+
+        // pages can change under the scan, so it must not claim IMMUTABLE
+        assertEquals(0, whole.characteristics() & Spliterator.IMMUTABLE);
+
+        // closing a stream cut short closes the scans it left open
+        Iterator<Tuple> rest;
+        try (java.util.stream.Stream<Tuple> s = bigFile.stream(tid)) {
+            rest = s.iterator();
+            assertTrue(rest.hasNext());
+            rest.next();
+        }
+        assertFalse(rest.hasNext());
+    }
+
     /**
      * JUnit suite target
      */
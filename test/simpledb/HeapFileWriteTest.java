@@ -0,0 +1,230 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class HeapFileWriteTest extends SimpleDbTestBase {
+    private static final int EXTENT_PAGES = 16;
+
+    private File f;
+    private TupleDesc td;
+    private HeapFile hf;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before
+    public void createFile() throws Exception {
+        f = File.createTempFile("extents", ".dat");
+        f.deleteOnExit();
+        td = Utility.getTupleDesc(2);
+        hf = open();
+    }
+
+    private HeapFile open() {
+        HeapFile file = new HeapFile(f, td, SegmentedFile.DEFAULT_SEGMENT_SIZE,
+                EXTENT_PAGES * BufferPool.getPageSize());
+        Database.getCatalog().addTable(file, SystemTestUtil.getUUID());
+        return file;
+    }
+
+    /**
+     * Unit test for HeapFile.insertTuple() growing the file by whole extents
+     */
+    @Test
+    public void insertPreallocates() throws Exception {
+        TransactionId tid = new TransactionId();
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        for (int i = 0; i < 600; i++) {
+            Database.getBufferPool().insertTuple(tid, hf.getId(), Utility.getHeapTuple(new int[] { i, -i }));
+            tuples.add(new ArrayList<Integer>(Arrays.asList(i, -i)));
+        }
+        Database.getBufferPool().flushPages(tid);
+
+        assertEquals(2, hf.numPages());
+        assertEquals(EXTENT_PAGES * BufferPool.getPageSize(), f.length());
+        SystemTestUtil.matchTuples(hf, tuples);
+
+        // the preallocated pages aren't counted when the file is reopened
+        Database.reset();
+        HeapFile reopened = open();
+        assertEquals(2, reopened.numPages());
+        SystemTestUtil.matchTuples(reopened, tuples);
+    }
+
+    /**
+     * Unit test for HeapFile.writePage() past the end of an extent
+     */
+    @Test
+    public void writeNextExtent() throws Exception {
+        byte[] empty = HeapPage.createEmptyPageData();
+        for (int i = 0; i <= EXTENT_PAGES; i++)
+            hf.writePage(new HeapPage(new HeapPageId(hf.getId(), i), empty));
+        assertEquals(EXTENT_PAGES + 1, hf.numPages());
+        assertEquals(2 * EXTENT_PAGES * BufferPool.getPageSize(), f.length());
+
+        try {
+            hf.readPage(new HeapPageId(hf.getId(), EXTENT_PAGES + 1));
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Unit test for a HeapFile of variable-length records
+     */
+    @Test
+    public void slottedLayout() throws Exception {
+        File sf = File.createTempFile("slotted", ".dat");
+        sf.deleteOnExit();
+        TupleDesc std = new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE });
+        HeapFile file = new HeapFile(sf, std, PageLayout.SLOTTED);
+        Database.getCatalog().addTable(file, SystemTestUtil.getUUID());
+
+        TransactionId tid = new TransactionId();
+        for (int i = 0; i < 1000; i++) {
+            Tuple t = new Tuple(std);
+            t.setField(0, new IntField(i));
+            t.setField(1, new StringField("value" + i, Type.STRING_LEN));
+            Database.getBufferPool().insertTuple(tid, file.getId(), t);
+        }
+        Database.getBufferPool().flushPages(tid);
+        // the fixed layout would need 34 pages
+        assertEquals(5, file.numPages());
+
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        DbFileIterator it = file.iterator(new TransactionId());
+        it.open();
+        for (int i = 0; i < 1000; i++) {
+            Tuple t = it.next();
+            assertEquals(new IntField(i), t.getField(0));
+            assertEquals(new StringField("value" + i, Type.STRING_LEN), t.getField(1));
+        }
+        assertFalse(it.hasNext());
+        it.close();
+    }
+
+    /**
+     * Unit test for HeapFileEncoder writing the slotted and PAX layouts
+     */
+    @Test
+    public void encodeLayouts() throws Exception {
+        File txt = File.createTempFile("layouts", ".txt");
+        txt.deleteOnExit();
+        PrintWriter w = new PrintWriter(txt);
+        for (int i = 0; i < 1000; i++)
+            w.println(i + ",value" + i);
+        w.close();
+        Type[] types = { Type.INT_TYPE, Type.STRING_TYPE };
+        TupleDesc std = new TupleDesc(types);
+
+        for (PageLayout layout : new PageLayout[] { PageLayout.SLOTTED, PageLayout.PAX }) {
+            File out = File.createTempFile("layouts", ".dat");
+            out.deleteOnExit();
+            HeapFileEncoder.convert(txt, out, 2, types, ',', layout);
+            HeapFile file = new HeapFile(out, std, layout);
+            Database.getCatalog().addTable(file, SystemTestUtil.getUUID());
+            // the fixed layout would need 34 pages
+            assertEquals(layout == PageLayout.SLOTTED ? 5 : 34, file.numPages());
+
+            DbFileIterator it = file.iterator(new TransactionId());
+            it.open();
+            for (int i = 0; i < 1000; i++) {
+                Tuple t = it.next();
+                assertEquals(new IntField(i), t.getField(0));
+                assertEquals(new StringField("value" + i, Type.STRING_LEN), t.getField(1));
+            }
+            assertFalse(it.hasNext());
+            it.close();
+        }
+    }
+
+    /**
+     * Unit test for inserting the tuples of a scan in reuse mode, which
+     * must be copied rather than stored on a page
+     */
+    @Test
+    public void insertSlotTuples() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile source = SystemTestUtil.createRandomHeapFile(2, 600, null, tuples);
+        TransactionId tid = new TransactionId();
+        DbFileIterator it = source.iterator(tid, true);
+        it.open();
+        Tuple first = null;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            first = first == null ? t : first;
+            assertSame(first, t);
+            Database.getBufferPool().insertTuple(tid, hf.getId(), t);
+        }
+        it.close();
+        Database.getBufferPool().flushPages(tid);
+        SystemTestUtil.matchTuples(hf, tuples);
+
+        // a page refuses a SlotTuple without changing
+        HeapPage page = new HeapPage(new HeapPageId(hf.getId(), 0), HeapPage.createEmptyPageData());
+        try {
+            page.insertTuple(first);
+            fail("expected exception");
+        } catch (DbException e) {
+        }
+        assertEquals(page.getNumSlots(), page.getNumEmptySlots());
+        assertFalse(page.iterator().hasNext());
+    }
+
+    /**
+     * Unit test for deleting the tuples of a scan in reuse mode
+     */
+    @Test
+    public void deleteSlotTuples() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile source = SystemTestUtil.createRandomHeapFile(2, 600, null, tuples);
+        TransactionId tid = new TransactionId();
+        DbFileIterator it = source.iterator(tid, true);
+        it.open();
+        Tuple first = null;
+        for (int i = 0; it.hasNext(); i++) {
+            Tuple t = it.next();
+            if (first == null) {
+                // a page refuses a SlotTuple without changing
+                first = t;
+                AbstractHeapPage page = (AbstractHeapPage) Database.getBufferPool().getPage(tid,
+                        t.getRecordId().getPageId(), Permissions.READ_WRITE);
+                try {
+                    page.deleteTuple(t);
+                    fail("expected exception");
+                } catch (DbException e) {
+                }
+                assertTrue(page.isSlotUsed(t.getRecordId().tupleno()));
+            }
+            if (i % 2 == 0) {
+                Database.getBufferPool().deleteTuple(tid, t);
+            }
+        }
+        it.close();
+        Database.getBufferPool().flushPages(tid);
+
+        ArrayList<ArrayList<Integer>> kept = new ArrayList<ArrayList<Integer>>();
+        for (int i = 1; i < tuples.size(); i += 2) {
+            kept.add(tuples.get(i));
+        }
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(source, kept);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(HeapFileWriteTest.class);
+    }
+}
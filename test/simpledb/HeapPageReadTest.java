@@ -12,7 +12,9 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import junit.framework.JUnit4TestAdapter;
 
 public class HeapPageReadTest extends SimpleDbTestBase {
@@ -99,6 +101,54 @@ public class HeapPageReadTest extends SimpleDbTestBase {
         }
     }
 
+    /**
+     * Unit test for HeapPage.getTuple() and HeapPage.getField()
+     */
+    @Test public void getTupleAndField() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+
+        // single fields can be read without decoding the whole tuple
+        for (int i = 0; i < EXAMPLE_VALUES.length; ++i)
+            assertEquals(EXAMPLE_VALUES[i][1], ((IntField) page.getField(i, 1)).getValue());
+
+        Tuple tup = page.getTuple(3);
+        assertEquals(new RecordId(pid, 3), tup.getRecordId());
+        assertEquals(EXAMPLE_VALUES[3][0], ((IntField) tup.getField(0)).getValue());
+        assertSame(tup, page.getTuple(3));
+        assertEquals(null, page.getTuple(20));
+        assertEquals(null, page.getField(20, 0));
+
+        // undecoded slots serialize back to exactly what was read
+        assertTrue(Arrays.equals(EXAMPLE_DATA, page.getPageData()));
+    }
+
+    /**
+     * Unit test for HeapPage.getInt()
+     */
+    @Test public void getInt() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+        for (int i = 0; i < EXAMPLE_VALUES.length; ++i) {
+            assertEquals(EXAMPLE_VALUES[i][0], page.getInt(i, 0));
+            assertEquals(EXAMPLE_VALUES[i][1], page.getInt(i, 1));
+        }
+
+        // inserted tuples are read back too
+        Tuple t = Utility.getHeapTuple(new int[] { -5, 6 });
+        page.insertTuple(t);
+        assertEquals(-5, page.getInt(t.getRecordId().tupleno(), 0));
+
+        try {
+            page.getInt(EXAMPLE_VALUES.length + 1, 0);
+            fail("expected exception");
+        } catch (NoSuchElementException e) {
+        }
+        try {
+            page.compareString(0, 0, new byte[0]);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
     /**
      * Unit test for HeapPage.getNumEmptySlots()
      */
@@ -0,0 +1,121 @@
+package simpledb;
+
+import simpledb.TestUtil.SkeletonFile;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+public class HeapPageWriteTest extends SimpleDbTestBase {
+    private HeapPageId pid;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before public void addTable() throws Exception {
+        this.pid = new HeapPageId(-1, -1);
+        Database.getCatalog().addTable(new SkeletonFile(-1, Utility.getTupleDesc(2)), SystemTestUtil.getUUID());
+    }
+
+    private static int countTuples(HeapPage page) {
+        int count = 0;
+        Iterator<Tuple> it = page.iterator();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Unit test for HeapPage.getBeforeImage() and HeapPage.setBeforeImage()
+     */
+    @Test public void beforeImage() throws Exception {
+        HeapPage page = new HeapPage(pid, HeapPageReadTest.EXAMPLE_DATA);
+        byte[] original = HeapPageReadTest.EXAMPLE_DATA.clone();
+
+        // unmodified, the before image is the page as read
+        assertTrue(Arrays.equals(original, page.getBeforeImage().getPageData()));
+
+        page.insertTuple(Utility.getHeapTuple(new int[] { 1, 2 }));
+        assertEquals(21, countTuples(page));
+        assertEquals(20, countTuples(page.getBeforeImage()));
+        // the page never writes into the buffer it was read from
+        assertTrue(Arrays.equals(original, HeapPageReadTest.EXAMPLE_DATA));
+
+        // once set, the before image follows the page until it changes again
+        page.setBeforeImage();
+        assertEquals(21, countTuples(page.getBeforeImage()));
+        Iterator<Tuple> it = page.iterator();
+        page.deleteTuple(it.next());
+        page.deleteTuple(it.next());
+        assertEquals(19, countTuples(page));
+        assertEquals(21, countTuples(page.getBeforeImage()));
+    }
+
+    /**
+     * Unit test for HeapPage.writePageData()
+     */
+    @Test public void writePageData() throws Exception {
+        HeapPage page = new HeapPage(pid, HeapPageReadTest.EXAMPLE_DATA);
+        Iterator<Tuple> it = page.iterator();
+        it.next();
+        page.deleteTuple(it.next());
+        page.insertTuple(Utility.getHeapTuple(new int[] { 11, 12 }));
+        page.insertTuple(Utility.getHeapTuple(new int[] { 13, 14 }));
+
+        // written at the buffer's position, the same as getPageData()
+        ByteBuffer buf = ByteBuffer.allocate(BufferPool.getPageSize() + 3);
+        buf.position(3);
+        page.writePageData(buf);
+        assertEquals(buf.capacity(), buf.position());
+        byte[] data = page.getPageData();
+        assertTrue(Arrays.equals(data, Arrays.copyOfRange(buf.array(), 3, buf.capacity())));
+
+        HeapPage copy = new HeapPage(pid, data);
+        assertEquals(21, countTuples(copy));
+        assertEquals(11, copy.getInt(1, 0));
+        assertEquals(13, copy.getInt(20, 0));
+        assertEquals(HeapPageReadTest.EXAMPLE_VALUES[2][1], copy.getInt(2, 1));
+    }
+
+    /**
+     * Unit test for storing BYTE, SHORT, LONG and DOUBLE fields on a page
+     */
+    @Test public void numericTypes() throws Exception {
+        TupleDesc td = new TupleDesc(new Type[] { Type.BYTE_TYPE, Type.SHORT_TYPE,
+                Type.LONG_TYPE, Type.DOUBLE_TYPE });
+        assertEquals(19, td.getSize());
+        Database.getCatalog().addTable(new SkeletonFile(-2, td), SystemTestUtil.getUUID());
+        HeapPageId numericPid = new HeapPageId(-2, 0);
+        HeapPage page = new HeapPage(numericPid, HeapPage.createEmptyPageData());
+        assertEquals(BufferPool.getPageSize() * 8 / (19 * 8 + 1), page.getNumSlots());
+
+        Tuple t = new Tuple(td);
+        t.setField(0, new ByteField((byte) -3));
+        t.setField(1, new ShortField((short) 30000));
+        t.setField(2, new LongField(1L << 40));
+        t.setField(3, new DoubleField(2.5));
+        page.insertTuple(t);
+
+        HeapPage copy = new HeapPage(numericPid, page.getPageData());
+        Tuple read = copy.iterator().next();
+        for (int i = 0; i < td.numFields(); i++) {
+            assertEquals(t.getField(i), read.getField(i));
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(HeapPageWriteTest.class);
+    }
+}
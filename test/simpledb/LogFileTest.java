@@ -0,0 +1,152 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.util.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class LogFileTest extends SimpleDbTestBase {
+    private File logf;
+    private HeapFile hf;
+    private HeapPageId pid0;
+    private HeapPageId pid1;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before
+    public void createFiles() throws Exception {
+        logf = File.createTempFile("log", ".log");
+        logf.deleteOnExit();
+        File f = File.createTempFile("recovery", ".dat");
+        f.deleteOnExit();
+        hf = new HeapFile(f, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        pid0 = new HeapPageId(hf.getId(), 0);
+        pid1 = new HeapPageId(hf.getId(), 1);
+        hf.writePage(new HeapPage(pid0, HeapPage.createEmptyPageData()));
+        hf.writePage(new HeapPage(pid1, HeapPage.createEmptyPageData()));
+    }
+
+    /** @return a copy of the page on disk with the specified tuple added. */
+    private HeapPage update(HeapPageId pid, int value) throws Exception {
+        HeapPage page = (HeapPage) hf.readPage(pid);
+        page.insertTuple(Utility.getHeapTuple(new int[] { value, value }));
+        return page;
+    }
+
+    private int countTuples(HeapPageId pid) {
+        int count = 0;
+        Iterator<Tuple> it = ((HeapPage) hf.readPage(pid)).iterator();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Unit test for LogFile.logWrite() setting page LSNs and LogFile.force(long)
+     */
+    @Test
+    public void pageLSN() throws Exception {
+        LogFile log = new LogFile(logf);
+        TransactionId tid = new TransactionId();
+        log.logXactionBegin(tid);
+
+        HeapPage p0 = update(pid0, 1);
+        HeapPage p1 = update(pid1, 2);
+        assertEquals(LogFile.NO_LSN, p0.getLSN());
+        log.logWrite(tid, p0.getBeforeImage(), p0);
+        log.logWrite(tid, p1.getBeforeImage(), p1);
+        assertTrue(p0.getLSN() > 0);
+        assertTrue(p1.getLSN() > p0.getLSN());
+
+        // forcing up to the first record makes both durable
+        assertTrue(log.flushedLSN <= p0.getLSN());
+        log.force(p0.getLSN());
+        assertTrue(log.flushedLSN > p1.getLSN());
+    }
+
+    /**
+     * Unit test for BufferPool.flushPage() logging a page before writing it
+     */
+    @Test
+    public void flushLogsPage() throws Exception {
+        LogFile log = Database.getLogFile();
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuple(tid, hf.getId(), Utility.getHeapTuple(new int[] { 1, 1 }));
+        Page page = Database.getBufferPool().getPage(tid, pid0, Permissions.READ_ONLY);
+        assertEquals(LogFile.NO_LSN, page.getLSN());
+
+        int records = log.getTotalRecords();
+        Database.getBufferPool().flushPages(tid);
+        assertEquals(records + 1, log.getTotalRecords());
+        assertTrue(page.getLSN() != LogFile.NO_LSN);
+        assertTrue(log.flushedLSN > page.getLSN());
+        assertNull(page.isDirty());
+        assertEquals(1, countTuples(pid0));
+    }
+
+    /**
+     * Unit test for LogFile.recover() redoing committed updates and undoing
+     * the others
+     */
+    @Test
+    public void recover() throws Exception {
+        LogFile log = new LogFile(logf);
+        TransactionId committed = new TransactionId();
+        TransactionId loser = new TransactionId();
+        log.logXactionBegin(committed);
+        log.logXactionBegin(loser);
+
+        HeapPage p0 = update(pid0, 1);
+        log.logWrite(committed, p0.getBeforeImage(), p0);
+        HeapPage p1 = update(pid1, 2);
+        log.logWrite(loser, p1.getBeforeImage(), p1);
+        log.logCommit(committed);
+        // the loser's page was stolen, the committed one never written
+        hf.writePage(p1);
+
+        new LogFile(logf).recover();
+        assertEquals(1, countTuples(pid0));
+        assertEquals(0, countTuples(pid1));
+    }
+
+    /**
+     * Unit test for LogFile.recover() after a crash, with nothing cached:
+     * pages on disk get the committed changes and lose the uncommitted ones
+     */
+    @Test
+    public void recoverAfterCrash() throws Exception {
+        TransactionId committed = new TransactionId();
+        Database.getBufferPool().insertTuple(committed, hf.getId(), Utility.getHeapTuple(new int[] { 1, 1 }));
+        Database.getBufferPool().transactionComplete(committed);
+        TransactionId loser = new TransactionId();
+        Database.getBufferPool().insertTuple(loser, hf.getId(), Utility.getHeapTuple(new int[] { 2, 2 }));
+        Database.getBufferPool().insertTuple(loser, hf.getId(), Utility.getHeapTuple(new int[] { 3, 3 }));
+        // the loser's page is stolen
+        Database.getBufferPool().flushPages(loser);
+        assertEquals(3, countTuples(pid0));
+
+        // crash: the cache is gone and the page is torn back to empty
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        hf.writePage(new HeapPage(pid0, HeapPage.createEmptyPageData()));
+        new LogFile(Database.getLogFile().logFile).recover();
+        assertEquals(1, countTuples(pid0));
+        assertEquals(1, ((HeapPage) hf.readPage(pid0)).getInt(0, 0));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(LogFileTest.class);
+    }
+}
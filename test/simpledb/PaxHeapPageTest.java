@@ -0,0 +1,88 @@
+package simpledb;
+
+import simpledb.TestUtil.SkeletonFile;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+public class PaxHeapPageTest extends SimpleDbTestBase {
+    private HeapPageId pid;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before public void addTable() throws Exception {
+        this.pid = new HeapPageId(-1, -1);
+        Database.getCatalog().addTable(new SkeletonFile(-1, Utility.getTupleDesc(2)), SystemTestUtil.getUUID());
+    }
+
+    private PaxHeapPage examplePage() throws Exception {
+        PaxHeapPage page = new PaxHeapPage(pid, HeapPage.createEmptyPageData());
+        for (int[] values : HeapPageReadTest.EXAMPLE_VALUES)
+            page.insertTuple(Utility.getHeapTuple(values));
+        return page;
+    }
+
+    /**
+     * The values of each field are stored together in their own minipage.
+     */
+    @Test public void columnLayout() throws Exception {
+        PaxHeapPage page = examplePage();
+        int[][] values = HeapPageReadTest.EXAMPLE_VALUES;
+        assertEquals(504, page.getNumSlots());
+        assertEquals(504 - values.length, page.getNumEmptySlots());
+
+        int[] col = page.getIntColumn(1, null);
+        for (int i = 0; i < values.length; i++)
+            assertEquals(values[i][1], col[i]);
+        assertEquals(0, col[values.length]);
+
+        byte[] data = page.getPageData();
+        int second = page.minipages[1];
+        assertEquals(page.minipages[0] + 504 * 4, second);
+        assertEquals(values[1][1], ((data[second + 4] & 0xff) << 24) | ((data[second + 5] & 0xff) << 16)
+                | ((data[second + 6] & 0xff) << 8) | (data[second + 7] & 0xff));
+    }
+
+    /**
+     * The page reads back the same after a round trip through its bytes, and
+     * deleted slots are reused.
+     */
+    @Test public void roundTrip() throws Exception {
+        PaxHeapPage page = examplePage();
+        int[][] values = HeapPageReadTest.EXAMPLE_VALUES;
+        page.deleteTuple(page.getTuple(3));
+
+        PaxHeapPage copy = new PaxHeapPage(pid, page.getPageData());
+        Iterator<Tuple> it = copy.iterator();
+        for (int i = 0; i < values.length; i++) {
+            if (i == 3)
+                continue;
+            Tuple t = it.next();
+            assertEquals(new RecordId(pid, i), t.getRecordId());
+            assertEquals(new IntField(values[i][0]), t.getField(0));
+            assertEquals(new IntField(values[i][1]), copy.getField(i, 1));
+        }
+        assertFalse(it.hasNext());
+
+        copy.insertTuple(Utility.getHeapTuple(new int[] { 7, 8 }));
+        assertTrue(copy.isSlotUsed(3));
+        assertEquals(8, copy.getIntColumn(1, new int[504])[3]);
+        assertFalse(copy.getBeforeImage().isSlotUsed(3));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PaxHeapPageTest.class);
+    }
+}
@@ -0,0 +1,70 @@
+package simpledb;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class SlotBitmapTest {
+
+    /**
+     * Unit test for SlotBitmap.nextSetBit() and cardinality() across word
+     * boundaries
+     */
+    @Test public void nextSetBit() {
+        SlotBitmap bits = new SlotBitmap(200);
+        int[] set = { 0, 5, 63, 64, 130, 199 };
+        for (int i : set)
+            bits.set(i, true);
+        assertEquals(set.length, bits.cardinality());
+
+        int n = 0;
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+            assertEquals(set[n++], i);
+        assertEquals(set.length, n);
+        assertEquals(-1, bits.nextSetBit(200));
+
+        bits.set(130, false);
+        assertEquals(199, bits.nextSetBit(65));
+        assertEquals(1, bits.nextClearBit(0));
+    }
+
+    /**
+     * Unit test for SlotBitmap.nextClearBit() on a full bitmap
+     */
+    @Test public void nextClearBit() {
+        SlotBitmap bits = new SlotBitmap(70);
+        for (int i = 0; i < 70; i++)
+            bits.set(i, true);
+        assertEquals(-1, bits.nextClearBit(0));
+        bits.set(66, false);
+        assertEquals(66, bits.nextClearBit(3));
+        assertEquals(69, bits.cardinality());
+    }
+
+    /**
+     * The on-page byte form round-trips, ignoring bits past the end.
+     */
+    @Test public void bytes() {
+        byte[] page = new byte[] { 9, (byte) 0x81, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+        SlotBitmap bits = new SlotBitmap(page, 0, 76);
+        assertTrue(bits.get(0));
+        assertTrue(bits.get(3));
+        assertTrue(bits.get(15));
+        assertTrue(bits.get(75));
+        assertFalse(bits.get(76));
+        assertEquals(8, bits.cardinality());
+
+        byte[] out = new byte[bits.getNumBytes()];
+        bits.writeTo(out, 0);
+        assertEquals((byte) 0x0f, out[9]);
+        assertEquals((byte) 0x81, bits.getByte(15));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SlotBitmapTest.class);
+    }
+}
@@ -0,0 +1,142 @@
+package simpledb;
+
+import simpledb.TestUtil.SkeletonFile;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+public class SlottedHeapPageTest extends SimpleDbTestBase {
+    private HeapPageId pid;
+    private TupleDesc td;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before public void addTable() throws Exception {
+        this.pid = new HeapPageId(-1, -1);
+        this.td = new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE });
+        Database.getCatalog().addTable(new SkeletonFile(-1, td), SystemTestUtil.getUUID());
+    }
+
+    private Tuple makeTuple(int i, String s) {
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(i));
+        t.setField(1, new StringField(s, Type.STRING_LEN));
+        return t;
+    }
+
+    private SlottedHeapPage emptyPage() throws Exception {
+        return new SlottedHeapPage(pid, SlottedHeapPage.createEmptyPageData());
+    }
+
+    /**
+     * Short strings take only as much room as they need.
+     */
+    @Test public void fitsMoreThanFixed() throws Exception {
+        SlottedHeapPage page = emptyPage();
+        int inserted = 0;
+        while (page.hasRoomFor(makeTuple(inserted, "row" + inserted)))
+            page.insertTuple(makeTuple(inserted, "row" + inserted++));
+
+        int fixed = PageLayout.FIXED.maxTuplesPerPage(td);
+        assertTrue(inserted > 5 * fixed);
+        assertEquals(0, page.getNumEmptySlots());
+        try {
+            page.insertTuple(makeTuple(-1, "row-1"));
+            fail("expected exception");
+        } catch (DbException e) {
+        }
+
+        // the page reads back the same after a round trip through its bytes
+        SlottedHeapPage copy = new SlottedHeapPage(pid, page.getPageData());
+        Iterator<Tuple> it = copy.iterator();
+        for (int i = 0; i < inserted; i++) {
+            Tuple t = it.next();
+            assertEquals(new RecordId(pid, i), t.getRecordId());
+            assertEquals(new IntField(i), t.getField(0));
+            assertEquals(new StringField("row" + i, Type.STRING_LEN), copy.getField(i, 1));
+        }
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Space freed by deletes is reused, compacting the page if necessary,
+     * without moving the remaining tuples to other slots.
+     */
+    @Test public void deleteAndCompact() throws Exception {
+        SlottedHeapPage page = emptyPage();
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+        String s = "xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx";
+        while (page.hasRoomFor(makeTuple(0, s))) {
+            Tuple t = makeTuple(tuples.size(), s);
+            page.insertTuple(t);
+            tuples.add(t);
+        }
+        for (int i = 0; i < tuples.size(); i += 2)
+            page.deleteTuple(tuples.get(i));
+        assertNull(page.getTuple(0));
+
+        // twice the size of the holes left behind, so only fits once compacted
+        String big = s + s;
+        page.insertTuple(makeTuple(-1, big));
+        assertTrue(page.isSlotUsed(0));
+
+        SlottedHeapPage copy = new SlottedHeapPage(pid, page.getPageData());
+        assertEquals(big, ((StringField) copy.getField(0, 1)).getValue());
+        for (int i = 1; i < tuples.size(); i += 2) {
+            Tuple t = copy.getTuple(i);
+            assertEquals(new IntField(i), t.getField(0));
+            assertEquals(new StringField(s, Type.STRING_LEN), t.getField(1));
+        }
+        for (int i = 2; i < tuples.size(); i += 2)
+            assertFalse(copy.isSlotUsed(i));
+    }
+
+    /**
+     * Unit test for SlottedHeapPage.getInt() and compareString()
+     */
+    @Test public void zeroCopyAccessors() throws Exception {
+        SlottedHeapPage page = emptyPage();
+        page.insertTuple(makeTuple(42, "banana"));
+        page.insertTuple(makeTuple(-7, ""));
+
+        assertEquals(42, page.getInt(0, 0));
+        assertEquals(-7, page.getInt(1, 0));
+        assertEquals(0, page.compareString(0, 1, "banana".getBytes()));
+        assertTrue(page.compareString(0, 1, "apple".getBytes()) > 0);
+        assertTrue(page.compareString(0, 1, "bananas".getBytes()) < 0);
+        assertTrue(page.compareString(0, 1, "cherry".getBytes()) < 0);
+        assertEquals(0, page.compareString(1, 1, new byte[0]));
+    }
+
+    /**
+     * Unit test for SlottedHeapPage.getBeforeImage()
+     */
+    @Test public void beforeImage() throws Exception {
+        SlottedHeapPage page = emptyPage();
+        page.insertTuple(makeTuple(1, "one"));
+        page.setBeforeImage();
+        byte[] before = page.getPageData().clone();
+        page.insertTuple(makeTuple(2, "two"));
+        assertTrue(Arrays.equals(before, page.getBeforeImage().getPageData()));
+        assertEquals(1, page.getBeforeImage().getNumSlots());
+        assertEquals(2, page.getNumSlots());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SlottedHeapPageTest.class);
+    }
+}
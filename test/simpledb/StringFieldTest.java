@@ -0,0 +1,88 @@
+package simpledb;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class StringFieldTest extends SimpleDbTestBase {
+
+    /** @return a field referring to s in the middle of a larger array. */
+    private static StringField slice(String s) {
+        byte[] b = ("xx" + s + "yy").getBytes(StandardCharsets.ISO_8859_1);
+        return new StringField(b, 2, s.length(), Type.STRING_LEN);
+    }
+
+    private static StringField field(String s) {
+        return new StringField(s, Type.STRING_LEN);
+    }
+
+    /**
+     * Unit test for StringField.compare() on fields read from bytes
+     */
+    @Test public void compareBytes() {
+        StringField abc = slice("abc");
+        assertFalse(abc.isDecoded());
+        assertEquals(field("abc"), abc);
+        assertEquals(abc, field("abc"));
+        assertEquals(field("abc").hashCode(), abc.hashCode());
+        assertEquals(slice("\u00e9t\u00e9").hashCode(), "\u00e9t\u00e9".hashCode());
+
+        assertTrue(abc.compare(Predicate.Op.LESS_THAN, slice("abd")));
+        assertTrue(abc.compare(Predicate.Op.GREATER_THAN, field("ab")));
+        assertTrue(abc.compare(Predicate.Op.NOT_EQUALS, slice("ab")));
+        assertTrue(slice("\u00e9").compare(Predicate.Op.GREATER_THAN, slice("z")));
+        assertTrue(abc.compare(Predicate.Op.LIKE, slice("bc")));
+        assertFalse(abc.compare(Predicate.Op.LIKE, field("cd")));
+        assertTrue(abc.compare(Predicate.Op.LIKE, slice("")));
+        assertTrue(abc.startsWith(field("ab")));
+        assertFalse(abc.startsWith(slice("abcd")));
+        assertFalse(abc.isDecoded());
+
+        assertEquals("abc", abc.getValue());
+        assertTrue(abc.isDecoded());
+    }
+
+    /**
+     * Unit test for string fields read from a page, and for Java
+     * serialization of them
+     */
+    @Test public void readFromPage() throws Exception {
+        TupleDesc td = new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE });
+        Database.getCatalog().addTable(new TestUtil.SkeletonFile(-1, td),
+                SystemTestUtil.getUUID());
+        HeapPage page = new HeapPage(new HeapPageId(-1, -1), HeapPage.createEmptyPageData());
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(1));
+        t.setField(1, field("hello"));
+        page.insertTuple(t);
+
+        HeapPage copy = new HeapPage(new HeapPageId(-1, -1), page.getPageData());
+        StringField s = (StringField) copy.getField(0, 1);
+        assertFalse(s.isDecoded());
+        assertTrue(s.compare(Predicate.Op.EQUALS, field("hello")));
+        assertFalse(s.isDecoded());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(s);
+        oos.close();
+        // only the value is written, not the page it was read from
+        assertTrue(baos.size() < BufferPool.getPageSize());
+        Object read = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+        assertEquals(field("hello"), read);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(StringFieldTest.class);
+    }
+}
@@ -206,6 +206,10 @@ public class TestUtil {
             throw new RuntimeException("not implemented");
         }
 
+        public java.util.concurrent.CompletableFuture<Page> readPageAsync(PageId id) {
+            throw new RuntimeException("not implemented");
+        }
+
         public int numPages() {
             throw new RuntimeException("not implemented");
         }
@@ -236,6 +240,14 @@ public class TestUtil {
             throw new RuntimeException("not implemented");
         }
 
+        public Spliterator<Tuple> tupleSpliterator(TransactionId tid) {
+            throw new RuntimeException("not implemented");
+        }
+
+        public java.util.stream.Stream<Tuple> stream(TransactionId tid) {
+            throw new RuntimeException("not implemented");
+        }
+
 		public TupleDesc getTupleDesc() {			
 			return td;
 		}
@@ -0,0 +1,140 @@
+package simpledb;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class TupleBatchTest extends SimpleDbTestBase {
+
+    private static final TupleDesc MIXED =
+            new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE });
+
+    private static Tuple tuple(int i, String s) {
+        Tuple t = new Tuple(MIXED);
+        t.setField(0, new IntField(i));
+        t.setField(1, new StringField(s, Type.STRING_LEN));
+        return t;
+    }
+
+    /**
+     * Unit test for TupleBatch.add() and TupleBatch.getTuple()
+     */
+    @Test public void addAndGet() {
+        TupleBatch batch = new TupleBatch(MIXED, 3);
+        assertTrue(batch.add(tuple(1, "one")));
+        assertTrue(batch.add(tuple(2, "")));
+        assertTrue(batch.add(tuple(3, "a much longer string than the others")));
+        assertTrue(batch.isFull());
+        assertFalse(batch.add(tuple(4, "four")));
+
+        assertEquals(3, batch.numRows());
+        assertEquals(3, batch.numSelected());
+        assertEquals(2, batch.getInt(1, 0));
+        assertEquals("", batch.getString(1, 1));
+        assertEquals("a much longer string than the others", batch.getString(2, 1));
+        assertEquals(tuple(1, "one").toString(), batch.getTuple(0).toString());
+
+        batch.clear();
+        assertEquals(0, batch.numRows());
+        assertTrue(batch.add(tuple(5, "five")));
+        assertEquals("five", batch.getString(0, 1));
+    }
+
+    /**
+     * Unit test for TupleBatch.select()
+     */
+    @Test public void select() {
+        TupleBatch batch = new TupleBatch(MIXED);
+        for (int i = 0; i < 10; i++) {
+            batch.add(tuple(i, i % 2 == 0 ? "even" : "odd"));
+        }
+        assertEquals(5, batch.select(new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(5))));
+        assertEquals(5, batch.getSelected(0));
+        assertEquals(2, batch.select(new Predicate(1, Predicate.Op.EQUALS,
+                new StringField("even", Type.STRING_LEN))));
+        List<Tuple> selected = batch.getSelectedTuples();
+        assertEquals(2, selected.size());
+        assertEquals(new IntField(6), selected.get(0).getField(0));
+        assertEquals(new IntField(8), selected.get(1).getField(0));
+        // the rows themselves are untouched
+        assertEquals(10, batch.numRows());
+    }
+
+    /**
+     * Unit test for TupleBatch.select() with every operator on int, string,
+     * long and double fields, against Predicate.filter
+     */
+    @Test public void selectAgreesWithFilter() {
+        TupleDesc td = new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE,
+                Type.LONG_TYPE, Type.DOUBLE_TYPE });
+        String[] strings = { "", "a", "ab", "abc", "b", "ba", "\u00e9t\u00e9" };
+        double[] doubles = { -1.5, -0.0, 0.0, 2.5, Double.NaN, Double.NEGATIVE_INFINITY };
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < 42; i++) {
+            Tuple t = new Tuple(td);
+            t.setField(0, new IntField(i % 5 - 2));
+            t.setField(1, new StringField(strings[i % strings.length], Type.STRING_LEN));
+            t.setField(2, new LongField(Long.MIN_VALUE + i % 3));
+            t.setField(3, new DoubleField(doubles[i % doubles.length]));
+            tuples.add(t);
+        }
+        Field[] operands = { new IntField(0), new StringField("ab", Type.STRING_LEN),
+                new LongField(Long.MIN_VALUE + 1), new DoubleField(-0.0) };
+        for (int f = 0; f < operands.length; f++) {
+            for (Predicate.Op op : Predicate.Op.values()) {
+                Predicate p = new Predicate(f, op, operands[f]);
+                TupleBatch batch = new TupleBatch(td, tuples.size());
+                ArrayList<Integer> expected = new ArrayList<Integer>();
+                for (int i = 0; i < tuples.size(); i++) {
+                    batch.add(tuples.get(i));
+                    if (p.filter(tuples.get(i))) {
+                        expected.add(i);
+                    }
+                }
+                batch.select(p);
+                ArrayList<Integer> actual = new ArrayList<Integer>();
+                for (int i = 0; i < batch.numSelected(); i++) {
+                    actual.add(batch.getSelected(i));
+                }
+                assertEquals(p.toString(), expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Unit test for TupleBatch.addFrom()
+     */
+    @Test public void addFromPage() throws Exception {
+        Database.getCatalog().addTable(new TestUtil.SkeletonFile(-1, Utility.getTupleDesc(2)),
+                SystemTestUtil.getUUID());
+        HeapPage page = new HeapPage(new HeapPageId(-1, -1), HeapPageReadTest.EXAMPLE_DATA);
+
+        TupleBatch batch = new TupleBatch(Utility.getTupleDesc(2), 8);
+        int next = batch.addFrom(page, 0);
+        assertEquals(8, batch.numRows());
+        assertEquals(HeapPageReadTest.EXAMPLE_VALUES[0][0], batch.getInt(0, 0));
+        int rows = 8;
+        while (next >= 0) {
+            batch.clear();
+            next = batch.addFrom(page, next);
+            rows += batch.numRows();
+        }
+        assertEquals(HeapPageReadTest.EXAMPLE_VALUES.length, rows);
+        int last = HeapPageReadTest.EXAMPLE_VALUES.length - 1;
+        assertEquals(HeapPageReadTest.EXAMPLE_VALUES[last][1],
+                batch.getInt(batch.numRows() - 1, 1));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(TupleBatchTest.class);
+    }
+}
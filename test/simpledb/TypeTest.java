@@ -0,0 +1,142 @@
+package simpledb;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class TypeTest extends SimpleDbTestBase {
+
+    /**
+     * Unit test for Type.forName() and Type.parseValue()
+     */
+    @Test public void parseValues() {
+        assertEquals(Type.INT_TYPE, Type.forName("int"));
+        assertEquals(Type.LONG_TYPE, Type.forName(" LONG "));
+        assertEquals(Type.BYTE_TYPE, Type.forName("byte"));
+        try {
+            Type.forName("float");
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+        }
+
+        assertEquals(new ByteField((byte) 7), Type.BYTE_TYPE.parseValue(" 7"));
+        assertEquals(new ShortField((short) -2), Type.SHORT_TYPE.parseValue("-2"));
+        assertEquals(new LongField(12345678901L), Type.LONG_TYPE.parseValue("12345678901"));
+        assertEquals(new DoubleField(0.25), Type.DOUBLE_TYPE.parseValue("0.25"));
+        assertEquals(new StringField("abc", Type.STRING_LEN), Type.STRING_TYPE.parseValue("abc "));
+    }
+
+    /**
+     * Unit test for Field.compare() on the numeric types
+     */
+    @Test public void compare() {
+        assertTrue(new LongField(5).compare(Predicate.Op.GREATER_THAN, new LongField(-5)));
+        assertTrue(new ByteField((byte) -1).compare(Predicate.Op.LESS_THAN, new ByteField((byte) 1)));
+        assertTrue(new ShortField((short) 3).compare(Predicate.Op.EQUALS, new ShortField((short) 3)));
+        assertTrue(new DoubleField(1.5).compare(Predicate.Op.LESS_THAN_OR_EQ, new DoubleField(1.5)));
+        assertFalse(new DoubleField(1.5).compare(Predicate.Op.NOT_EQUALS, new DoubleField(1.5)));
+    }
+
+    /**
+     * Unit test for Type.parse() reading what Field.serialize() wrote
+     */
+    @Test public void serialize() throws Exception {
+        Field[] fields = { new ByteField((byte) 100), new ShortField((short) -300),
+                new LongField(Long.MIN_VALUE), new DoubleField(-0.125) };
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        for (Field f : fields) {
+            f.serialize(dos);
+        }
+        assertEquals(1 + 2 + 8 + 8, baos.size());
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        for (Field f : fields) {
+            assertEquals(f, f.getType().parse(dis));
+        }
+    }
+
+    /**
+     * Unit test for Type.read() reading what Field.write() wrote, and for
+     * the stream methods agreeing with them
+     */
+    @Test public void readWrite() throws Exception {
+        Field[] fields = { new IntField(-7), new StringField("abc", Type.STRING_LEN),
+                new ByteField((byte) 100), new ShortField((short) -300),
+                new LongField(Long.MIN_VALUE), new DoubleField(-0.125) };
+        int len = 0;
+        for (Field f : fields) {
+            len += f.getType().getLen();
+        }
+        for (ByteBuffer buf : new ByteBuffer[] { ByteBuffer.allocate(len),
+                ByteBuffer.allocateDirect(len) }) {
+            for (Field f : fields) {
+                f.write(buf);
+            }
+            assertEquals(len, buf.position());
+            buf.flip();
+            for (Field f : fields) {
+                assertEquals(f, f.getType().read(buf));
+            }
+            assertFalse(buf.hasRemaining());
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        for (Field f : fields) {
+            f.serialize(dos);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        for (Field f : fields) {
+            f.write(buf);
+        }
+        assertArrayEquals(buf.array(), baos.toByteArray());
+
+        try {
+            Type.LONG_TYPE.read(ByteBuffer.allocate(4));
+            fail("expected exception");
+        } catch (BufferUnderflowException e) {
+        }
+    }
+
+    /**
+     * Unit test for HeapFileEncoder with numeric types
+     */
+    @Test public void encode() throws Exception {
+        File txt = File.createTempFile("types", ".txt");
+        txt.deleteOnExit();
+        File dat = File.createTempFile("types", ".dat");
+        dat.deleteOnExit();
+        Writer w = new FileWriter(txt);
+        w.write("1,2,3000000000,0.5\n-1,-2,-3,1e3\n");
+        w.close();
+        Type[] types = { Type.BYTE_TYPE, Type.SHORT_TYPE, Type.LONG_TYPE, Type.DOUBLE_TYPE };
+        HeapFileEncoder.convert(txt, dat, BufferPool.getPageSize(), 4, types);
+
+        HeapFile hf = new HeapFile(dat, new TupleDesc(types));
+        Database.getCatalog().addTable(hf, "types");
+        DbFileIterator it = hf.iterator(new TransactionId());
+        it.open();
+        Tuple t = it.next();
+        assertEquals(new LongField(3000000000L), t.getField(2));
+        assertEquals(new DoubleField(0.5), t.getField(3));
+        t = it.next();
+        assertEquals(new ByteField((byte) -1), t.getField(0));
+        assertEquals(new DoubleField(1000), t.getField(3));
+        assertFalse(it.hasNext());
+        it.close();
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(TypeTest.class);
+    }
+}
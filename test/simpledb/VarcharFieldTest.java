@@ -0,0 +1,174 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.*;
+import java.util.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class VarcharFieldTest extends SimpleDbTestBase {
+
+    private static final TupleDesc TD =
+            new TupleDesc(new Type[] { Type.INT_TYPE, Type.VARCHAR_TYPE });
+
+    private File f;
+    private HeapFile hf;
+
+    /**
+     * Set up initial resources for each unit test.
+     */
+    @Before
+    public void createFile() throws Exception {
+        f = File.createTempFile("varchar", ".dat");
+        f.deleteOnExit();
+        OverflowFile.fileFor(f).deleteOnExit();
+        hf = open(PageLayout.FIXED);
+    }
+
+    private HeapFile open(PageLayout layout) {
+        HeapFile file = new HeapFile(f, TD, layout);
+        Database.getCatalog().addTable(file, SystemTestUtil.getUUID());
+        return file;
+    }
+
+    private static String repeat(String s, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    private static Tuple tuple(int i, String s) {
+        Tuple t = new Tuple(TD);
+        t.setField(0, new IntField(i));
+        t.setField(1, new VarcharField(s));
+        return t;
+    }
+
+    private List<Tuple> scan(HeapFile file) throws Exception {
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+        DbFileIterator it = file.iterator(new TransactionId());
+        it.open();
+        while (it.hasNext()) {
+            tuples.add(it.next());
+        }
+        it.close();
+        return tuples;
+    }
+
+    /**
+     * Unit test for Type.parse() reading what VarcharField.serialize() wrote
+     */
+    @Test public void serializeInline() throws Exception {
+        VarcharField v = new VarcharField("h\u00e9llo");
+        assertEquals(6, v.getLength());
+        assertTrue(v.isInline());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        v.serialize(new DataOutputStream(baos));
+        assertEquals(Type.VARCHAR_TYPE.getLen(), baos.size());
+        Field parsed = Type.VARCHAR_TYPE.parse(
+                new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+        assertEquals(v, parsed);
+        assertEquals("h\u00e9llo", parsed.toString());
+
+        try {
+            new VarcharField(repeat("x", Type.VARCHAR_INLINE_LEN + 1))
+                    .serialize(new DataOutputStream(new ByteArrayOutputStream()));
+            fail("expected exception");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    /**
+     * Unit test for long values stored in overflow pages by
+     * HeapFile.insertTuple() and read back only when asked for
+     */
+    @Test public void overflow() throws Exception {
+        String small = "short";
+        String big = repeat("0123456789", 1000);
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuple(tid, hf.getId(), tuple(1, small));
+        Database.getBufferPool().insertTuple(tid, hf.getId(), tuple(2, big));
+        Database.getBufferPool().transactionComplete(tid);
+
+        int perPage = BufferPool.getPageSize() - 4;
+        assertEquals((big.length() + perPage - 1) / perPage, hf.getOverflowFile().numPages());
+        // the tuple itself is as wide as with short values
+        assertEquals(4 + Type.VARCHAR_INLINE_LEN + 8, TD.getSize());
+
+        Database.getBufferPool().flushAllPages();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        List<Tuple> tuples = scan(hf);
+        assertEquals(2, tuples.size());
+        VarcharField v = (VarcharField) tuples.get(1).getField(1);
+        assertEquals(big.length(), v.getLength());
+        assertFalse(v.isLoaded());
+        assertFalse(v.compare(Predicate.Op.EQUALS, new VarcharField(small)));
+        assertFalse(v.isLoaded());
+        assertEquals(big, v.getValue());
+        assertEquals(small, ((VarcharField) tuples.get(0).getField(1)).getValue());
+    }
+
+    /**
+     * Unit test for VARCHAR fields on slotted and PAX pages, and for moving a
+     * long value to another table
+     */
+    @Test public void layouts() throws Exception {
+        String big = repeat("abc", 500);
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuple(tid, hf.getId(), tuple(1, big));
+        Database.getBufferPool().transactionComplete(tid);
+        Tuple t = scan(hf).get(0);
+
+        for (PageLayout layout : new PageLayout[] { PageLayout.SLOTTED, PageLayout.PAX }) {
+            File other = File.createTempFile("varchar", ".dat");
+            other.deleteOnExit();
+            OverflowFile.fileFor(other).deleteOnExit();
+            HeapFile copy = new HeapFile(other, TD, layout);
+            Database.getCatalog().addTable(copy, SystemTestUtil.getUUID());
+            Tuple moved = new Tuple(TD);
+            moved.setField(0, t.getField(0));
+            moved.setField(1, t.getField(1));
+            tid = new TransactionId();
+            Database.getBufferPool().insertTuple(tid, copy.getId(), moved);
+            Database.getBufferPool().transactionComplete(tid);
+            assertEquals(1, copy.getOverflowFile().numPages());
+
+            Database.getBufferPool().flushAllPages();
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+            assertEquals(big, scan(copy).get(0).getField(1).toString());
+        }
+    }
+
+    /**
+     * Unit test for HeapFileEncoder with long VARCHAR values
+     */
+    @Test public void encode() throws Exception {
+        String big = repeat("long text ", 300);
+        File txt = File.createTempFile("varchar", ".txt");
+        txt.deleteOnExit();
+        Writer w = new FileWriter(txt);
+        w.write("1,abc\n2," + big + "\n");
+        w.close();
+        HeapFileEncoder.convert(txt, f, BufferPool.getPageSize(), 2,
+                new Type[] { Type.INT_TYPE, Type.VARCHAR_TYPE });
+
+        List<Tuple> tuples = scan(hf);
+        assertEquals(2, tuples.size());
+        assertEquals(new VarcharField("abc"), tuples.get(0).getField(1));
+        assertEquals(big.trim(), tuples.get(1).getField(1).toString());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(VarcharFieldTest.class);
+    }
+}
@@ -0,0 +1,121 @@
+package simpledb;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.util.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import junit.framework.JUnit4TestAdapter;
+
+public class ZoneMapTest extends SimpleDbTestBase {
+    private static final int BLOCKS = 3;
+
+    private int slots;
+    private HeapFile hf;
+
+    /**
+     * Set up initial resources for each unit test: a file clustered on its
+     * first field, filling BLOCKS blocks of pages exactly.
+     */
+    @Before
+    public void createFile() throws Exception {
+        slots = PageLayout.FIXED.maxTuplesPerPage(Utility.getTupleDesc(2));
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        for (int i = 0; i < BLOCKS * ZoneMap.DEFAULT_BLOCK_PAGES * slots; i++) {
+            tuples.add(new ArrayList<Integer>(Arrays.asList(i, i % 7)));
+        }
+        File f = File.createTempFile("zonemap", ".dat");
+        f.deleteOnExit();
+        HeapFileEncoder.convert(tuples, f, BufferPool.getPageSize(), 2);
+        hf = Utility.openHeapFile(2, f);
+    }
+
+    private static Predicate pred(int field, Predicate.Op op, int value) {
+        return new Predicate(field, op, new IntField(value));
+    }
+
+    /**
+     * Unit test for ZoneMap.rebuildAsync() and ZoneMap.canSkip()
+     */
+    @Test
+    public void rebuild() throws Exception {
+        ZoneMap zm = hf.getZoneMap();
+        Predicate small = pred(0, Predicate.Op.LESS_THAN, 100);
+        assertFalse(zm.isKnown(0));
+        assertFalse(zm.canSkip(1, small));
+
+        zm.rebuildAsync().get();
+        int blockTuples = ZoneMap.DEFAULT_BLOCK_PAGES * slots;
+        assertTrue(zm.isKnown(1));
+        assertEquals(blockTuples, zm.getMin(1, 0));
+        assertEquals(2 * blockTuples - 1, zm.getMax(1, 0));
+        assertFalse(zm.canSkip(0, small));
+        assertTrue(zm.canSkip(1, small));
+        assertTrue(zm.canSkip(2, small));
+        assertTrue(zm.canSkip(0, pred(0, Predicate.Op.GREATER_THAN_OR_EQ, blockTuples)));
+        assertFalse(zm.canSkip(1, pred(0, Predicate.Op.EQUALS, blockTuples)));
+        // the second field isn't clustered
+        assertFalse(zm.canSkip(1, pred(1, Predicate.Op.EQUALS, 3)));
+        assertTrue(zm.canSkip(1, pred(1, Predicate.Op.GREATER_THAN, 6)));
+    }
+
+    /**
+     * Unit test for ZoneMap maintenance on HeapFile.insertTuple() and
+     * HeapFile.deleteTuple()
+     */
+    @Test
+    public void insertDelete() throws Exception {
+        ZoneMap zm = hf.getZoneMap();
+        zm.rebuild(new TransactionId());
+        Predicate small = pred(0, Predicate.Op.LESS_THAN, 100);
+
+        // the file is full, so this starts a new block
+        TransactionId tid = new TransactionId();
+        Tuple t = Utility.getHeapTuple(new int[] { 5, 0 });
+        Database.getBufferPool().insertTuple(tid, hf.getId(), t);
+        assertEquals(BLOCKS * ZoneMap.DEFAULT_BLOCK_PAGES + 1, hf.numPages());
+        assertFalse(zm.canSkip(BLOCKS, small));
+        assertTrue(zm.canSkip(BLOCKS, pred(0, Predicate.Op.GREATER_THAN, 5)));
+
+        // emptying the block's only page makes it skippable again
+        Database.getBufferPool().deleteTuple(tid, t);
+        assertTrue(zm.canSkip(BLOCKS, small));
+    }
+
+    /**
+     * Unit test for SeqScan with a predicate
+     */
+    @Test
+    public void scan() throws Exception {
+        hf.getZoneMap().rebuild(new TransactionId());
+        ArrayList<ArrayList<Integer>> expected = new ArrayList<ArrayList<Integer>>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(new ArrayList<Integer>(Arrays.asList(i, i % 7)));
+        }
+        SeqScan scan = new SeqScan(new TransactionId(), hf.getId(), "t",
+                pred(0, Predicate.Op.LESS_THAN, 100));
+        SystemTestUtil.matchTuples(scan, expected);
+
+        // blocks that can't be skipped are still filtered
+        int count = 0;
+        scan = new SeqScan(new TransactionId(), hf.getId(), "t", pred(1, Predicate.Op.EQUALS, 3));
+        scan.open();
+        while (scan.hasNext()) {
+            assertEquals(new IntField(3), scan.next().getField(1));
+            count++;
+        }
+        int total = BLOCKS * ZoneMap.DEFAULT_BLOCK_PAGES * slots;
+        assertEquals((total - 4) / 7 + 1, count);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ZoneMapTest.class);
+    }
+}
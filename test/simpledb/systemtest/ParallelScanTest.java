@@ -0,0 +1,123 @@
+package simpledb.systemtest;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import simpledb.*;
+
+/**
+ * Checks that a ParallelSeqScan returns exactly the tuples of the table,
+ * regardless of how the pages are split up between workers.
+ */
+public class ParallelScanTest extends SimpleDbTestBase {
+
+    /** Tests the parallel scan for a table with the specified dimensions. */
+    private void validateScan(int[] rowSizes, int parallelism, int morselPages)
+            throws IOException, DbException, TransactionAbortedException {
+        for (int rows : rowSizes) {
+            ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+            HeapFile f = SystemTestUtil.createRandomHeapFile(2, rows, null, tuples);
+            TransactionId tid = new TransactionId();
+            ParallelSeqScan scan = new ParallelSeqScan(tid, f.getId(), "t", parallelism, morselPages);
+            SystemTestUtil.matchTuples(scan, tuples);
+        }
+    }
+
+    /** Scan with one page per morsel, so workers interleave heavily. */
+    @Test public void testSinglePageMorsels() throws IOException, DbException, TransactionAbortedException {
+        validateScan(new int[]{0, 1, 503, 504, 505, 5000}, 4, 1);
+    }
+
+    /** Scan with more workers than morsels. */
+    @Test public void testFewMorsels() throws IOException, DbException, TransactionAbortedException {
+        validateScan(new int[]{0, 1000, 5000}, 8, 4);
+    }
+
+    /** Test that rewinding restarts the scan from scratch. */
+    @Test public void testRewind() throws IOException, DbException, TransactionAbortedException {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile f = SystemTestUtil.createRandomHeapFile(2, 3000, null, tuples);
+
+        ParallelSeqScan scan = new ParallelSeqScan(new TransactionId(), f.getId(), "t", 3, 2);
+        scan.open();
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(scan.hasNext());
+            scan.next();
+        }
+        scan.rewind();
+        int count = 0;
+        while (scan.hasNext()) {
+            scan.next();
+            count++;
+        }
+        assertEquals(3000, count);
+        scan.close();
+        assertFalse(scan.hasNext());
+    }
+
+    /**
+     * Test that workers still running from a closed run can't claim pages
+     * from, or deliver tuples to, the run started by rewind().
+     */
+    @Test public void testRewindWithActiveWorkers()
+            throws IOException, DbException, TransactionAbortedException {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile f = SystemTestUtil.createRandomHeapFile(2, 20000, null, tuples);
+
+        ParallelSeqScan scan = new ParallelSeqScan(new TransactionId(), f.getId(), "t", 4, 1);
+        scan.open();
+        for (int run = 0; run < 20; run++) {
+            // the workers of this run are still filling the queue when it is
+            // rewound
+            for (int i = 0; i < 10; ++i) {
+                assertTrue(scan.hasNext());
+                scan.next();
+            }
+            scan.rewind();
+        }
+        SystemTestUtil.matchTuples(scan, tuples);
+        scan.close();
+    }
+
+    /**
+     * Test that closing a scan whose workers are reading pages, which
+     * interrupts them, leaves the table readable and writable.
+     */
+    @Test public void testCloseMidScan() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile f = SystemTestUtil.createRandomHeapFile(2, 20000, null, tuples);
+
+        for (int run = 0; run < 20; run++) {
+            // start from an empty pool so that the workers read from disk
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+            ParallelSeqScan scan = new ParallelSeqScan(new TransactionId(), f.getId(), "t", 4, 1);
+            scan.open();
+            assertTrue(scan.hasNext());
+            scan.next();
+            scan.close();
+        }
+
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(f, tuples);
+
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuple(tid, f.getId(), Utility.getHeapTuple(new int[] { -1, -2 }));
+        Database.getBufferPool().transactionComplete(tid);
+        Database.getBufferPool().flushAllPages();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        ArrayList<Integer> inserted = new ArrayList<Integer>();
+        inserted.add(-1);
+        inserted.add(-2);
+        tuples.add(inserted);
+        SystemTestUtil.matchTuples(f, tuples);
+    }
+
+    /** Make test compatible with older version of ant. */
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(ParallelScanTest.class);
+    }
+}